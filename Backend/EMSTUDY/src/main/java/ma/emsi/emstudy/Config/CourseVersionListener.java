@@ -0,0 +1,121 @@
+package ma.emsi.emstudy.Config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.Entity.*;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps {@link Course#getContentVersion()} moving: any insert, update or delete of an entity that
+ * shows up in a course's JSON (its items, questions, answers, enrollments and completed items, or
+ * the course row itself) bumps that course's version once per transaction. The bump runs in the
+ * same transaction right before it commits, so a version is never visible before the content it
+ * stands for. Bulk statements don't go through here; the ones touching a course's JSON bump the
+ * version themselves.
+ */
+@Component
+@RequiredArgsConstructor
+public class CourseVersionListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final String BUMP = "update courses set content_version = content_version + 1 where course_id = ?";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    // courses written in each open transaction, bumped by the process registered with the first one
+    private final Map<SharedSessionContractImplementor, Set<Long>> pending = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        // a new course starts at version 0
+        if (!(event.getEntity() instanceof Course)) {
+            changed(event.getSession(), courseIdOf(event.getEntity()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        changed(event.getSession(), courseIdOf(event.getEntity()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!(event.getEntity() instanceof Course)) {
+            changed(event.getSession(), courseIdOf(event.getEntity()));
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private void changed(EventSource session, Long courseId) {
+        if (courseId == null) {
+            return;
+        }
+        pending.computeIfAbsent(session, s -> {
+            session.getActionQueue().registerProcess(this::bump);
+            session.getActionQueue().registerProcess((success, completed) -> pending.remove(completed));
+            return ConcurrentHashMap.newKeySet();
+        }).add(courseId);
+    }
+
+    private void bump(SharedSessionContractImplementor session) {
+        Set<Long> courseIds = pending.remove(session);
+        if (courseIds == null) {
+            return;
+        }
+        // plain JDBC: going through Hibernate would evict the whole course cache region
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(BUMP)) {
+                for (Long courseId : courseIds) {
+                    statement.setLong(1, courseId);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    static Long courseIdOf(Object entity) {
+        Course course = null;
+        if (entity instanceof Course c) {
+            course = c;
+        } else if (entity instanceof CourseItem item) {
+            course = item.getCourse();
+        } else if (entity instanceof Question question) {
+            course = courseOf(question);
+        } else if (entity instanceof Answer answer) {
+            course = answer.getQuestion() == null ? null : courseOf(answer.getQuestion());
+        } else if (entity instanceof Enrollment enrollment) {
+            course = enrollment.getCourse();
+        } else if (entity instanceof CompletedCourseItem completed) {
+            course = completed.getCourse();
+        }
+        return course == null ? null : course.getCourseId();
+    }
+
+    private static Course courseOf(Question question) {
+        return question.getQuiz() == null ? null : question.getQuiz().getCourse();
+    }
+}
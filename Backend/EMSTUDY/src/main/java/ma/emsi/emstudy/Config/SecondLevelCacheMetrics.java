@@ -0,0 +1,42 @@
+package ma.emsi.emstudy.Config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+
+/**
+ * Publishes every second-level cache region as {@code cache.*} meters tagged with the region
+ * name. Hibernate's own {@code hibernate.second.level.cache.*} meters cover hits, misses and
+ * puts but not evictions, which show whether the regions are sized right.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class SecondLevelCacheMetrics {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final MeterRegistry meterRegistry;
+
+    @PostConstruct
+    void bindRegions() {
+        RegionFactory regionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getCache().getRegionFactory();
+        if (!(regionFactory instanceof JCacheRegionFactory jCacheRegionFactory)) {
+            return;
+        }
+        CacheManager cacheManager = jCacheRegionFactory.getCacheManager();
+        for (String name : cacheManager.getCacheNames()) {
+            // Hibernate creates the regions with statistics off, and evictions are only counted with them on
+            cacheManager.enableStatistics(name, true);
+            JCacheMetrics.monitor(meterRegistry, cacheManager.getCache(name), Tags.of("cacheManager", "hibernate"));
+        }
+    }
+}
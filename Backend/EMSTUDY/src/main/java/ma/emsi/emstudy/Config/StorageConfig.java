@@ -0,0 +1,40 @@
+package ma.emsi.emstudy.Config;
+
+import ma.emsi.emstudy.Storage.LocalStorageBackend;
+import ma.emsi.emstudy.Storage.S3StorageBackend;
+import ma.emsi.emstudy.Storage.StorageBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Picks where stored files live with {@code storage.backend}: {@code local}, the default, keeps
+ * them under {@code file.upload-dir} on this machine; {@code s3} in a bucket of an S3-compatible
+ * store shared by every node. The upload directory holds uploads being written either way.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+    public StorageBackend localStorageBackend(@Value("${file.upload-dir:uploads}") String uploadDir) {
+        return new LocalStorageBackend(Paths.get(uploadDir));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+    public StorageBackend s3StorageBackend(@Value("${storage.s3.endpoint}") URI endpoint,
+                                           @Value("${storage.s3.bucket}") String bucket,
+                                           @Value("${storage.s3.region:us-east-1}") String region,
+                                           @Value("${storage.s3.access-key}") String accessKey,
+                                           @Value("${storage.s3.secret-key}") String secretKey,
+                                           @Value("${storage.s3.timeout:30s}") Duration timeout,
+                                           @Value("${storage.s3.create-bucket:false}") boolean createBucket) {
+        return new S3StorageBackend(endpoint, bucket, region, accessKey, secretKey, timeout, createBucket);
+    }
+}
@@ -3,10 +3,15 @@ package ma.emsi.emstudy.Controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.RefreshRequest;
 import ma.emsi.emstudy.DTO.UserRegisterDTO;
 import ma.emsi.emstudy.Entity.Student;
 import ma.emsi.emstudy.Entity.Teacher;
+import ma.emsi.emstudy.Entity.User;
+import ma.emsi.emstudy.Exception.InvalidTokenException;
+import ma.emsi.emstudy.Security.AppUserDetails;
 import ma.emsi.emstudy.Security.AuthenticationService;
+import ma.emsi.emstudy.Security.RefreshTokenService;
 import ma.emsi.emstudy.Service.UserService;
 import ma.emsi.emstudy.DTO.AuthResponse;
 import ma.emsi.emstudy.DTO.LoginRequest;
@@ -25,11 +30,11 @@ public class AuthController {
 
     private final UserService userService;
     private final AuthenticationService authenticationService;
-
+    private final RefreshTokenService refreshTokenService;
 
     @Operation(
             summary = "Logs the user in",
-            description = "Returns a JWT token if the login is successful"
+            description = "Returns a short-lived JWT access token and a refresh token if the login is successful"
     )
     @PostMapping("/login")
     public ResponseEntity<AuthResponse> login(@RequestBody LoginRequest loginRequest) {
@@ -37,13 +42,40 @@ public class AuthController {
                 loginRequest.getEmail(),
                 loginRequest.getPassword()
         );
-        String tokenValue = authenticationService.generateToken(userdetails);
-        AuthResponse authResponse =  AuthResponse.builder()
-                .token(tokenValue)
-                .expiresIn(86400L)
+        String refreshToken = refreshTokenService.issue(((AppUserDetails) userdetails).getId());
+        return ResponseEntity.ok(toAuthResponse(userdetails, refreshToken));
+    }
+
+    @Operation(
+            summary = "Renews the access token",
+            description = "Exchanges a refresh token for a new access token and a new refresh token. " +
+                    "Each refresh token can be used once; reusing one signs out every session started from the same login"
+    )
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(@RequestBody RefreshRequest refreshRequest) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshRequest.getRefreshToken());
+        User user = userService.findById(rotation.userId())
+                .orElseThrow(() -> new InvalidTokenException("Account no longer exists"));
+        return ResponseEntity.ok(toAuthResponse(new AppUserDetails(user), rotation.refreshToken()));
+    }
+
+    @Operation(
+            summary = "Logs the user out",
+            description = "Revokes the given refresh token and every token rotated from the same login"
+    )
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestBody RefreshRequest refreshRequest) {
+        refreshTokenService.revoke(refreshRequest.getRefreshToken());
+        return ResponseEntity.noContent().build();
+    }
+
+    private AuthResponse toAuthResponse(UserDetails userdetails, String refreshToken) {
+        return AuthResponse.builder()
+                .token(authenticationService.generateToken(userdetails))
+                .refreshToken(refreshToken)
+                .expiresIn(authenticationService.getAccessTokenTtlSeconds())
                 .role(userdetails.getAuthorities().iterator().next().getAuthority())
                 .build();
-        return ResponseEntity.ok(authResponse);
     }
 
     @Operation(
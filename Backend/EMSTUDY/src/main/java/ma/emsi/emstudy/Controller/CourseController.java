@@ -6,15 +6,27 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.CourseSummaryDTO;
+import ma.emsi.emstudy.DTO.CourseTreeDTO;
+import ma.emsi.emstudy.DTO.JoinCodeDTO;
 import ma.emsi.emstudy.Entity.Course;
 import ma.emsi.emstudy.Entity.Teacher;
 import ma.emsi.emstudy.Exception.ForbiddenAccessException;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Service.CourseCloneService;
 import ma.emsi.emstudy.Service.CourseService;
 import ma.emsi.emstudy.Service.TeacherService;
 import ma.emsi.emstudy.Service.UserService;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -25,6 +37,7 @@ import java.util.List;
 public class CourseController {
 
     private final CourseService courseService;
+    private final CourseCloneService courseCloneService;
     private final UserService userService;
     private final TeacherService teacherService;
 
@@ -70,11 +83,33 @@ public class CourseController {
         return new ResponseEntity<>(courses, HttpStatus.OK);
     }
 
+    @Operation(
+        summary = "Get summaries of the teacher's courses",
+        description = "Retrieves a page of the teacher's courses with their item, enrollment and completion counts " +
+                "and last activity, without the course contents. Sortable by courseId, name or creationDate. " +
+                "Only accessible by teachers.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Page of course summaries retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Unsupported sort property"),
+            @ApiResponse(responseCode = "404", description = "User is not a teacher")
+        }
+    )
+    @GetMapping("/summaries")
+    public ResponseEntity<PagedModel<CourseSummaryDTO>> getTeacherCourseSummaries(
+        @RequestAttribute("userId") Long userId,
+        @ParameterObject @PageableDefault(size = 20, sort = "courseId") Pageable pageable) {
+        teacherService.getTeacher(userId);
+        return ResponseEntity.ok(new PagedModel<>(courseService.getTeacherCourseSummaries(userId, pageable)));
+    }
+
     @Operation(
         summary = "Get course by ID",
-        description = "Retrieves a specific course by its ID. Only accessible by the course's teacher.",
+        description = "Retrieves a specific course by its ID. Only accessible by the course's teacher. " +
+                "Send the returned ETag back as is in If-None-Match to get a 304 while the course is unchanged. " +
+                "It is weak, so it can't be used in If-Match or If-Range.",
         responses = {
             @ApiResponse(responseCode = "200", description = "Course found and returned"),
+            @ApiResponse(responseCode = "304", description = "Course unchanged since the given ETag"),
             @ApiResponse(responseCode = "403", description = "User is not authorized"),
             @ApiResponse(responseCode = "404", description = "Course not found")
         }
@@ -82,18 +117,104 @@ public class CourseController {
     @GetMapping("/{courseId}")
     public ResponseEntity<Course> getCourseById(
         @Parameter(description = "ID of the course to retrieve") @PathVariable Long courseId,
-        @RequestAttribute("userId") Long userId) {
+        @RequestAttribute("userId") Long userId,
+        WebRequest request) {
 //        if (!courseService.isTeacherOfCourse(userId, courseId)) {
 //            throw new ForbiddenAccessException("You are not authorized to view this course");
 //        }
+        String eTag = courseService.getContentETag(courseId);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
         Course course = courseService.getCourseById(courseId);
         if (course != null) {
-            return new ResponseEntity<>(course, HttpStatus.OK);
+            return ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache().cachePrivate()).body(course);
         } else {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
     }
 
+    @Operation(
+        summary = "Get the course content tree",
+        description = "Retrieves the course with all of its materials and quizzes, each quiz with its questions " +
+                "and answers, in a fixed number of queries. Only accessible by the course's teacher and enrolled students. " +
+                "Send the returned ETag back as is in If-None-Match to get a 304 while the course is unchanged. " +
+                "It is weak, so it can't be used in If-Match or If-Range.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Course tree returned"),
+            @ApiResponse(responseCode = "304", description = "Course unchanged since the given ETag"),
+            @ApiResponse(responseCode = "403", description = "User is not authorized"),
+            @ApiResponse(responseCode = "404", description = "Course not found")
+        }
+    )
+    @GetMapping("/{courseId}/tree")
+    public ResponseEntity<CourseTreeDTO> getCourseTree(
+        @Parameter(description = "ID of the course") @PathVariable Long courseId,
+        @RequestAttribute("userId") Long userId,
+        WebRequest request) {
+        if (!courseService.canViewCourse(userId, courseId)) {
+            throw new ForbiddenAccessException("You are not authorized to view this course");
+        }
+        String eTag = courseService.getContentETag(courseId);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(courseService.getCourseTree(courseId));
+    }
+
+    @Operation(
+        summary = "Clone a course",
+        description = "Copies the course with all of its materials, quizzes, questions and answers into a new course " +
+                "with its own join code. Materials share the original's files; enrollments are not copied. " +
+                "Only accessible by the course's teacher.",
+        responses = {
+            @ApiResponse(responseCode = "201", description = "Course copied, its content tree is returned"),
+            @ApiResponse(responseCode = "403", description = "User is not authorized"),
+            @ApiResponse(responseCode = "404", description = "Course not found")
+        }
+    )
+    @PostMapping("/{courseId}/clone")
+    public ResponseEntity<CourseTreeDTO> cloneCourse(
+        @Parameter(description = "ID of the course to copy") @PathVariable Long courseId,
+        @Parameter(description = "Name of the copy, defaults to the original name followed by \"(copy)\"")
+        @RequestParam(required = false) String name,
+        @RequestAttribute("userId") Long userId) {
+        if (!courseService.isTeacherOfCourse(userId, courseId)) {
+            throw new ForbiddenAccessException("You are not authorized to copy this course");
+        }
+        Course clone = courseCloneService.cloneCourse(courseId, userId, name);
+        return new ResponseEntity<>(courseService.getCourseTree(clone.getCourseId()), HttpStatus.CREATED);
+    }
+
+    @Operation(
+        summary = "Rotate the join code",
+        description = "Replaces the course's join code; the previous code stops working immediately. " +
+                "Only accessible by the course's teacher.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "New join code returned"),
+            @ApiResponse(responseCode = "403", description = "User is not authorized"),
+            @ApiResponse(responseCode = "404", description = "Course not found")
+        }
+    )
+    @PostMapping("/{courseId}/join-code")
+    public ResponseEntity<JoinCodeDTO> rotateJoinCode(
+        @Parameter(description = "ID of the course") @PathVariable Long courseId,
+        @Parameter(description = "Hours the new code stays valid, omit for a code that never expires")
+        @RequestParam(required = false) Integer validForHours,
+        @RequestAttribute("userId") Long userId) {
+        if (!courseService.isTeacherOfCourse(userId, courseId)) {
+            throw new ForbiddenAccessException("You are not authorized to manage this course");
+        }
+        if (validForHours != null && validForHours <= 0) {
+            throw new InvalidInputException("validForHours must be positive");
+        }
+        Duration validFor = validForHours == null ? null : Duration.ofHours(validForHours);
+        return ResponseEntity.ok(courseService.rotateJoinCode(courseId, validFor));
+    }
+
     @Operation(
         summary = "Delete course",
         description = "Deletes a specific course. Only accessible by the course's teacher.",
@@ -6,10 +6,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.CourseOutlineItemDTO;
 import ma.emsi.emstudy.Entity.CourseItem;
 import ma.emsi.emstudy.Service.CourseItemService;
+import ma.emsi.emstudy.Service.CourseService;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -21,19 +25,56 @@ import java.util.List;
 public class CourseItemController {
 
     private final CourseItemService<CourseItem> courseItemService;
+    private final CourseService courseService;
 
     @Operation(
         summary = "Get items by course",
-        description = "Retrieves all items (materials and quizzes) for a specific course",
+        description = "Retrieves all items (materials and quizzes) for a specific course. " +
+            "Send the returned ETag back as is in If-None-Match to get a 304 while the course is unchanged. " +
+            "It is weak, so it can't be used in If-Match or If-Range.",
         responses = {
             @ApiResponse(responseCode = "200", description = "List of course items retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "Course unchanged since the given ETag"),
             @ApiResponse(responseCode = "404", description = "Course not found")
         }
     )
     @GetMapping("/course/{courseId}")
     public ResponseEntity<List<CourseItem>> getItemsByCourse(
-        @Parameter(description = "ID of the course") @PathVariable Long courseId) {
-        return ResponseEntity.ok(courseItemService.getCourseItemsByCourseId(courseId));
+        @Parameter(description = "ID of the course") @PathVariable Long courseId,
+        WebRequest request) {
+        String eTag = courseService.getContentETag(courseId);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+            .eTag(eTag)
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .body(courseItemService.getCourseItemsByCourseId(courseId));
+    }
+
+    @Operation(
+        summary = "Get the course outline",
+        description = "Retrieves the id, title, type and date of every item of a course in course order, " +
+            "without the materials' and quizzes' own fields. " +
+            "Send the returned ETag back as is in If-None-Match to get a 304 while the course is unchanged. " +
+            "It is weak, so it can't be used in If-Match or If-Range.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Course outline retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "Course unchanged since the given ETag")
+        }
+    )
+    @GetMapping("/course/{courseId}/outline")
+    public ResponseEntity<List<CourseOutlineItemDTO>> getCourseOutline(
+        @Parameter(description = "ID of the course") @PathVariable Long courseId,
+        WebRequest request) {
+        String eTag = courseService.getContentETag(courseId);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+            .eTag(eTag)
+            .cacheControl(CacheControl.noCache().cachePrivate())
+            .body(courseItemService.getCourseOutline(courseId));
     }
 
     @Operation(
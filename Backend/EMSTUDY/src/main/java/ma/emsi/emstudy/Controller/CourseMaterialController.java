@@ -5,22 +5,31 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import ma.emsi.emstudy.DTO.SubmissionDTO;
+import ma.emsi.emstudy.DTO.UploadSessionDTO;
+import ma.emsi.emstudy.DTO.UploadSessionRequest;
 import ma.emsi.emstudy.Entity.CourseMaterial;
 import ma.emsi.emstudy.Entity.CourseMaterialType;
 import ma.emsi.emstudy.Entity.Submission;
+import ma.emsi.emstudy.Exception.ForbiddenAccessException;
 import ma.emsi.emstudy.Exception.InvalidInputException;
 import ma.emsi.emstudy.Service.*;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.UrlResource;
+import ma.emsi.emstudy.Service.FileStorageService.FileInfo;
+import ma.emsi.emstudy.Service.ImageRenditionService.Rendition;
+import ma.emsi.emstudy.Service.MarkdownRenderingService.RenderedHtml;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -32,12 +41,13 @@ public class CourseMaterialController {
 
     private final CourseService courseService;
     private final FileStorageService fileStorageService;
+    private final FileStreamingService fileStreamingService;
     private final CourseMaterialService courseMaterialService;
     private final SubmissionService submissionService;
     private final QuizService quizService;
-
-    @Value("${file.upload-dir:uploads}")
-    private String uploadDir;
+    private final ChunkedUploadService chunkedUploadService;
+    private final ImageRenditionService imageRenditionService;
+    private final MarkdownRenderingService markdownRenderingService;
 
     @Operation(
         summary = "Create new course material",
@@ -59,7 +69,7 @@ public class CourseMaterialController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
-        String fileName = fileStorageService.storeFile(file);
+        FileStorageService.StoredFile storedFile = fileStorageService.storeFile(file);
 
         CourseMaterial material = new CourseMaterial();
         material.setTitle(title);
@@ -68,61 +78,156 @@ public class CourseMaterialController {
         System.out.println("Resolved material type: " + materialType);
 
         material.setCourseMaterialType(materialType);
-        material.setUrl(uploadDir + "/" + fileName);
+        // the same content uploaded again points at the file already stored
+        fileStorageService.attach(material, storedFile);
 
         try {
             return ResponseEntity.ok(courseMaterialService.addCourseItem(material, courseId));
         } catch (Exception e) {
             System.err.println("Error saving material: " + e.getMessage());
             throw new InvalidInputException("Failed to save material: " + e.getMessage());
+        } finally {
+            fileStorageService.release(storedFile.fileName());
+        }
+    }
+
+    @Operation(
+        summary = "Start a chunked upload",
+        description = "Open a resumable upload for a file too large for a single request. Send the file in order with " +
+                "PUT /materials/uploads/{uploadId}?offset=..., chunks of at most chunkSize bytes; the material is created " +
+                "with the last chunk.",
+        responses = {
+            @ApiResponse(responseCode = "201", description = "Upload session created"),
+            @ApiResponse(responseCode = "403", description = "User is not the course teacher"),
+            @ApiResponse(responseCode = "400", description = "Missing file name or file too large")
+        }
+    )
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadSessionDTO> startUpload(
+            @Parameter(description = "Material title, course and the file's name, type and size") @RequestBody UploadSessionRequest uploadRequest,
+            @RequestAttribute("userId") Long userId) {
+        if (!courseService.isTeacherOfCourse(userId, uploadRequest.getCourseId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(chunkedUploadService.start(uploadRequest, userId));
+    }
+
+    @Operation(
+        summary = "Get a chunked upload's offset",
+        description = "Returns how many bytes of the file have been received, i.e. where to resume",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Upload session returned"),
+            @ApiResponse(responseCode = "403", description = "Upload started by another user"),
+            @ApiResponse(responseCode = "404", description = "Upload not found, completed or expired")
+        }
+    )
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadSessionDTO> getUpload(
+            @Parameter(description = "ID of the upload") @PathVariable String uploadId,
+            @RequestAttribute("userId") Long userId) {
+        return ResponseEntity.ok(chunkedUploadService.getSession(uploadId, userId));
+    }
+
+    @Operation(
+        summary = "Upload a chunk",
+        description = "Append the request body (application/octet-stream) to the upload at the given offset. " +
+                "An optional Content-Digest header (sha-256=:<base64>:) is checked before the chunk is accepted. " +
+                "The response carries the created material once the last chunk is in.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Chunk stored"),
+            @ApiResponse(responseCode = "400", description = "Chunk too large or checksum mismatch"),
+            @ApiResponse(responseCode = "403", description = "Upload started by another user"),
+            @ApiResponse(responseCode = "404", description = "Upload not found, completed or expired"),
+            @ApiResponse(responseCode = "409", description = "Offset isn't where the upload continues")
+        }
+    )
+    @PutMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionDTO> uploadChunk(
+            @Parameter(description = "ID of the upload") @PathVariable String uploadId,
+            @Parameter(description = "Position of the chunk in the file") @RequestParam long offset,
+            @RequestHeader(value = "Content-Digest", required = false) String contentDigest,
+            @RequestAttribute("userId") Long userId,
+            HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(chunkedUploadService.appendChunk(uploadId, userId, offset, contentDigest, request.getInputStream()));
+    }
+
+    @Operation(
+        summary = "Cancel a chunked upload",
+        responses = {
+            @ApiResponse(responseCode = "204", description = "Upload cancelled"),
+            @ApiResponse(responseCode = "404", description = "Upload not found")
         }
+    )
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> cancelUpload(
+            @Parameter(description = "ID of the upload") @PathVariable String uploadId,
+            @RequestAttribute("userId") Long userId) throws IOException {
+        chunkedUploadService.abort(uploadId, userId);
+        return ResponseEntity.noContent().build();
     }
 
     @Operation(
         summary = "Download or view course material",
-        description = "Download or view a specific course material file. Set download=true to download the file, or false to view it in the browser",
+        description = "Download or view a specific course material file. Set download=true to download the file, or false to view it in the browser. " +
+                "Byte ranges (Range, If-Range) are supported so that videos can be seeked without downloading them again. " +
+                "Only accessible by the course's teacher and enrolled students.",
         responses = {
             @ApiResponse(responseCode = "200", description = "File served successfully"),
-            @ApiResponse(responseCode = "404", description = "Material not found")
+            @ApiResponse(responseCode = "206", description = "Requested byte ranges served"),
+            @ApiResponse(responseCode = "304", description = "File unchanged since the given ETag or date"),
+            @ApiResponse(responseCode = "403", description = "User is not authorized"),
+            @ApiResponse(responseCode = "404", description = "Material not found"),
+            @ApiResponse(responseCode = "416", description = "None of the requested ranges is within the file")
         }
     )
     @GetMapping("/{materialId}")
-    public ResponseEntity<UrlResource> serveMaterial(
+    public void serveMaterial(
             @Parameter(description = "ID of the material to serve") @PathVariable Long materialId,
             @Parameter(description = "Whether to download the file (true) or view it in browser (false)", 
-                    required = false) @RequestParam(defaultValue = "false") boolean download) {
-
-        UrlResource resource = fileStorageService.downloadMaterial(materialId);
-        String contentType = fileStorageService.getMaterialContentType(materialId);
-        String dispositionType = download ? "attachment" : "inline";
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, dispositionType + "; filename=\"" + resource.getFilename() + "\"")
-                .body(resource);
+                    required = false) @RequestParam(defaultValue = "false") boolean download,
+            @RequestAttribute("userId") Long userId,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        CourseMaterial material = courseMaterialService.getCourseItemById(materialId);
+        if (!courseService.canViewCourse(userId, material.getCourse().getCourseId())) {
+            throw new ForbiddenAccessException("You are not authorized to view this material");
+        }
+        fileStreamingService.serve(material, download ? "attachment" : "inline", request, response);
     }
 
     @Operation(
             summary = "View course material image",
-            description = "View an image course material directly in the browser",
+            description = "View an image course material directly in the browser, scaled down to at most 320px (thumb) "
+                    + "or 1280px (medium) on its longest side. The original is sent while a size is still being made "
+                    + "or when it is already smaller.",
             responses = {
                     @ApiResponse(responseCode = "200", description = "Image displayed successfully"),
-                    @ApiResponse(responseCode = "400", description = "Material is not an image"),
+                    @ApiResponse(responseCode = "400", description = "Material is not an image, or unknown size"),
+                    @ApiResponse(responseCode = "403", description = "User is not authorized"),
                     @ApiResponse(responseCode = "404", description = "Material not found")
             }
     )
     @GetMapping("/image/{materialId}")
-    public ResponseEntity<UrlResource> viewImage(
-            @Parameter(description = "ID of the image material to view") @PathVariable Long materialId) {
+    public void viewImage(
+            @Parameter(description = "ID of the image material to view") @PathVariable Long materialId,
+            @Parameter(description = "thumb, medium or original") @RequestParam(defaultValue = "original") String size,
+            @RequestAttribute("userId") Long userId,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         CourseMaterial material = courseMaterialService.getCourseItemById(materialId);
+        if (!courseService.canViewCourse(userId, material.getCourse().getCourseId())) {
+            throw new ForbiddenAccessException("You are not authorized to view this material");
+        }
         if (material.getCourseMaterialType() != CourseMaterialType.IMAGE) {
-            return ResponseEntity.badRequest().build();
+            throw new InvalidInputException("Material is not an image");
+        }
+        Rendition rendition = Rendition.from(size);
+        FileInfo file = rendition == null ? null : imageRenditionService.getRendition(material, rendition);
+        if (file != null) {
+            fileStreamingService.serve(file, "inline", request, response);
+        } else {
+            fileStreamingService.serve(material, "inline", request, response);
         }
-
-        UrlResource resource = fileStorageService.downloadMaterial(materialId);
-        return ResponseEntity.ok()
-                .contentType(MediaType.IMAGE_JPEG)
-                .body(resource);
     }
 
     @Operation(
@@ -131,36 +236,86 @@ public class CourseMaterialController {
             responses = {
                     @ApiResponse(responseCode = "200", description = "Markdown displayed successfully"),
                     @ApiResponse(responseCode = "400", description = "Material is not markdown"),
+                    @ApiResponse(responseCode = "403", description = "User is not authorized"),
                     @ApiResponse(responseCode = "404", description = "Material not found")
             }
     )
     @GetMapping("/markdown/{materialId}")
-    public ResponseEntity<UrlResource> viewMarkdown(
-            @Parameter(description = "ID of the markdown material to view") @PathVariable Long materialId) {
+    public void viewMarkdown(
+            @Parameter(description = "ID of the markdown material to view") @PathVariable Long materialId,
+            @RequestAttribute("userId") Long userId,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         CourseMaterial material = courseMaterialService.getCourseItemById(materialId);
+        if (!courseService.canViewCourse(userId, material.getCourse().getCourseId())) {
+            throw new ForbiddenAccessException("You are not authorized to view this material");
+        }
         if (material.getCourseMaterialType() != CourseMaterialType.MARKDOWN) {
-            return ResponseEntity.badRequest().build();
+            throw new InvalidInputException("Material is not markdown");
         }
+        fileStreamingService.serve(material, "inline", request, response);
+    }
 
-        UrlResource resource = fileStorageService.downloadMaterial(materialId);
+    @Operation(
+            summary = "View markdown material as HTML",
+            description = "Get a markdown course material rendered to a sanitized HTML fragment",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "HTML returned successfully"),
+                    @ApiResponse(responseCode = "304", description = "Not modified since the given ETag"),
+                    @ApiResponse(responseCode = "400", description = "Material is not markdown, or too large to render"),
+                    @ApiResponse(responseCode = "403", description = "User is not authorized"),
+                    @ApiResponse(responseCode = "404", description = "Material not found")
+            }
+    )
+    @GetMapping("/markdown/{materialId}/html")
+    public ResponseEntity<byte[]> viewMarkdownHtml(
+            @Parameter(description = "ID of the markdown material to view") @PathVariable Long materialId,
+            @RequestAttribute("userId") Long userId,
+            WebRequest request) throws IOException {
+        CourseMaterial material = courseMaterialService.getCourseItemById(materialId);
+        if (!courseService.canViewCourse(userId, material.getCourse().getCourseId())) {
+            throw new ForbiddenAccessException("You are not authorized to view this material");
+        }
+        if (material.getCourseMaterialType() != CourseMaterialType.MARKDOWN) {
+            throw new InvalidInputException("Material is not markdown");
+        }
+        RenderedHtml html = markdownRenderingService.getHtml(material);
+        if (request.checkNotModified(html.eTag())) {
+            return null;
+        }
         return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("text/markdown"))
-                .body(resource);
+                .eTag(html.eTag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                // a fragment for the course page to embed, opening it directly runs nothing
+                .header("Content-Security-Policy", "sandbox; default-src 'none'; img-src http: https:; style-src 'unsafe-inline'")
+                .header("X-Content-Type-Options", "nosniff")
+                .body(html.html());
     }
 
-
     @Operation(
         summary = "Get materials by course",
-        description = "Retrieve all materials for a specific course",
+        description = "Retrieve all materials for a specific course. " +
+                "Send the returned ETag back as is in If-None-Match to get a 304 while the course is unchanged. " +
+                "It is weak, so it can't be used in If-Match or If-Range.",
         responses = {
             @ApiResponse(responseCode = "200", description = "List of materials retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "Course unchanged since the given ETag"),
             @ApiResponse(responseCode = "404", description = "Course not found")
         }
     )
     @GetMapping("/course/{courseId}")
     public ResponseEntity<List<CourseMaterial>> getItemsByCourse(
-            @Parameter(description = "ID of the course") @PathVariable Long courseId) {
-        return ResponseEntity.ok(courseMaterialService.getCourseItemsByCourseId(courseId));
+            @Parameter(description = "ID of the course") @PathVariable Long courseId,
+            WebRequest request) {
+        String eTag = courseService.getContentETag(courseId);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(courseMaterialService.getCourseItemsByCourseId(courseId));
     }
 
     @Operation(
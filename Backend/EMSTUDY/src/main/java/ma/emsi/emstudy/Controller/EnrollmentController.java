@@ -6,14 +6,18 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.CursorPage;
 import ma.emsi.emstudy.DTO.EnrollmentDTO;
 import ma.emsi.emstudy.DTO.StudentDTO;
 import ma.emsi.emstudy.Entity.Enrollment;
 import ma.emsi.emstudy.Exception.InvalidInputException;
 import ma.emsi.emstudy.Service.EnrollmentService;
+import ma.emsi.emstudy.Service.TeacherService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.util.List;
 
 @RestController
@@ -24,6 +28,7 @@ import java.util.List;
 public class EnrollmentController {
 
     private final EnrollmentService enrollmentService;
+    private final TeacherService teacherService;
 
     @Operation(
             summary = "Create new enrollment",
@@ -47,32 +52,52 @@ public class EnrollmentController {
 
     @Operation(
             summary = "Get all enrollments",
-            description = "Retrieve all enrollments in the system",
+            description = "Retrieve a page of all enrollments in the system, ordered by id. " +
+                    "Pass the returned `nextCursor` back as `cursor` to get the next page",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "List of enrollments retrieved successfully")
+                    @ApiResponse(responseCode = "200", description = "Page of enrollments retrieved successfully"),
+                    @ApiResponse(responseCode = "400", description = "Invalid cursor")
             }
     )
     @GetMapping
-    public ResponseEntity<List<EnrollmentDTO>> getAllEnrollments() {
-        List<Enrollment> enrollments = enrollmentService.getAllEnrollments();
-        return toEnrollmentDTO(enrollments);
+    public ResponseEntity<CursorPage<EnrollmentDTO>> getAllEnrollments(
+            @Parameter(description = "Cursor returned by the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, capped by the server") @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(enrollmentService.getAllEnrollments(cursor, size).map(EnrollmentController::toDTO));
+    }
+
+    @Operation(
+            summary = "Export all enrollments",
+            description = "Streams every enrollment as newline-delimited JSON. Only accessible by teachers.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Enrollments streamed"),
+                    @ApiResponse(responseCode = "404", description = "User is not a teacher")
+            }
+    )
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportEnrollments(@RequestAttribute("userId") Long userId) {
+        teacherService.getTeacher(userId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(enrollmentService.exportEnrollments(EnrollmentController::toDTO));
     }
 
     private ResponseEntity<List<EnrollmentDTO>> toEnrollmentDTO(List<Enrollment> enrollments) {
-        List<EnrollmentDTO> enrollmentDTOs = enrollments.stream()
-                .map(enrollment -> EnrollmentDTO.builder()
-                        .enrollmentId(enrollment.getEnrollmentId())
-                        .student(StudentDTO.builder()
-                                .id(enrollment.getStudent().getUserId())
-                                .username(enrollment.getStudent().getUsername())
-                                .email(enrollment.getStudent().getEmail())
-                                .build())
-                        .courseId(enrollment.getCourse().getCourseId())
-                        .enrollmentDate(enrollment.getEnrollmentDate())
-                        .completionDate(enrollment.getCompletionDate())
+        return ResponseEntity.ok(enrollments.stream().map(EnrollmentController::toDTO).toList());
+    }
+
+    private static EnrollmentDTO toDTO(Enrollment enrollment) {
+        return EnrollmentDTO.builder()
+                .enrollmentId(enrollment.getEnrollmentId())
+                .student(StudentDTO.builder()
+                        .id(enrollment.getStudent().getUserId())
+                        .username(enrollment.getStudent().getUsername())
+                        .email(enrollment.getStudent().getEmail())
                         .build())
-                .toList();
-        return ResponseEntity.ok(enrollmentDTOs);
+                .courseId(enrollment.getCourse().getCourseId())
+                .enrollmentDate(enrollment.getEnrollmentDate())
+                .completionDate(enrollment.getCompletionDate())
+                .build();
     }
 
     @Operation(
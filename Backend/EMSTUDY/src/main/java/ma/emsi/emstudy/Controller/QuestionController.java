@@ -7,6 +7,7 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.CursorPage;
 import ma.emsi.emstudy.Entity.Question;
 import ma.emsi.emstudy.Service.QuestionService;
 import org.springframework.http.ResponseEntity;
@@ -24,15 +25,18 @@ public class QuestionController {
 
     @Operation(
         summary = "Get all questions",
-        description = "Retrieve all questions in the system",
+        description = "Retrieve a page of all questions in the system, ordered by id. " +
+                "Pass the returned `nextCursor` back as `cursor` to get the next page",
         responses = {
-            @ApiResponse(responseCode = "200", description = "List of questions retrieved successfully")
+            @ApiResponse(responseCode = "200", description = "Page of questions retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor")
         }
     )
     @GetMapping("/")
-    public ResponseEntity<List<Question>> getAllQuestions() {
-        List<Question> questions = questionService.getAllQuestions();
-        return ResponseEntity.ok(questions);
+    public ResponseEntity<CursorPage<Question>> getAllQuestions(
+            @Parameter(description = "Cursor returned by the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, capped by the server") @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(questionService.getAllQuestions(cursor, size));
     }
 
     @Operation(
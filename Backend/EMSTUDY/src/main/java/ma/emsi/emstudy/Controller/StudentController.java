@@ -0,0 +1,48 @@
+package ma.emsi.emstudy.Controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.StudentImportResult;
+import ma.emsi.emstudy.Service.StudentImportService;
+import ma.emsi.emstudy.Service.TeacherService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/students")
+@RequiredArgsConstructor
+@Tag(name = "Students", description = "APIs for managing student accounts")
+@SecurityRequirement(name = "bearerAuth")
+public class StudentController {
+
+    private final StudentImportService studentImportService;
+    private final TeacherService teacherService;
+
+    @Operation(
+        summary = "Import a student roster",
+        description = "Registers the students of a CSV file sent as the request body. The header must name the " +
+                "`username`, `email` and `password` columns and may add `studentGroup`. When `joinCode` is given, " +
+                "the students are also enrolled in that course. Only accessible by teachers.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "File processed, see the result of each row"),
+            @ApiResponse(responseCode = "400", description = "Missing or invalid CSV header"),
+            @ApiResponse(responseCode = "403", description = "The course belongs to another teacher"),
+            @ApiResponse(responseCode = "404", description = "User is not a teacher or the join code is invalid")
+        }
+    )
+    @PostMapping(value = "/import", consumes = {"text/csv", "text/plain"})
+    public ResponseEntity<StudentImportResult> importStudents(
+            @RequestAttribute("userId") Long userId,
+            @Parameter(description = "Join code of a course to enroll the students in") @RequestParam(required = false) String joinCode,
+            InputStream csv) throws IOException {
+        teacherService.getTeacher(userId);
+        return ResponseEntity.ok(studentImportService.importStudents(userId, csv, joinCode));
+    }
+}
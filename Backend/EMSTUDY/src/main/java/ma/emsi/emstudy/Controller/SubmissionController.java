@@ -6,6 +6,8 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.CursorPage;
+import ma.emsi.emstudy.DTO.SubmissionDTO;
 import ma.emsi.emstudy.Entity.*;
 import ma.emsi.emstudy.Exception.ForbiddenAccessException;
 import ma.emsi.emstudy.Exception.ResourceNotFoundException;
@@ -13,8 +15,10 @@ import ma.emsi.emstudy.Service.StudentService;
 import ma.emsi.emstudy.Service.SubmissionService;
 import ma.emsi.emstudy.Service.TeacherService; // Added import
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -31,14 +35,49 @@ public class SubmissionController {
 
     @Operation(
         summary = "Get all submissions",
-        description = "Retrieve all quiz submissions in the system",
+        description = "Retrieve a page of all quiz submissions in the system, ordered by id. " +
+                "Pass the returned `nextCursor` back as `cursor` to get the next page",
         responses = {
-            @ApiResponse(responseCode = "200", description = "List of submissions retrieved successfully")
+            @ApiResponse(responseCode = "200", description = "Page of submissions retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor")
         }
     )
     @GetMapping("/all")
-    public ResponseEntity<List<Submission>> getAllSubmissions() {
-        return ResponseEntity.ok(submissionService.getAllSubmissions());
+    public ResponseEntity<CursorPage<Submission>> getAllSubmissions(
+            @Parameter(description = "Cursor returned by the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, capped by the server") @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(submissionService.getAllSubmissions(cursor, size));
+    }
+
+    @Operation(
+        summary = "Export all submissions",
+        description = "Streams every submission as newline-delimited JSON. Only accessible by teachers.",
+        responses = {
+            @ApiResponse(responseCode = "200", description = "Submissions streamed"),
+            @ApiResponse(responseCode = "404", description = "User is not a teacher")
+        }
+    )
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportSubmissions(@RequestAttribute("userId") Long userId) {
+        teacherService.getTeacher(userId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(submissionService.exportSubmissions(SubmissionController::toDTO));
+    }
+
+    // student and quiz come with the export's batch, answers are batch-fetched for many submissions at once
+    private static SubmissionDTO toDTO(Submission submission) {
+        return SubmissionDTO.builder()
+                .submissionId(submission.getSubmissionId())
+                .studentId(submission.getStudent().getUserId())
+                .username(submission.getStudent().getUsername())
+                .quizId(submission.getQuiz().getItemId())
+                .startTime(submission.getStartTime())
+                .endTime(submission.getEndTime())
+                .submitted(submission.isSubmitted())
+                .score(submission.getScore())
+                .answers(submission.getAnswers())
+                .build();
     }
 
     @Operation(
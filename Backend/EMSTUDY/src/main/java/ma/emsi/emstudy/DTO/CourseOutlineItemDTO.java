@@ -0,0 +1,20 @@
+package ma.emsi.emstudy.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// One sidebar entry, read from course_items alone by CourseItemRepo.findOutlineByCourseId
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CourseOutlineItemDTO {
+    private Long itemId;
+    private String title;
+    private String itemType;
+    private LocalDateTime addDate;
+}
@@ -0,0 +1,45 @@
+package ma.emsi.emstudy.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CourseSummaryDTO {
+    private Long courseId;
+    private String name;
+    private String description;
+    private String joinCode;
+    private LocalDate creationDate;
+    private long itemCount;
+    private long enrollmentCount;
+    // enrollments whose course has been completed
+    private long completionCount;
+    // latest item added, item completed, enrollment or course completion
+    private LocalDateTime lastActivity;
+
+    // Used by the JPQL constructor expression in CourseRepo.findSummariesByTeacher
+    public CourseSummaryDTO(Long courseId, String name, String description, String joinCode, LocalDate creationDate,
+                            Long itemCount, Long enrollmentCount, Long completionCount,
+                            LocalDateTime lastItemAdded, LocalDateTime lastItemCompleted,
+                            LocalDate lastEnrollment, LocalDate lastCompletion) {
+        this(courseId, name, description, joinCode, creationDate, itemCount, enrollmentCount, completionCount,
+                Stream.of(lastItemAdded, lastItemCompleted, atStartOfDay(lastEnrollment), atStartOfDay(lastCompletion))
+                        .filter(Objects::nonNull)
+                        .max(LocalDateTime::compareTo)
+                        .orElse(null));
+    }
+
+    private static LocalDateTime atStartOfDay(LocalDate date) {
+        return date == null ? null : date.atStartOfDay();
+    }
+}
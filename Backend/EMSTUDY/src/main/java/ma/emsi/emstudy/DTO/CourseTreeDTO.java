@@ -0,0 +1,72 @@
+package ma.emsi.emstudy.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ma.emsi.emstudy.Entity.CourseMaterialType;
+import ma.emsi.emstudy.Entity.QuestionType;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CourseTreeDTO {
+    private Long courseId;
+    private String name;
+    private String description;
+    private String joinCode;
+    private LocalDate creationDate;
+    private List<Item> items;
+
+    // A material or a quiz, shaped like the CourseItem JSON so clients can use either
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Item {
+        private Long itemId;
+        private String itemType;
+        private String title;
+        private LocalDateTime addDate;
+
+        // materials only
+        private CourseMaterialType courseMaterialType;
+        private String url;
+        private String description;
+
+        // quizzes only
+        private Integer durationInMinutes;
+        private Boolean showCorrectAnswers;
+        private List<QuestionNode> questions;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class QuestionNode {
+        private Long questionId;
+        private String questionText;
+        private Integer points;
+        private QuestionType questionType;
+        private String explanation;
+        private List<AnswerNode> answers;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class AnswerNode {
+        private Long answerId;
+        private String answerText;
+        private boolean correct;
+    }
+}
@@ -0,0 +1,18 @@
+package ma.emsi.emstudy.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JoinCodeDTO {
+    private Long courseId;
+    private String joinCode;
+    private Instant expiresAt;
+}
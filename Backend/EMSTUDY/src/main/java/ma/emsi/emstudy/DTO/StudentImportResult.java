@@ -0,0 +1,44 @@
+package ma.emsi.emstudy.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StudentImportResult {
+    private int created;
+    private int existing;
+    private int failed;
+    private int enrolled;
+    private List<Row> rows;
+
+    public enum Status {
+        CREATED,
+        // the email already belongs to an account, which is left untouched
+        EXISTING,
+        // the email appears earlier in the same file
+        DUPLICATE,
+        INVALID,
+        // valid, but its chunk could not be written
+        FAILED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Row {
+        private long line;
+        private String email;
+        private Status status;
+        private Long userId;
+        private boolean enrolled;
+        private String message;
+    }
+}
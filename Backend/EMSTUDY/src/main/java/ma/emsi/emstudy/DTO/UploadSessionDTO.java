@@ -0,0 +1,26 @@
+package ma.emsi.emstudy.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ma.emsi.emstudy.Entity.CourseMaterial;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSessionDTO {
+    private String uploadId;
+    private String fileName;
+    private long size;
+    // bytes received so far, where the next chunk starts
+    private long offset;
+    // largest chunk accepted
+    private long chunkSize;
+    private Instant expiresAt;
+    // set once the last chunk has arrived
+    private CourseMaterial material;
+}
@@ -2,8 +2,10 @@ package ma.emsi.emstudy;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class EmstudyApplication {
 
     public static void main(String[] args) {
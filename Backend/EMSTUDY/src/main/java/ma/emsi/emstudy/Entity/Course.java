@@ -1,20 +1,27 @@
 package ma.emsi.emstudy.Entity;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
-@Table(name = "courses")
+@Table(name = "courses", uniqueConstraints = {@UniqueConstraint(columnNames = {"join_code"}, name = "uk_course_join_code")})
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
@@ -25,16 +32,26 @@ public class Course {
     private Long courseId;
 
     private String joinCode;
+    // null = the join code never expires
+    private Instant joinCodeExpiresAt;
     private String Name;
     private String Description;
     private LocalDate creationDate;
 
+    // bumped in SQL by CourseVersionListener, so the copy on a loaded or cached entity may be
+    // behind; read it with CourseRepo.findContentVersion
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long contentVersion;
+
     @ManyToOne
     @JoinColumn(name = "teacher_id")
     @JsonBackReference(value = "teacher_courses")
     private Teacher teacher;
 
     @OneToMany(mappedBy = "course", cascade = CascadeType.ALL)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonManagedReference(value = "course_courseItems")
     private List<CourseItem> courseItems = new ArrayList<>();
 
@@ -45,15 +62,4 @@ public class Course {
     @OneToMany(mappedBy = "course", cascade = CascadeType.ALL)
     @JsonManagedReference(value = "course_enrollments")
     private List<Enrollment> enrollments = new ArrayList<>();
-
-    @PrePersist
-    protected void generateJoinCode() {
-        if (this.joinCode == null) {
-            StringBuilder code = new StringBuilder();
-            for (int i = 0; i < 8; i++) {
-                code.append((char) ('A' + (int) (Math.random() * 26)));
-            }
-            this.joinCode = code.toString();
-        }
-    }
 }
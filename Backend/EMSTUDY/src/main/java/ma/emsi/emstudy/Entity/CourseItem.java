@@ -8,14 +8,18 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Data
-@Table(name = "course_items")
+@Table(name = "course_items", indexes = @Index(name = "idx_course_items_course_order", columnList = "course_id, sort_order"))
 @Inheritance(strategy = InheritanceType.JOINED)
 @DiscriminatorColumn(name = "itemType")
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXISTING_PROPERTY, property = "itemType")
@@ -31,6 +35,8 @@ public abstract class CourseItem {
     private Long itemId;
     private String title;
     private LocalDateTime addDate;
+    // position in the course, null for items created before it existed (they sort first, by date)
+    private Integer sortOrder;
 
     @Column(insertable = false, updatable = false)
     private String itemType;
@@ -9,7 +9,7 @@ import org.springframework.boot.autoconfigure.web.WebProperties;
 
 @Entity
 @Data
-@Table(name = "course_materials")
+@Table(name = "course_materials", indexes = @Index(name = "idx_course_materials_url", columnList = "url"))
 @DiscriminatorValue("CM")
 @AllArgsConstructor
 @NoArgsConstructor
@@ -23,4 +23,15 @@ public class CourseMaterial extends CourseItem{
 
     private String description;
 
+    // taken while the file was stored, so that serving it needs no lookups on the filesystem;
+    // null for materials stored before they were kept
+    private Long fileSize;
+
+    private String contentType;
+
+    @Column(length = 64)
+    private String sha256;
+
+    private String originalFileName;
+
 }
@@ -0,0 +1,49 @@
+package ma.emsi.emstudy.Entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A chunked upload in progress. Its bytes are appended to a partial file in the upload
+ * directory; {@code received} only moves once a chunk is on disk and has passed its checksum,
+ * so a client that lost its connection resumes from there. The material is created when the
+ * last byte arrives and the session is removed with it.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "upload_sessions", indexes = @Index(name = "idx_upload_sessions_expires", columnList = "expiresAt"))
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String uploadId;
+
+    @Column(nullable = false)
+    private Long teacherId;
+
+    @Column(nullable = false)
+    private Long courseId;
+
+    private String title;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    private String contentType;
+
+    @Column(nullable = false)
+    private long size;
+
+    private long received;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+}
@@ -1,5 +1,6 @@
 package ma.emsi.emstudy.Entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -7,6 +8,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
@@ -15,7 +17,7 @@ import java.util.UUID;
 @DiscriminatorColumn(name = "role")
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_email", columnList = "email"))
 public abstract class User {
 
     @Id
@@ -26,4 +28,8 @@ public abstract class User {
     private String email;
     @Column(insertable = false, updatable = false)
     private String role;
+
+    // JWTs issued before this instant are rejected, set whenever the account changes
+    @JsonIgnore
+    private Instant tokensValidAfter;
 }
\ No newline at end of file
@@ -1,14 +1,36 @@
 package ma.emsi.emstudy.Repository;
 
+import jakarta.persistence.QueryHint;
+import ma.emsi.emstudy.DTO.CourseOutlineItemDTO;
 import ma.emsi.emstudy.Entity.CourseItem;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface CourseItemRepo extends JpaRepository<CourseItem, Long> {
+public interface CourseItemRepo extends JpaRepository<CourseItem, Long>, KeysetRepository<CourseItem> {
+     // cached ids; the items themselves come from the second-level cache
+     @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
      List<CourseItem> findByCourseCourseId(Long courseId);
      List<CourseItem> findCourseItemsByCourse_CourseId(Long courseId);
      List<CourseItem> findByItemType(String itemType);
+
+     // one query over the joined subclass tables
+     @Query("select i from CourseItem i where i.course.courseId = :courseId order by i.sortOrder, i.addDate, i.itemId")
+     @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+     List<CourseItem> findOrderedByCourseId(@Param("courseId") Long courseId);
+
+     // only base-table columns, so Hibernate doesn't join the subclass tables
+     @Query("select new ma.emsi.emstudy.DTO.CourseOutlineItemDTO(i.itemId, i.title, i.itemType, i.addDate) " +
+             "from CourseItem i where i.course.courseId = :courseId order by i.sortOrder, i.addDate, i.itemId")
+     @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+     List<CourseOutlineItemDTO> findOutlineByCourseId(@Param("courseId") Long courseId);
+
+     @Query("select coalesce(max(i.sortOrder) + 1, 0) from CourseItem i where i.course.courseId = :courseId")
+     int findNextSortOrder(@Param("courseId") Long courseId);
 }
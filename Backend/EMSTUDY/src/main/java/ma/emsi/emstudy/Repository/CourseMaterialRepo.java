@@ -2,10 +2,46 @@ package ma.emsi.emstudy.Repository;
 
 import ma.emsi.emstudy.Entity.CourseMaterial;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 @Repository
 public interface CourseMaterialRepo extends JpaRepository<CourseMaterial, Long> {
 
+    // materials sharing a stored file, i.e. its reference count
+    long countByUrl(String url);
+
+    // stored files of materials saved before materials kept their size, hash and type
+    @Query("select distinct m.url from CourseMaterial m where m.url is not null "
+            + "and (m.fileSize is null or m.sha256 is null or m.contentType is null)")
+    List<String> findUrlsWithoutFileMetadata();
+
+    // also fills in the file metadata of materials stored before it was kept; bulk updates skip the
+    // version listener, so the courses serving the file get their new version in the same transaction
+    @Transactional
+    default int replaceFile(String oldUrl, String newUrl, long fileSize, String sha256, String contentType,
+                            String originalFileName) {
+        bumpContentVersion(oldUrl);
+        return updateFile(oldUrl, newUrl, fileSize, sha256, contentType, originalFileName);
+    }
+
+    @Modifying
+    @Query("update Course c set c.contentVersion = c.contentVersion + 1 "
+            + "where c.courseId in (select m.course.courseId from CourseMaterial m where m.url = :url)")
+    int bumpContentVersion(@Param("url") String url);
+
+    @Modifying
+    @Query("update CourseMaterial m set m.url = :newUrl, m.fileSize = :fileSize, m.sha256 = :sha256, "
+            + "m.contentType = coalesce(m.contentType, :contentType), "
+            + "m.originalFileName = coalesce(m.originalFileName, :originalFileName) "
+            + "where m.url = :oldUrl")
+    int updateFile(@Param("oldUrl") String oldUrl, @Param("newUrl") String newUrl, @Param("fileSize") long fileSize,
+                   @Param("sha256") String sha256, @Param("contentType") String contentType,
+                   @Param("originalFileName") String originalFileName);
 }
 
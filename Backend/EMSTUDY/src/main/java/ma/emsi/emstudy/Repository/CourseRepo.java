@@ -1,15 +1,58 @@
 package ma.emsi.emstudy.Repository;
 
+import ma.emsi.emstudy.DTO.CourseSummaryDTO;
 import ma.emsi.emstudy.Entity.Course;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CourseRepo extends JpaRepository<Course, Long> {
     Optional<Course> findByJoinCode(String joinCode);
+    boolean existsByJoinCode(String joinCode);
+
+    @Query("select c.courseId as courseId, c.joinCodeExpiresAt as expiresAt from Course c where c.joinCode = :joinCode")
+    Optional<JoinCodeTarget> findJoinCodeTarget(@Param("joinCode") String joinCode);
+
+    @Modifying
+    @Transactional
+    @Query("update Course c set c.joinCode = :joinCode, c.joinCodeExpiresAt = :expiresAt, c.contentVersion = c.contentVersion + 1 "
+            + "where c.courseId = :courseId")
+    int updateJoinCode(@Param("courseId") Long courseId, @Param("joinCode") String joinCode, @Param("expiresAt") Instant expiresAt);
+
+    @Query("select c.contentVersion from Course c where c.courseId = :courseId")
+    Optional<Long> findContentVersion(@Param("courseId") Long courseId);
+
     Boolean existsByTeacherUserIdAndCourseId(Long teacherId, Long courseId);
     List<Course> findByTeacherUserId(Long teacherId);
-}
\ No newline at end of file
+
+    // one row per course, the counts come from correlated subqueries instead of loading the collections
+    @Query(value = """
+            select new ma.emsi.emstudy.DTO.CourseSummaryDTO(c.courseId, c.Name, c.Description, c.joinCode, c.creationDate,
+                (select count(i) from CourseItem i where i.course = c),
+                (select count(e) from Enrollment e where e.course = c),
+                (select count(e) from Enrollment e where e.course = c and e.completionDate is not null),
+                (select max(i.addDate) from CourseItem i where i.course = c),
+                (select max(cc.completedAt) from CompletedCourseItem cc where cc.course = c),
+                (select max(e.enrollmentDate) from Enrollment e where e.course = c),
+                (select max(e.completionDate) from Enrollment e where e.course = c))
+            from Course c
+            where c.teacher.userId = :teacherId
+            """,
+            countQuery = "select count(c) from Course c where c.teacher.userId = :teacherId")
+    Page<CourseSummaryDTO> findSummariesByTeacher(@Param("teacherId") Long teacherId, Pageable pageable);
+
+    interface JoinCodeTarget {
+        Long getCourseId();
+        Instant getExpiresAt();
+    }
+}
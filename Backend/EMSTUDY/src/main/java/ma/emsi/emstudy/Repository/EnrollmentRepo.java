@@ -1,15 +1,32 @@
 package ma.emsi.emstudy.Repository;
 
 import ma.emsi.emstudy.Entity.Enrollment;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
-public interface EnrollmentRepo extends JpaRepository<Enrollment, Long> {
+public interface EnrollmentRepo extends JpaRepository<Enrollment, Long>, KeysetRepository<Enrollment> {
+    @Override
+    @EntityGraph(attributePaths = {"student", "course"})
+    Window<Enrollment> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
     List<Enrollment> findByStudentUserId(Long studentId);
     List<Enrollment> findByCourse_CourseId(Long courseId);
     Optional<Enrollment> findByStudentUserIdAndCourse_CourseId(Long studentId, Long courseId);
+    boolean existsByStudentUserIdAndCourse_CourseId(Long studentId, Long courseId);
+
+    @Query("select e.student.userId from Enrollment e where e.course.courseId = :courseId and e.student.userId in :studentIds")
+    Set<Long> findEnrolledStudentIds(@Param("courseId") Long courseId, @Param("studentIds") Collection<Long> studentIds);
 }
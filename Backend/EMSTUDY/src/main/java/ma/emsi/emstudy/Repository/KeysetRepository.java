@@ -0,0 +1,17 @@
+package ma.emsi.emstudy.Repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.repository.NoRepositoryBean;
+
+/**
+ * Keyset ("seek") listing for the repositories behind list endpoints: a page starts right after
+ * the key of the previous page's last row, so reading deep pages costs the same as the first.
+ * Use it through {@link ma.emsi.emstudy.Service.PaginationService}, which sorts on the primary key.
+ */
+@NoRepositoryBean
+public interface KeysetRepository<T> {
+    Window<T> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+}
@@ -1,12 +1,22 @@
 package ma.emsi.emstudy.Repository;
 
+import jakarta.persistence.QueryHint;
 import ma.emsi.emstudy.Entity.Question;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface QuestionRepo extends JpaRepository<Question, Long> {
+public interface QuestionRepo extends JpaRepository<Question, Long>, KeysetRepository<Question> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Question> findByQuizItemId(Long quizId);
+
+    @Query("select q from Question q left join fetch q.answers a where q.quiz.itemId in :quizIds order by q.questionId, a.answerId")
+    List<Question> findWithAnswersByQuizIds(@Param("quizIds") Collection<Long> quizIds);
 }
@@ -1,6 +1,11 @@
 package ma.emsi.emstudy.Repository;
 
 import ma.emsi.emstudy.Entity.Submission;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -8,7 +13,11 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface SubmissionRepo extends JpaRepository<Submission, Long> {
+public interface SubmissionRepo extends JpaRepository<Submission, Long>, KeysetRepository<Submission> {
+    @Override
+    @EntityGraph(attributePaths = {"student", "quiz"})
+    Window<Submission> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
     List<Submission> findByStudentUserId(Long studentUserId);
 
     Optional<Submission> findByStudentUserIdAndQuizItemId(Long studentId, Long quizId);
@@ -0,0 +1,13 @@
+package ma.emsi.emstudy.Repository;
+
+import ma.emsi.emstudy.Entity.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepo extends JpaRepository<UploadSession, String> {
+    List<UploadSession> findByExpiresAtBefore(Instant now);
+}
@@ -3,8 +3,15 @@ package ma.emsi.emstudy.Repository;
 import ma.emsi.emstudy.Entity.Student;
 import ma.emsi.emstudy.Entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +20,31 @@ public interface UserRepo extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
-    Optional<User> findByUserIdAndRoleEquals(Long id, String role);}
+    Optional<User> findByUserIdAndRoleEquals(Long id, String role);
+
+    @Query("select u.userId as userId, u.tokensValidAfter as tokensValidAfter from User u where u.tokensValidAfter > :since")
+    List<TokenCutoff> findTokenCutoffsSince(@Param("since") Instant since);
+
+    @Modifying
+    @Query("update User u set u.tokensValidAfter = :validAfter where u.userId = :userId")
+    int updateTokensValidAfter(@Param("userId") Long userId, @Param("validAfter") Instant validAfter);
+
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :password where u.userId = :userId")
+    int updatePassword(@Param("userId") Long userId, @Param("password") String password);
+
+    @Query("select u.userId as userId, u.email as email, u.role as role from User u where u.email in :emails")
+    List<EmailOwner> findEmailOwners(@Param("emails") Collection<String> emails);
+
+    interface TokenCutoff {
+        Long getUserId();
+        Instant getTokensValidAfter();
+    }
+
+    interface EmailOwner {
+        Long getUserId();
+        String getEmail();
+        String getRole();
+    }
+}
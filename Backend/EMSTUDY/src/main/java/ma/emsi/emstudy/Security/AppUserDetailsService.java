@@ -3,21 +3,32 @@ package ma.emsi.emstudy.Security;
 import lombok.RequiredArgsConstructor;
 import ma.emsi.emstudy.Entity.User;
 import ma.emsi.emstudy.Repository.UserRepo;
-import org.springframework.boot.web.servlet.ServletComponentScan;
+import ma.emsi.emstudy.Service.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.stereotype.Service;
 
 @RequiredArgsConstructor
-public class AppUserDetailsService implements UserDetailsService {
+public class AppUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepo userRepo;
+    private final UserCache userCache;
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        User user = userRepo.findByEmail(email)
+        User user = userCache.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
         return new AppUserDetails(user);
     }
+
+    // Called after a successful login whose hash was made with a lower BCrypt strength
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = ((AppUserDetails) userDetails).getUser();
+        userRepo.updatePassword(user.getUserId(), newPassword);
+        userCache.invalidate(user);
+        user.setPassword(newPassword);
+        return new AppUserDetails(user);
+    }
 }
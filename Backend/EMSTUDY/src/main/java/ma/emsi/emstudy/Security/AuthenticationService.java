@@ -1,21 +1,32 @@
 package ma.emsi.emstudy.Security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.CredentialsExpiredException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
@@ -23,9 +34,33 @@ public class AuthenticationService {
 
     private final UserDetailsService userDetailsService;
     private final AuthenticationManager authenticationManager;
-    private final Long jwtExpirationMs = 86400000L; // 1 day
+    private final TokenRevocationService tokenRevocationService;
+    @Value("${jwt.expiration-ms:86400000}")
+    private Long jwtExpirationMs;
     @Value("${jwt.secret}")
     private String secretKey;
+    // Build the principal from the verified claims instead of loading the user on every request
+    @Value("${jwt.claims-only:true}")
+    private boolean claimsOnly;
+    @Value("${jwt.verified-cache-size:10000}")
+    private long verifiedCacheSize;
+
+    private Key signingKey;
+    private JwtParser jwtParser;
+    // SHA-256 of the token -> claims, so parallel calls with the same token verify its signature once
+    private Cache<String, Claims> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new UntilTokenExpiry())
+                .build();
+    }
 
     public UserDetails authenticate(String email, String password) {
         authenticationManager.authenticate(
@@ -34,6 +69,10 @@ public class AuthenticationService {
         return userDetailsService.loadUserByUsername(email);
     }
 
+    public long getAccessTokenTtlSeconds() {
+        return jwtExpirationMs / 1000;
+    }
+
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
         AppUserDetails appUserDetails = (AppUserDetails) userDetails;
@@ -46,26 +85,53 @@ public class AuthenticationService {
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     public UserDetails validateToken(String token) {
-        String username = extractUsername(token);
-        return userDetailsService.loadUserByUsername(username);
+        Claims claims = extractClaims(token);
+        UserDetails userDetails = claimsOnly
+                ? JwtPrincipal.fromClaims(claims)
+                : userDetailsService.loadUserByUsername(claims.getSubject());
+        Long userId = userDetails instanceof JwtPrincipal principal
+                ? principal.getId()
+                : ((AppUserDetails) userDetails).getId();
+        if (tokenRevocationService.isRevoked(userId, claims.getIssuedAt())) {
+            throw new CredentialsExpiredException("Token has been revoked");
+        }
+        return userDetails;
     }
 
-    private String extractUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    private Claims extractClaims(String token) {
+        return verifiedTokens.get(hash(token), tokenHash -> jwtParser.parseClaimsJws(token).getBody());
+    }
+
+    /** Keeps verified claims exactly as long as the token itself is valid. */
+    private static class UntilTokenExpiry implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String tokenHash, Claims claims, long currentTime) {
+            long remainingMs = claims.getExpiration().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+        }
+
+        @Override
+        public long expireAfterUpdate(String tokenHash, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String tokenHash, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 
-    private Key getSigningKey() {
-        byte[] keyBytes = secretKey.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 }
\ No newline at end of file
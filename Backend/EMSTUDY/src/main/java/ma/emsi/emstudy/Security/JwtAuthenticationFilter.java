@@ -32,12 +32,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 );
                 SecurityContextHolder.getContext().setAuthentication(authentication);
 
-                if (userDetails instanceof AppUserDetails) {
+                if (userDetails instanceof JwtPrincipal) {
+                    request.setAttribute("userId", ((JwtPrincipal) userDetails).getId());
+                } else if (userDetails instanceof AppUserDetails) {
                     request.setAttribute("userId", ((AppUserDetails) userDetails).getId());
                 }
 
             } catch (Exception e) {
-                throw new ServletException("Invalid JWT token", e);
+                // Answer 401 so clients know to renew the access token through /auth/refresh
+                SecurityContextHolder.clearContext();
+                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                response.setContentType("application/json");
+                response.getWriter().write("{\"error\": \"Unauthorized: invalid or expired token\"}");
+                return;
             }
         }
 
@@ -45,6 +52,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     }
 
 
+    // Login, refresh and logout must keep working while the client still holds an expired access token
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getServletPath().startsWith("/auth/");
+    }
+
     private String extractToken(HttpServletRequest request) {
         String authHeader = request.getHeader("Authorization");
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
@@ -0,0 +1,63 @@
+package ma.emsi.emstudy.Security;
+
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Principal rebuilt from the claims of an already verified JWT, so that authenticated
+ * requests don't need to load the {@link ma.emsi.emstudy.Entity.User} from the database.
+ */
+@RequiredArgsConstructor
+public class JwtPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String email;
+    private final String displayName;
+    private final String role;
+
+    public static JwtPrincipal fromClaims(Claims claims) {
+        Object userId = claims.get("userId");
+        if (!(userId instanceof Number number)) {
+            throw new IllegalArgumentException("Token does not carry a userId claim");
+        }
+        return new JwtPrincipal(
+                number.longValue(),
+                claims.getSubject(),
+                claims.get("username", String.class),
+                claims.get("role", String.class)
+        );
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority(role));
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getRole() {
+        return role;
+    }
+}
@@ -0,0 +1,104 @@
+package ma.emsi.emstudy.Security;
+
+import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.Entity.RefreshToken;
+import ma.emsi.emstudy.Exception.InvalidTokenException;
+import ma.emsi.emstudy.Repository.RefreshTokenRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque, single-use refresh tokens. Every refresh consumes the presented token and issues
+ * a new one in the same family; presenting an already consumed token revokes the family.
+ */
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final RefreshTokenRepo refreshTokenRepo;
+
+    @Value("${jwt.refresh-expiration-ms:1209600000}")
+    private long refreshExpirationMs;
+
+    public record Rotation(Long userId, String refreshToken) {
+    }
+
+    @Transactional
+    public String issue(Long userId) {
+        return create(userId, UUID.randomUUID().toString());
+    }
+
+    // The family deletions must be committed even though the refresh itself is refused
+    @Transactional(noRollbackFor = InvalidTokenException.class)
+    public Rotation rotate(String rawToken) {
+        if (rawToken == null || rawToken.isBlank()) {
+            throw new InvalidTokenException("Refresh token is required");
+        }
+        RefreshToken current = refreshTokenRepo.findByTokenHash(hash(rawToken))
+                .orElseThrow(() -> new InvalidTokenException("Invalid refresh token"));
+        if (current.getExpiresAt().isBefore(Instant.now())) {
+            refreshTokenRepo.deleteFamily(current.getFamilyId());
+            throw new InvalidTokenException("Refresh token has expired");
+        }
+        if (refreshTokenRepo.markUsed(current.getRefreshTokenId()) == 0) {
+            // A consumed token came back: assume it leaked and end the whole session
+            refreshTokenRepo.deleteFamily(current.getFamilyId());
+            throw new InvalidTokenException("Refresh token reuse detected");
+        }
+        return new Rotation(current.getUserId(), create(current.getUserId(), current.getFamilyId()));
+    }
+
+    @Transactional
+    public void revoke(String rawToken) {
+        if (rawToken == null || rawToken.isBlank()) {
+            return;
+        }
+        refreshTokenRepo.findByTokenHash(hash(rawToken))
+                .ifPresent(token -> refreshTokenRepo.deleteFamily(token.getFamilyId()));
+    }
+
+    @Transactional
+    public void revokeAll(Long userId) {
+        refreshTokenRepo.deleteByUserId(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh-purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        refreshTokenRepo.deleteExpired(Instant.now());
+    }
+
+    private String create(Long userId, String familyId) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepo.save(RefreshToken.builder()
+                .tokenHash(hash(rawToken))
+                .familyId(familyId)
+                .userId(userId)
+                .expiresAt(Instant.now().plusMillis(refreshExpirationMs))
+                .build());
+        return rawToken;
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(rawToken.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package ma.emsi.emstudy.Security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 import ma.emsi.emstudy.Repository.UserRepo;
+import ma.emsi.emstudy.Service.UserCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -11,7 +15,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -27,9 +30,11 @@ public class SecurityConfig {
         return new JwtAuthenticationFilter(authenticationService);
     }
 
+    // Declared with its concrete type so the authentication provider also picks it up as the
+    // UserDetailsPasswordService used to rehash passwords when the BCrypt strength changes
     @Bean
-    public UserDetailsService userDetailsService(UserRepo userRepo) {
-        return new AppUserDetailsService(userRepo);
+    public AppUserDetailsService userDetailsService(UserRepo userRepo, UserCache userCache) {
+        return new AppUserDetailsService(userRepo, userCache);
     }
 
     @Bean
@@ -45,6 +50,8 @@ public class SecurityConfig {
 
                 .authorizeHttpRequests(registry -> registry
 
+                        // lets the status of an exception (404, 409, ...) through instead of a 401 on the error dispatch
+                        .dispatcherTypeMatchers(DispatcherType.ERROR).permitAll()
                         .requestMatchers(HttpMethod.POST, "/auth/**").permitAll()
                         .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
 
@@ -74,8 +81,13 @@ public class SecurityConfig {
     }
 
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(@Value("${security.bcrypt.strength:10}") int strength,
+                                           @Value("${security.bcrypt.threads:0}") int threads,
+                                           @Value("${security.bcrypt.queue-capacity:64}") int queueCapacity,
+                                           @Value("${security.bcrypt.timeout-ms:5000}") long timeoutMs,
+                                           MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), poolSize, queueCapacity, timeoutMs, meterRegistry);
     }
 
     @Bean
@@ -0,0 +1,76 @@
+package ma.emsi.emstudy.Security;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.Repository.UserRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the "tokens issued before" cutoff of every account that changed within the last
+ * token lifetime. Only those accounts can still hold a signed but no longer acceptable token,
+ * so the map stays small and checking a token never needs the database. The map is reloaded
+ * every {@code jwt.revocation-refresh-ms}, so a cutoff set on another instance applies here
+ * within that delay.
+ */
+@Service
+@RequiredArgsConstructor
+public class TokenRevocationService {
+
+    private final UserRepo userRepo;
+    private final RefreshTokenService refreshTokenService;
+    private final Map<Long, Instant> cutoffs = new ConcurrentHashMap<>();
+
+    @Value("${jwt.expiration-ms:86400000}")
+    private long jwtExpirationMs;
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${jwt.revocation-refresh-ms:10000}")
+    void loadRecentCutoffs() {
+        Instant since = Instant.now().minusMillis(jwtExpirationMs);
+        userRepo.findTokenCutoffsSince(since)
+                .forEach(cutoff -> cutoffs.merge(cutoff.getUserId(), cutoff.getTokensValidAfter(), TokenRevocationService::later));
+    }
+
+    public boolean isRevoked(Long userId, Date issuedAt) {
+        Instant cutoff = cutoffs.get(userId);
+        if (cutoff == null) {
+            return false;
+        }
+        if (cutoff.plusMillis(jwtExpirationMs).isBefore(Instant.now())) {
+            // every token issued before the cutoff has expired by now
+            cutoffs.remove(userId, cutoff);
+            return false;
+        }
+        if (issuedAt == null) {
+            return true;
+        }
+        // "iat" only has second precision, a token issued in the second of the cutoff may predate it
+        return !issuedAt.toInstant().isAfter(cutoff.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    /**
+     * Rejects every access token of the user issued before now and drops all of their refresh
+     * tokens. The cutoff is persisted so it survives a restart, except for deleted accounts
+     * whose row is about to disappear.
+     */
+    @Transactional
+    public void revokeAllTokens(Long userId) {
+        Instant now = Instant.now();
+        userRepo.updateTokensValidAfter(userId, now);
+        refreshTokenService.revokeAll(userId);
+        cutoffs.merge(userId, now, TokenRevocationService::later);
+    }
+
+    private static Instant later(Instant previous, Instant current) {
+        return previous.isAfter(current) ? previous : current;
+    }
+}
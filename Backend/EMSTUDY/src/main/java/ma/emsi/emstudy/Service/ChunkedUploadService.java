@@ -0,0 +1,293 @@
+package ma.emsi.emstudy.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.emstudy.DTO.UploadSessionDTO;
+import ma.emsi.emstudy.DTO.UploadSessionRequest;
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Entity.CourseMaterialType;
+import ma.emsi.emstudy.Entity.UploadSession;
+import ma.emsi.emstudy.Exception.ForbiddenAccessException;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Exception.ResourceNotFoundException;
+import ma.emsi.emstudy.Exception.UploadOffsetMismatchException;
+import ma.emsi.emstudy.Repository.UploadSessionRepo;
+import ma.emsi.emstudy.Service.FileStorageService.StoredFile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resumable uploads for files past the multipart limit. A session is opened with the file's
+ * size, then the file is sent as consecutive chunks, each at the offset the server reported and
+ * optionally with a {@code Content-Digest} (RFC 9530) that it is checked against. Chunks are
+ * written straight from the request into the partial file, which becomes the stored file once
+ * the last one arrives, so nothing is buffered in memory or copied a second time; the material
+ * row is only created then. A client that lost its connection asks for the offset and goes on
+ * from there. Sessions left idle for longer than {@code file.chunked.session-ttl} are removed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkedUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepo uploadSessionRepo;
+    private final FileStorageService fileStorageService;
+    private final CourseMaterialService courseMaterialService;
+
+    // running hash of the bytes received by each session, so completing one doesn't read the file
+    // again; rebuilt from the partial file when missing, e.g. after a restart. Chunks of one
+    // session are written while holding its entry.
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+
+    @Value("${file.chunked.chunk-size:8MB}")
+    private DataSize chunkSize;
+
+    @Value("${file.chunked.max-file-size:2GB}")
+    private DataSize maxFileSize;
+
+    @Value("${file.chunked.session-ttl:24h}")
+    private Duration sessionTtl;
+
+    public UploadSessionDTO start(UploadSessionRequest request, Long teacherId) {
+        if (request.getSize() <= 0 || request.getSize() > maxFileSize.toBytes()) {
+            throw new InvalidInputException("File size must be between 1 byte and " + maxFileSize);
+        }
+        if (!StringUtils.hasText(request.getFileName())) {
+            throw new InvalidInputException("File name is required");
+        }
+        UploadSession session = uploadSessionRepo.save(UploadSession.builder()
+                .uploadId(UUID.randomUUID().toString())
+                .teacherId(teacherId)
+                .courseId(request.getCourseId())
+                .title(request.getTitle())
+                .fileName(StringUtils.cleanPath(request.getFileName()))
+                .contentType(request.getContentType())
+                .size(request.getSize())
+                .expiresAt(Instant.now().plus(sessionTtl))
+                .build());
+        return toDTO(session, null);
+    }
+
+    public UploadSessionDTO getSession(String uploadId, Long teacherId) {
+        return toDTO(findSession(uploadId, teacherId), null);
+    }
+
+    /**
+     * Writes one chunk at {@code offset}, which has to be where the previous one ended.
+     *
+     * @param contentDigest the chunk's {@code Content-Digest} header, or null
+     * @return the session, with the created material once this was the last chunk
+     */
+    public UploadSessionDTO appendChunk(String uploadId, Long teacherId, long offset, String contentDigest,
+                                        InputStream body) throws IOException {
+        UploadSession session = findSession(uploadId, teacherId);
+        byte[] expectedDigest = parseContentDigest(contentDigest);
+        Path partial = fileStorageService.getPartialPath(uploadId);
+        Progress current = progress.computeIfAbsent(uploadId, id -> new Progress());
+        synchronized (current) {
+            // the entity may be older than a chunk written meanwhile by another request
+            session = findSession(uploadId, teacherId);
+            if (offset != session.getReceived()) {
+                throw new UploadOffsetMismatchException("Upload " + uploadId + " continues at offset " + session.getReceived());
+            }
+            if (current.digest == null || current.offset != offset) {
+                current.digest = hashPrefix(partial, offset);
+                current.offset = offset;
+            }
+            long limit = Math.min(chunkSize.toBytes(), session.getSize() - offset);
+            MessageDigest chunkDigest = FileStorageService.sha256();
+            long written;
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // whatever a failed chunk left past the offset goes
+                channel.truncate(offset);
+                written = write(body, channel, offset, limit, current.digest, chunkDigest);
+                if (expectedDigest != null && !MessageDigest.isEqual(expectedDigest, chunkDigest.digest())) {
+                    channel.truncate(offset);
+                    throw new InvalidInputException("Chunk at offset " + offset + " doesn't match its Content-Digest");
+                }
+                // on disk before the offset says it is
+                channel.force(false);
+            } catch (IOException | RuntimeException e) {
+                current.digest = null;
+                throw e;
+            }
+
+            current.offset = offset + written;
+            session.setReceived(current.offset);
+            session.setExpiresAt(Instant.now().plus(sessionTtl));
+            if (session.getReceived() < session.getSize()) {
+                return toDTO(uploadSessionRepo.save(session), null);
+            }
+            CourseMaterial material;
+            try {
+                material = complete(session, partial, HexFormat.of().formatHex(current.digest.digest()));
+            } catch (IOException | RuntimeException e) {
+                // the session and the partial file stay, so the client can send the last chunk again
+                session.setReceived(offset);
+                current.digest = null;
+                throw e;
+            }
+            progress.remove(uploadId);
+            uploadSessionRepo.deleteById(uploadId);
+            Files.deleteIfExists(partial);
+            return toDTO(session, material);
+        }
+    }
+
+    public void abort(String uploadId, Long teacherId) throws IOException {
+        findSession(uploadId, teacherId);
+        Progress current = progress.computeIfAbsent(uploadId, id -> new Progress());
+        synchronized (current) {
+            progress.remove(uploadId);
+            uploadSessionRepo.deleteById(uploadId);
+            Files.deleteIfExists(fileStorageService.getPartialPath(uploadId));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${file.chunked.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        for (UploadSession session : uploadSessionRepo.findByExpiresAtBefore(Instant.now())) {
+            try {
+                abort(session.getUploadId(), session.getTeacherId());
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not remove expired upload {}", session.getUploadId(), e);
+            }
+        }
+    }
+
+    private CourseMaterial complete(UploadSession session, Path partial, String sha256) throws IOException {
+        StoredFile storedFile = fileStorageService.storeHashed(partial, sha256, session.getSize(), session.getFileName());
+        try {
+            CourseMaterial material = new CourseMaterial();
+            material.setTitle(session.getTitle());
+            material.setCourseMaterialType(CourseMaterialType.from(session.getContentType()));
+            fileStorageService.attach(material, storedFile);
+            return courseMaterialService.addCourseItem(material, session.getCourseId());
+        } catch (RuntimeException e) {
+            // storing moved the partial file unless the content was there already; it is copied
+            // back before the release may purge the stored file
+            if (Files.notExists(partial)) {
+                try (InputStream in = fileStorageService.openStream(storedFile.fileName())) {
+                    Files.copy(in, partial);
+                } catch (IOException restoreFailure) {
+                    e.addSuppressed(restoreFailure);
+                }
+            }
+            throw e;
+        } finally {
+            fileStorageService.release(storedFile.fileName());
+        }
+    }
+
+    // copies at most limit bytes; a body longer than that is rejected rather than cut short
+    private static long write(InputStream body, FileChannel channel, long offset, long limit,
+                              MessageDigest fileDigest, MessageDigest chunkDigest) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long written = 0;
+        int read;
+        while ((read = body.read(buffer, 0, (int) Math.min(BUFFER_SIZE, limit - written + 1))) >= 0) {
+            if (written + read > limit) {
+                channel.truncate(offset);
+                throw new InvalidInputException("Chunk at offset " + offset + " is larger than " + limit + " bytes");
+            }
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+            while (chunk.hasRemaining()) {
+                channel.write(chunk, offset + written + chunk.position());
+            }
+            fileDigest.update(buffer, 0, read);
+            chunkDigest.update(buffer, 0, read);
+            written += read;
+        }
+        return written;
+    }
+
+    private static MessageDigest hashPrefix(Path partial, long length) throws IOException {
+        MessageDigest digest = FileStorageService.sha256();
+        if (length == 0) {
+            return digest;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < length) {
+                buffer.clear().limit((int) Math.min(BUFFER_SIZE, length - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Partial upload is shorter than its offset: " + partial.getFileName());
+                }
+                digest.update(buffer.flip());
+                position += read;
+            }
+        }
+        return digest;
+    }
+
+    // only sha-256 is checked, other algorithms are ignored as RFC 9530 allows
+    static byte[] parseContentDigest(String header) {
+        if (header == null) {
+            return null;
+        }
+        for (String member : header.split(",")) {
+            String[] pair = member.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("sha-256")) {
+                String value = pair[1].trim();
+                if (value.length() < 2 || !value.startsWith(":") || !value.endsWith(":")) {
+                    throw new InvalidInputException("Malformed Content-Digest");
+                }
+                try {
+                    return Base64.getDecoder().decode(value.substring(1, value.length() - 1));
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidInputException("Malformed Content-Digest");
+                }
+            }
+        }
+        return null;
+    }
+
+    private UploadSession findSession(String uploadId, Long teacherId) {
+        UploadSession session = uploadSessionRepo.findById(uploadId)
+                .orElseThrow(() -> new ResourceNotFoundException("Upload not found with id: " + uploadId));
+        if (!session.getTeacherId().equals(teacherId)) {
+            throw new ForbiddenAccessException("This upload belongs to another user");
+        }
+        return session;
+    }
+
+    private UploadSessionDTO toDTO(UploadSession session, CourseMaterial material) {
+        return UploadSessionDTO.builder()
+                .uploadId(session.getUploadId())
+                .fileName(session.getFileName())
+                .size(session.getSize())
+                .offset(session.getReceived())
+                .chunkSize(chunkSize.toBytes())
+                .expiresAt(session.getExpiresAt())
+                .material(material)
+                .build();
+    }
+
+    private static final class Progress {
+        private long offset;
+        private MessageDigest digest;
+    }
+}
@@ -0,0 +1,131 @@
+package ma.emsi.emstudy.Service;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.Entity.*;
+import ma.emsi.emstudy.Exception.ResourceNotFoundException;
+import ma.emsi.emstudy.Repository.CourseItemRepo;
+import ma.emsi.emstudy.Repository.CourseRepo;
+import ma.emsi.emstudy.Repository.QuestionRepo;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deep-copies a course with its materials, quizzes, questions and answers for a new run of it.
+ * The source is read with the same three queries as the course tree and the copies are written
+ * in one transaction with JDBC batching. Materials keep pointing at the same stored file, so
+ * nothing is copied on disk; enrollments and progress are not carried over.
+ */
+@Service
+@RequiredArgsConstructor
+public class CourseCloneService {
+
+    private final CourseRepo courseRepo;
+    private final CourseItemRepo courseItemRepo;
+    private final QuestionRepo questionRepo;
+    private final JoinCodeService joinCodeService;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    /**
+     * @param name name of the copy, defaults to the source's name followed by "(copy)"
+     * @return the new course, detached
+     */
+    public Course cloneCourse(Long courseId, Long teacherId, String name) {
+        DataIntegrityViolationException collision = null;
+        for (int attempt = 0; attempt < JoinCodeService.MAX_ATTEMPTS; attempt++) {
+            Course clone;
+            try {
+                clone = transactionTemplate.execute(status -> copy(courseId, teacherId, name));
+            } catch (DataIntegrityViolationException e) {
+                // another course took the code since assignNewCode() checked it, the copy was
+                // rolled back and is made again with another code
+                collision = e;
+                continue;
+            }
+            // only once committed, so a rolled back copy never resolves
+            joinCodeService.register(clone);
+            return clone;
+        }
+        throw collision;
+    }
+
+    private Course copy(Long courseId, Long teacherId, String name) {
+        Course source = courseRepo.findById(courseId)
+                .orElseThrow(() -> new ResourceNotFoundException("Course not found with id: " + courseId));
+        List<CourseItem> items = courseItemRepo.findOrderedByCourseId(courseId);
+        List<Long> quizIds = items.stream().filter(Quiz.class::isInstance).map(CourseItem::getItemId).toList();
+        List<Question> questions = quizIds.isEmpty() ? List.of() : questionRepo.findWithAnswersByQuizIds(quizIds);
+
+        Course clone = new Course();
+        clone.setName(name == null || name.isBlank() ? source.getName() + " (copy)" : name.trim());
+        clone.setDescription(source.getDescription());
+        clone.setCreationDate(LocalDate.now());
+        clone.setTeacher(entityManager.getReference(Teacher.class, teacherId));
+        joinCodeService.assignNewCode(clone);
+        // through the repository, so a taken code surfaces as a DataIntegrityViolationException
+        courseRepo.saveAndFlush(clone);
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Quiz> quizCopies = new HashMap<>();
+        int sortOrder = 0;
+        for (CourseItem item : items) {
+            CourseItem copy;
+            if (item instanceof Quiz quiz) {
+                Quiz quizCopy = new Quiz();
+                quizCopy.setDurationInMinutes(quiz.getDurationInMinutes());
+                quizCopy.setShowCorrectAnswers(quiz.isShowCorrectAnswers());
+                quizCopies.put(quiz.getItemId(), quizCopy);
+                copy = quizCopy;
+            } else if (item instanceof CourseMaterial material) {
+                CourseMaterial materialCopy = new CourseMaterial();
+                materialCopy.setCourseMaterialType(material.getCourseMaterialType());
+                materialCopy.setUrl(material.getUrl());
+                materialCopy.setFileSize(material.getFileSize());
+                materialCopy.setContentType(material.getContentType());
+                materialCopy.setSha256(material.getSha256());
+                materialCopy.setOriginalFileName(material.getOriginalFileName());
+                materialCopy.setDescription(material.getDescription());
+                copy = materialCopy;
+            } else {
+                continue;
+            }
+            copy.setTitle(item.getTitle());
+            copy.setAddDate(now);
+            // items are read in course order, items created before sortOrder existed get one here
+            copy.setSortOrder(sortOrder++);
+            copy.setCourse(clone);
+            entityManager.persist(copy);
+        }
+
+        for (Question question : questions) {
+            Question questionCopy = new Question();
+            questionCopy.setQuestionText(question.getQuestionText());
+            questionCopy.setPoints(question.getPoints());
+            questionCopy.setQuestionType(question.getQuestionType());
+            questionCopy.setExplanation(question.getExplanation());
+            questionCopy.setQuiz(quizCopies.get(question.getQuiz().getItemId()));
+            questionCopy.setAnswers(new ArrayList<>());
+            entityManager.persist(questionCopy);
+            for (Answer answer : question.getAnswers()) {
+                entityManager.persist(Answer.builder()
+                        .answerText(answer.getAnswerText())
+                        .Correct(answer.isCorrect())
+                        .question(questionCopy)
+                        .build());
+            }
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        return clone;
+    }
+}
@@ -0,0 +1,97 @@
+package ma.emsi.emstudy.Service;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Deletes a course and everything hanging off it with one bulk statement per table, children
+ * first, instead of letting the cascades load the whole graph and remove it row by row. Memory
+ * use doesn't depend on the size of the course. Uploaded files no other material points at are
+ * removed in the background once the deletion has committed.
+ */
+@Service
+@RequiredArgsConstructor
+public class CourseDeletionService {
+
+    private static final String COURSE_ITEM_IDS = "select i.itemId from CourseItem i where i.course.courseId = :courseId";
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final FileStorageService fileStorageService;
+
+    /**
+     * @return whether the course existed
+     */
+    public boolean deleteCourse(Long courseId) {
+        DeletedCourse deleted = transactionTemplate.execute(status -> delete(courseId));
+        fileStorageService.deleteFilesLater(deleted.orphanedUrls());
+        return deleted.found();
+    }
+
+    private DeletedCourse delete(Long courseId) {
+        List<String> urls = entityManager.createQuery(
+                        "select distinct m.url from CourseMaterial m where m.course.courseId = :courseId and m.url is not null",
+                        String.class)
+                .setParameter("courseId", courseId)
+                .getResultList();
+
+        // the submission/answer join table has no entity
+        nativeBulk("""
+                delete from submissions_answers where submission_submission_id in (
+                    select s.submission_id from submissions s
+                    join course_items i on i.item_id = s.quiz_id
+                    where i.course_id = :courseId)""", courseId, "submissions_answers");
+        bulk("delete from Submission s where s.quiz.itemId in (" + COURSE_ITEM_IDS + ")", courseId);
+        bulk("delete from CompletedCourseItem c where c.course.courseId = :courseId or c.courseItem.itemId in ("
+                + COURSE_ITEM_IDS + ")", courseId);
+        bulk("delete from Answer a where a.question.questionId in (select q.questionId from Question q where q.quiz.itemId in ("
+                + COURSE_ITEM_IDS + "))", courseId);
+        bulk("delete from Question q where q.quiz.itemId in (" + COURSE_ITEM_IDS + ")", courseId);
+        // subclass rows before their course_items row; a JPQL delete on the joined hierarchy
+        // would go through a temporary id table
+        for (String subclassTable : List.of("quizzes", "course_materials")) {
+            nativeBulk("delete from " + subclassTable
+                    + " where item_id in (select i.item_id from course_items i where i.course_id = :courseId)", courseId, subclassTable);
+        }
+        nativeBulk("delete from course_items where course_id = :courseId", courseId, "course_items");
+        bulk("delete from Enrollment e where e.course.courseId = :courseId", courseId);
+        boolean found = bulk("delete from Course c where c.courseId = :courseId", courseId) > 0;
+
+        // bulk statements bypass the persistence context, drop anything it still holds
+        entityManager.clear();
+
+        List<String> orphanedUrls = urls;
+        if (!urls.isEmpty()) {
+            // clones share their source's files
+            List<String> stillUsed = entityManager.createQuery(
+                            "select distinct m.url from CourseMaterial m where m.url in :urls", String.class)
+                    .setParameter("urls", urls)
+                    .getResultList();
+            orphanedUrls = urls.stream().filter(url -> !stillUsed.contains(url)).toList();
+        }
+        return new DeletedCourse(found, orphanedUrls);
+    }
+
+    // naming the table keeps Hibernate from clearing every second-level cache region
+    private void nativeBulk(String sql, Long courseId, String table) {
+        entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(table)
+                .setParameter("courseId", courseId)
+                .executeUpdate();
+    }
+
+    private int bulk(String jpql, Long courseId) {
+        return entityManager.createQuery(jpql)
+                .setParameter("courseId", courseId)
+                .executeUpdate();
+    }
+
+    private record DeletedCourse(boolean found, List<String> orphanedUrls) {
+    }
+}
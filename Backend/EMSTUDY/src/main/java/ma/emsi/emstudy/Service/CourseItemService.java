@@ -2,6 +2,8 @@ package ma.emsi.emstudy.Service;
 
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.CourseOutlineItemDTO;
+import ma.emsi.emstudy.DTO.CursorPage;
 import ma.emsi.emstudy.Entity.*;
 import ma.emsi.emstudy.Exception.ResourceNotFoundException;
 import ma.emsi.emstudy.Repository.CourseItemRepo;
@@ -23,18 +25,20 @@ import java.util.Optional;
 public class CourseItemService<T extends CourseItem> {
     protected final CourseItemRepo courseItemRepo;
     protected final CourseRepo courseRepo;
+    protected final PaginationService paginationService;
 
     public T addCourseItem(T courseItem, Long courseId) {
         Course course  = courseRepo.findById(courseId)
                 .orElseThrow(() -> new ResourceNotFoundException("Course not found"));
         courseItem.setCourse(course);
         courseItem.setAddDate(LocalDateTime.now());
+        courseItem.setSortOrder(courseItemRepo.findNextSortOrder(courseId));
         return (T) courseItemRepo.save(courseItem);
     }
 
     //TODO: ma3ndk madir biha
-    public List<T> getAllCourseItems() {
-        return (List<T>) courseItemRepo.findAll();
+    public CursorPage<T> getAllCourseItems(String cursor, Integer size) {
+        return (CursorPage<T>) paginationService.page(courseItemRepo, "itemId", cursor, size);
     }
 
     public T getCourseItemById(Long id) {
@@ -46,6 +50,10 @@ public class CourseItemService<T extends CourseItem> {
         return (List<T>) courseItemRepo.findByCourseCourseId(courseId);
     }
 
+    public List<CourseOutlineItemDTO> getCourseOutline(Long courseId) {
+        return courseItemRepo.findOutlineByCourseId(courseId);
+    }
+
     public void deleteCourseItem(Long id) {
         courseItemRepo.deleteById(id);
     }
@@ -56,6 +64,7 @@ public class CourseItemService<T extends CourseItem> {
         updatedItem.setItemId(existingItem.getItemId());
         updatedItem.setCourse(existingItem.getCourse());
         updatedItem.setAddDate(existingItem.getAddDate());
+        updatedItem.setSortOrder(existingItem.getSortOrder());
         return (T) courseItemRepo.save(updatedItem);
     }
 
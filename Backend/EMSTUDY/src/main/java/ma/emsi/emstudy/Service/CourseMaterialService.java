@@ -1,6 +1,5 @@
 package ma.emsi.emstudy.Service;
 
-import lombok.RequiredArgsConstructor;
 import ma.emsi.emstudy.Entity.CourseMaterial;
 import ma.emsi.emstudy.Exception.ResourceNotFoundException;
 import ma.emsi.emstudy.Repository.CourseItemRepo;
@@ -9,23 +8,96 @@ import ma.emsi.emstudy.Repository.CourseMaterialRepo;
 import ma.emsi.emstudy.Repository.CourseRepo;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Objects;
+
 @Service
 public class CourseMaterialService extends CourseItemService<CourseMaterial> {
     private final CourseMaterialRepo courseMaterialRepo;
-    public CourseMaterialService(CourseItemRepo courseItemRepo, CourseRepo courseRepo, CourseMaterialRepo courseMaterialRepo) {
-        super(courseItemRepo, courseRepo);
+    private final FileStorageService fileStorageService;
+    private final ImageRenditionService imageRenditionService;
+    private final MarkdownRenderingService markdownRenderingService;
+    private final PrecompressionService precompressionService;
+    public CourseMaterialService(CourseItemRepo courseItemRepo, CourseRepo courseRepo, PaginationService paginationService,
+                                 CourseMaterialRepo courseMaterialRepo, FileStorageService fileStorageService,
+                                 ImageRenditionService imageRenditionService, MarkdownRenderingService markdownRenderingService,
+                                 PrecompressionService precompressionService) {
+        super(courseItemRepo, courseRepo, paginationService);
         this.courseMaterialRepo = courseMaterialRepo;
+        this.fileStorageService = fileStorageService;
+        this.imageRenditionService = imageRenditionService;
+        this.markdownRenderingService = markdownRenderingService;
+        this.precompressionService = precompressionService;
+    }
+
+    // images get their thumbnail and medium sizes made in the background, text-like files a gzip copy
+    @Override
+    public CourseMaterial addCourseItem(CourseMaterial courseItem, Long courseId) {
+        CourseMaterial saved = super.addCourseItem(courseItem, courseId);
+        imageRenditionService.renderLater(saved);
+        precompressionService.compressLater(saved);
+        return saved;
     }
 
     public CourseMaterial updateCourseMaterial(Long courseMaterialId, CourseMaterial updatedCourseMaterial) {
         CourseMaterial existingCourseMaterial = courseMaterialRepo.findById(courseMaterialId)
                 .orElseThrow(() -> new ResourceNotFoundException("CourseMaterial not found with id: " + courseMaterialId));
+        String previousUrl = existingCourseMaterial.getUrl();
+        String previousSha256 = existingCourseMaterial.getSha256();
         //courseItem fields
         existingCourseMaterial.setTitle(updatedCourseMaterial.getTitle());
         //courseMaterial fields
         existingCourseMaterial.setUrl(updatedCourseMaterial.getUrl());
+        keepFileMetadata(existingCourseMaterial, previousUrl, existingCourseMaterial);
         existingCourseMaterial.setCourseMaterialType(updatedCourseMaterial.getCourseMaterialType());
         existingCourseMaterial.setCourse(updatedCourseMaterial.getCourse());
-        return courseMaterialRepo.save(existingCourseMaterial);
+        CourseMaterial saved = courseMaterialRepo.save(existingCourseMaterial);
+        dropIfUnused(previousUrl, previousSha256, saved.getUrl());
+        return saved;
+    }
+
+    @Override
+    public CourseMaterial updateCourseItem(Long courseItemId, CourseMaterial updatedItem) {
+        CourseMaterial previous = courseMaterialRepo.findById(courseItemId).orElse(null);
+        String previousUrl = previous == null ? null : previous.getUrl();
+        String previousSha256 = previous == null ? null : previous.getSha256();
+        if (previous != null) {
+            keepFileMetadata(previous, previousUrl, updatedItem);
+        }
+        CourseMaterial saved = super.updateCourseItem(courseItemId, updatedItem);
+        dropIfUnused(previousUrl, previousSha256, saved.getUrl());
+        return saved;
+    }
+
+    @Override
+    public void deleteCourseItem(Long id) {
+        CourseMaterial material = courseMaterialRepo.findById(id).orElse(null);
+        String url = material == null ? null : material.getUrl();
+        String sha256 = material == null ? null : material.getSha256();
+        super.deleteCourseItem(id);
+        dropIfUnused(url, sha256, null);
+    }
+
+    // the file metadata is only ever taken from the stored file, never from the request; a
+    // material pointed at another file gets it looked up again when first served
+    private static void keepFileMetadata(CourseMaterial previous, String previousUrl, CourseMaterial updated) {
+        boolean sameFile = Objects.equals(previousUrl, updated.getUrl());
+        Long fileSize = sameFile ? previous.getFileSize() : null;
+        String contentType = sameFile ? previous.getContentType() : null;
+        String sha256 = sameFile ? previous.getSha256() : null;
+        String originalFileName = sameFile ? previous.getOriginalFileName() : null;
+        updated.setFileSize(fileSize);
+        updated.setContentType(contentType);
+        updated.setSha256(sha256);
+        updated.setOriginalFileName(originalFileName);
+    }
+
+    // stored files are shared by every material with the same content, the purge only removes
+    // the file once no material row references it any more
+    private void dropIfUnused(String previousUrl, String previousSha256, String currentUrl) {
+        if (previousUrl != null && !Objects.equals(previousUrl, currentUrl)) {
+            markdownRenderingService.evict(previousSha256);
+            fileStorageService.deleteFilesLater(List.of(previousUrl));
+        }
     }
-}
\ No newline at end of file
+}
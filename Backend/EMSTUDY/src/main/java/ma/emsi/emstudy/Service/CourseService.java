@@ -1,39 +1,163 @@
 package ma.emsi.emstudy.Service;
 
 import lombok.RequiredArgsConstructor;
-import ma.emsi.emstudy.Entity.Course;
-import ma.emsi.emstudy.Entity.CourseItem;
+import ma.emsi.emstudy.DTO.CourseSummaryDTO;
+import ma.emsi.emstudy.DTO.CourseTreeDTO;
+import ma.emsi.emstudy.DTO.JoinCodeDTO;
+import ma.emsi.emstudy.Entity.*;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Exception.ResourceNotFoundException;
+import ma.emsi.emstudy.Repository.CourseItemRepo;
 import ma.emsi.emstudy.Repository.CourseRepo;
+import ma.emsi.emstudy.Repository.EnrollmentRepo;
+import ma.emsi.emstudy.Repository.QuestionRepo;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class CourseService {
+    // sort keys accepted for course summaries, by the Course attribute they order on
+    private static final Map<String, String> SUMMARY_SORTS = Map.of(
+            "courseId", "courseId",
+            "name", "Name",
+            "creationDate", "creationDate");
+
     private final CourseRepo courseRepo;
+    private final CourseItemRepo courseItemRepo;
+    private final QuestionRepo questionRepo;
+    private final EnrollmentRepo enrollmentRepo;
+    private final JoinCodeService joinCodeService;
+    private final CourseDeletionService courseDeletionService;
 
     public Course addCourse(Course course) {
         course.setCreationDate(LocalDate.now());
         if (course.getCourseItems() != null) {
-            for (CourseItem item : course.getCourseItems()) {
-                item.setCourse(course);
+            for (int i = 0; i < course.getCourseItems().size(); i++) {
+                course.getCourseItems().get(i).setCourse(course);
+                course.getCourseItems().get(i).setSortOrder(i);
+            }
+        }
+        DataIntegrityViolationException collision = null;
+        for (int attempt = 0; attempt < JoinCodeService.MAX_ATTEMPTS; attempt++) {
+            clearIds(course);
+            joinCodeService.assignNewCode(course);
+            Course saved;
+            try {
+                saved = courseRepo.save(course);
+            } catch (DataIntegrityViolationException e) {
+                // another course took the code since assignNewCode() checked it
+                collision = e;
+                continue;
+            }
+            joinCodeService.register(saved);
+            return saved;
+        }
+        throw collision;
+    }
+
+    // a failed insert leaves the ids it drew on the entities, and an entity with an id is merged
+    // instead of inserted, so every attempt starts from new entities
+    private static void clearIds(Course course) {
+        course.setCourseId(null);
+        if (course.getCourseItems() == null) {
+            return;
+        }
+        for (CourseItem item : course.getCourseItems()) {
+            item.setItemId(null);
+            if (item instanceof Quiz quiz && quiz.getQuestions() != null) {
+                for (Question question : quiz.getQuestions()) {
+                    question.setQuestionId(null);
+                    if (question.getAnswers() != null) {
+                        question.getAnswers().forEach(answer -> answer.setAnswerId(null));
+                    }
+                }
             }
         }
-        return courseRepo.save(course);
     }
 
     public List<Course> getAllTeacherCourses(Long teacherId) {
         return courseRepo.findByTeacherUserId(teacherId);
     }
 
+    public Page<CourseSummaryDTO> getTeacherCourseSummaries(Long teacherId, Pageable pageable) {
+        return courseRepo.findSummariesByTeacher(teacherId, summaryPage(pageable));
+    }
+
+    // the sort ends up in the query's order by, so only known course columns get through
+    private static Pageable summaryPage(Pageable pageable) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : pageable.getSort()) {
+            String property = SUMMARY_SORTS.get(order.getProperty());
+            if (property == null) {
+                throw new InvalidInputException("Course summaries can't be sorted by " + order.getProperty()
+                        + ", only by courseId, name or creationDate");
+            }
+            orders.add(order.withProperty(property));
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(orders));
+    }
+
     public Course getCourseById(Long id) {
         return courseRepo.findById(id).orElse(null);
     }
 
+    /**
+     * Validator for every response built from the course, from its content version; {@code null}
+     * when the course doesn't exist. Callers read it before the content, so a write committing in
+     * between costs the client one more download but never leaves it holding stale content.
+     * Weak, as the same content goes out gzipped or not, and Tomcat only compresses responses
+     * without a strong validator.
+     */
+    public String getContentETag(Long courseId) {
+        return courseRepo.findContentVersion(courseId)
+                .map(version -> "W/\"" + courseId + "-" + version + "\"")
+                .orElse(null);
+    }
+
+    /**
+     * Loads the course with all of its items, questions and answers in three queries: the course,
+     * its items across the subclass tables, then the questions of every quiz with their answers.
+     * The lazy collections on the entities are never touched.
+     */
+    @Transactional(readOnly = true)
+    public CourseTreeDTO getCourseTree(Long courseId) {
+        Course course = courseRepo.findById(courseId)
+                .orElseThrow(() -> new ResourceNotFoundException("Course not found with id: " + courseId));
+        List<CourseItem> items = courseItemRepo.findOrderedByCourseId(courseId);
+
+        List<Long> quizIds = items.stream().filter(Quiz.class::isInstance).map(CourseItem::getItemId).toList();
+        Map<Long, List<CourseTreeDTO.QuestionNode>> questionsByQuiz = quizIds.isEmpty() ? Map.of()
+                : questionRepo.findWithAnswersByQuizIds(quizIds).stream()
+                .collect(Collectors.groupingBy(question -> question.getQuiz().getItemId(), LinkedHashMap::new,
+                        Collectors.mapping(CourseService::toNode, Collectors.toList())));
+
+        return CourseTreeDTO.builder()
+                .courseId(course.getCourseId())
+                .name(course.getName())
+                .description(course.getDescription())
+                .joinCode(course.getJoinCode())
+                .creationDate(course.getCreationDate())
+                .items(items.stream().map(item -> toNode(item, questionsByQuiz)).toList())
+                .build();
+    }
+
     public void deleteCourse(Long id) {
-        courseRepo.deleteById(id);
+        courseDeletionService.deleteCourse(id);
+        joinCodeService.forget(id);
     }
 
     public Course updateCourse(Course course) {
@@ -47,7 +171,48 @@ public class CourseService {
         return null;
     }
 
+    public JoinCodeDTO rotateJoinCode(Long courseId, Duration validFor) {
+        return joinCodeService.rotate(courseId, validFor);
+    }
+
     public boolean isTeacherOfCourse(Long teacherId, Long courseId) {
         return courseRepo.existsByTeacherUserIdAndCourseId(teacherId, courseId);
     }
+
+    public boolean canViewCourse(Long userId, Long courseId) {
+        return isTeacherOfCourse(userId, courseId)
+                || enrollmentRepo.existsByStudentUserIdAndCourse_CourseId(userId, courseId);
+    }
+
+    private static CourseTreeDTO.Item toNode(CourseItem item, Map<Long, List<CourseTreeDTO.QuestionNode>> questionsByQuiz) {
+        CourseTreeDTO.Item.ItemBuilder node = CourseTreeDTO.Item.builder()
+                .itemId(item.getItemId())
+                .title(item.getTitle())
+                .addDate(item.getAddDate());
+        if (item instanceof CourseMaterial material) {
+            node.itemType("CM")
+                    .courseMaterialType(material.getCourseMaterialType())
+                    .url(material.getUrl())
+                    .description(material.getDescription());
+        } else if (item instanceof Quiz quiz) {
+            node.itemType("Q")
+                    .durationInMinutes(quiz.getDurationInMinutes())
+                    .showCorrectAnswers(quiz.isShowCorrectAnswers())
+                    .questions(questionsByQuiz.getOrDefault(quiz.getItemId(), List.of()));
+        }
+        return node.build();
+    }
+
+    private static CourseTreeDTO.QuestionNode toNode(Question question) {
+        return CourseTreeDTO.QuestionNode.builder()
+                .questionId(question.getQuestionId())
+                .questionText(question.getQuestionText())
+                .points(question.getPoints())
+                .questionType(question.getQuestionType())
+                .explanation(question.getExplanation())
+                .answers(question.getAnswers().stream()
+                        .map(answer -> new CourseTreeDTO.AnswerNode(answer.getAnswerId(), answer.getAnswerText(), answer.isCorrect()))
+                        .toList())
+                .build();
+    }
 }
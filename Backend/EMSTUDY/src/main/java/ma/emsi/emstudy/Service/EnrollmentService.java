@@ -2,8 +2,8 @@ package ma.emsi.emstudy.Service;
 
 import jakarta.validation.constraints.Null;
 import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.CursorPage;
 import ma.emsi.emstudy.DTO.EnrollmentDTO;
-import ma.emsi.emstudy.Entity.Course;
 import ma.emsi.emstudy.Entity.Enrollment;
 import ma.emsi.emstudy.Entity.Student;
 import ma.emsi.emstudy.Exception.AlreadyEnrolledException;
@@ -15,9 +15,11 @@ import org.apache.coyote.BadRequestException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -28,19 +30,20 @@ public class EnrollmentService {
     private final CourseRepo courseRepo;
     private final UserService userService;
     private final StudentService studentService;
+    private final PaginationService paginationService;
+    private final JoinCodeService joinCodeService;
 
 @Transactional
 public Enrollment createEnrollment(Long studentId, String joinCode) {
-    Course course = courseRepo.findByJoinCode(joinCode)
-            .orElseThrow(() -> new ResourceNotFoundException("Invalid join code"));
-    enrollmentRepo.findByStudentUserIdAndCourse_CourseId(studentId, course.getCourseId())
+    Long courseId = joinCodeService.resolve(joinCode);
+    enrollmentRepo.findByStudentUserIdAndCourse_CourseId(studentId, courseId)
             .ifPresent(enrollment -> {
                 throw new AlreadyEnrolledException("Already enrolled in this course");
             });
     Student student = studentService.getStudent(studentId);
     Enrollment enrollment = Enrollment.builder()
             .student(student)
-            .course(course)
+            .course(courseRepo.getReferenceById(courseId))
             .enrollmentDate(LocalDate.now())
             .build();
     return enrollmentRepo.save(enrollment);
@@ -51,8 +54,12 @@ public Enrollment createEnrollment(Long studentId, String joinCode) {
                 .orElseThrow(() -> new ResourceNotFoundException("Enrollment not found"));
     }
     
-    public List<Enrollment> getAllEnrollments() {
-        return enrollmentRepo.findAll();
+    public CursorPage<Enrollment> getAllEnrollments(String cursor, Integer size) {
+        return paginationService.page(enrollmentRepo, "enrollmentId", cursor, size);
+    }
+
+    public StreamingResponseBody exportEnrollments(Function<Enrollment, ?> mapper) {
+        return paginationService.exportNdjson(enrollmentRepo, "enrollmentId", mapper);
     }
     
     public List<Enrollment> getEnrollmentsByStudentId(Long studentId) {
@@ -1,75 +1,315 @@
 package ma.emsi.emstudy.Service;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import ma.emsi.emstudy.Entity.CourseMaterial;
 import ma.emsi.emstudy.Exception.ResourceNotFoundException;
 import ma.emsi.emstudy.Repository.CourseMaterialRepo;
+import ma.emsi.emstudy.Storage.StorageBackend;
+import ma.emsi.emstudy.Storage.StorageBackend.ObjectInfo;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.UrlResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+/**
+ * Stored files and what materials keep about them. The files themselves are kept by the
+ * configured {@link StorageBackend}, under their stored name; the upload directory holds the
+ * files being written until they are handed to it.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class FileStorageService {
+    // <hex SHA-256 of the content>[.<extension>]
+    private static final Pattern STORED_NAME = Pattern.compile("([0-9a-f]{64})(\\.[a-z0-9]{1,10})?");
+    // <hex SHA-256 of the stored file>-<variant>, generated from a stored file, e.g. an image rendition
+    private static final Pattern DERIVED_NAME = Pattern.compile("([0-9a-f]{64})-[a-z0-9.]{1,32}");
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,10}");
+
     @Value("${file.upload-dir:uploads}")
     private String uploadDir;
+    // how long a file stays after it was stored or found by an upload, see purge
+    @Value("${file.purge-grace-period:15m}")
+    private Duration purgeGracePeriod;
     private final CourseMaterialRepo courseMaterialRepo;
+    private final StorageBackend storage;
+    // one background thread so that removing many files never holds up a request
+    private final ScheduledExecutorService purgeExecutor = Executors.newSingleThreadScheduledExecutor(purgeThreadFactory());
+    // uploads stored but whose material isn't saved yet; guarded, like the file itself, by lockFor
+    private final Map<String, Integer> pins = new ConcurrentHashMap<>();
+    private final Object[] locks = Stream.generate(Object::new).limit(64).toArray();
+
+    /**
+     * Stores an upload under its content hash: the bytes go to a temporary file while they are
+     * hashed, which is then stored as {@code <sha256>.<ext>}, or dropped if that file is already
+     * there, so uploading the same file again only adds a material row pointing at the existing
+     * one. Size, type and hash come out of that same pass, for {@link #attach} to keep on the
+     * material. The file stays pinned against purging until {@link #release(String)}; call it
+     * once the material referencing the file is saved, or its save failed.
+     */
+    public StoredFile storeFile(MultipartFile file) throws IOException {
+        Path temp = createTempFile(".upload-");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return storeHashed(temp, HexFormat.of().formatHex(digest.digest()), size, file.getOriginalFilename());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Same as {@link #storeFile(MultipartFile)} for a file already written and hashed in the
+     * upload directory: it is stored under its content-addressed name, or left in place for the
+     * caller to remove when that content is already stored.
+     */
+    public StoredFile storeHashed(Path written, String sha256, long size, String originalFileName) throws IOException {
+        String fileName = sha256 + extension(originalFileName);
+        synchronized (lockFor(fileName)) {
+            pins.merge(fileName, 1, Integer::sum);
+        }
+        // pinned, so no purge on this node removes it in between, and touched when it is already
+        // there, so that the grace period keeps purges on other nodes off it; a concurrent upload
+        // of the same content stores the same bytes. Not under the lock, as it may be a long
+        // upload to the store.
+        try {
+            if (!storage.touch(fileName)) {
+                storage.put(fileName, written);
+            }
+        } catch (IOException | RuntimeException e) {
+            release(fileName);
+            throw e;
+        }
+        return new StoredFile(fileName, size, getContentType(fileName), sha256,
+                StringUtils.getFilename(StringUtils.cleanPath(String.valueOf(originalFileName))));
+    }
+
+    // points the material at a stored file and keeps what serving it needs to know
+    public void attach(CourseMaterial material, StoredFile file) {
+        material.setUrl(getUrl(file.fileName()));
+        material.setFileSize(file.size());
+        material.setContentType(file.contentType());
+        material.setSha256(file.sha256());
+        material.setOriginalFileName(file.originalFileName());
+    }
+
+    /**
+     * The stored name of a file generated from a stored one: {@code <sha256>-<variant>}, kept
+     * next to it. Files stored before storage was content-addressed have no derived files, so
+     * this is null for them.
+     */
+    public String getDerivedName(String fileName, String variant) {
+        Matcher stored = STORED_NAME.matcher(fileName);
+        return stored.matches() ? stored.group(1) + "-" + variant : null;
+    }
+
+    /**
+     * Stores a file written in the upload directory as {@link #getDerivedName}, unless the stored
+     * file it was made from has been purged meanwhile; either way {@code written} is gone after.
+     * Derived files are removed with the last stored file of their content.
+     *
+     * @return whether the derived file was kept
+     */
+    public boolean storeDerived(String fileName, String variant, Path written) throws IOException {
+        String derivedName = getDerivedName(fileName, variant);
+        if (derivedName == null || storage.stat(fileName) == null) {
+            Files.deleteIfExists(written);
+            return false;
+        }
+        // not under the lock, as it may be a long upload to the store; a purge of the stored file
+        // that ran meanwhile may have missed it, so it goes if that file is gone by now
+        storage.put(derivedName, written);
+        if (storage.stat(fileName) == null) {
+            synchronized (lockFor(fileName)) {
+                deleteDerived(fileName);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    // a new empty file in the upload directory, to write something to before storing it
+    public Path createTempFile(String prefix) throws IOException {
+        Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Files.createDirectories(uploadPath);
+        return Files.createTempFile(uploadPath, prefix, ".tmp");
+    }
 
-    public String storeFile(MultipartFile file) throws IOException {
+    // where a chunked upload collects its bytes until it is complete
+    public Path getPartialPath(String uploadId) throws IOException {
         Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
         Files.createDirectories(uploadPath);
+        return uploadPath.resolve(".chunked-" + uploadId);
+    }
+
+    /**
+     * A stored file's content; the caller closes the stream.
+     *
+     * @throws java.nio.file.NoSuchFileException when there is no such file
+     */
+    public InputStream openStream(String fileName) throws IOException {
+        return storage.get(fileName);
+    }
 
-        String fileName = UUID.randomUUID() + "_" + StringUtils.cleanPath(file.getOriginalFilename());
-        Path targetLocation = uploadPath.resolve(fileName);
+    // the stored file on this machine's disk, or null when files are kept elsewhere
+    public Path getLocalPath(String fileName) {
+        return storage.localPath(fileName);
+    }
 
-        Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Unpins a file returned by {@link #storeFile(MultipartFile)}. If its material couldn't be
+     * saved and no other material uses the file, it is removed in the background.
+     */
+    public void release(String fileName) {
+        boolean lastPin;
+        synchronized (lockFor(fileName)) {
+            lastPin = pins.computeIfPresent(fileName, (name, count) -> count == 1 ? null : count - 1) == null;
+        }
+        if (lastPin) {
+            deleteFilesLater(List.of(getUrl(fileName)));
+        }
+    }
 
-        return fileName;
+    // what materials store in their url for a stored file
+    public String getUrl(String fileName) {
+        return uploadDir + "/" + fileName;
     }
 
     public void deleteFile(String fileName) {
         try {
-            Path filePath = getPath(fileName);
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
-            }
+            storage.delete(fileName);
         } catch (IOException e) {
             throw new RuntimeException("Could not delete file: " + fileName, e);
         }
     }
 
-    public UrlResource loadFileAsResource(String fileName) {
+    /**
+     * Queues the removal of the files behind the given material urls. Files are shared between
+     * materials with the same content, so each one is only removed if, by the time its turn comes,
+     * no material row references it and no upload is about to; call it after the transaction that
+     * removed the materials has committed. A file that can't be removed is logged and left behind.
+     */
+    public void deleteFilesLater(Collection<String> urls) {
+        if (urls.isEmpty()) {
+            return;
+        }
+        List<String> copy = List.copyOf(urls);
+        purgeExecutor.execute(() -> copy.forEach(this::purgeLogged));
+    }
+
+    private void purgeLogged(String url) {
         try {
-            Path filePath = getPath(fileName);
-            UrlResource  resource = new UrlResource(filePath.toUri());
-            if(resource.exists()) {
-                return resource;
-            } else {
-                throw new ResourceNotFoundException("File not found: " + fileName);
+            purge(url);
+        } catch (RuntimeException e) {
+            log.warn("Could not purge {}", url, e);
+        }
+    }
+
+    /**
+     * Removes the file behind a url once nothing uses it: the reference count of a file is the
+     * number of material rows with its url. Pins only hold on this node, so a file stored or
+     * found by an upload less than {@code file.purge-grace-period} ago, whose material another
+     * node may be about to save, is looked at again once that time is over. The rows are counted
+     * last, right before the delete.
+     */
+    boolean purge(String url) {
+        String fileName = fileName(url);
+        synchronized (lockFor(fileName)) {
+            if (pins.containsKey(fileName)) {
+                return false;
             }
-        } catch (MalformedURLException ex) {
-            throw new ResourceNotFoundException("File not found: " + fileName);
+            long wait = purgeGracePeriod.toMillis() - age(fileName);
+            if (wait > 0) {
+                purgeExecutor.schedule(() -> purgeLogged(url), wait, TimeUnit.MILLISECONDS);
+                return false;
+            }
+            if (courseMaterialRepo.countByUrl(url) > 0) {
+                return false;
+            }
+            deleteFile(fileName);
+            deleteDerived(fileName);
+            return true;
         }
     }
 
-    private Path getPath(String fileName) {
-        return Paths.get(uploadDir).toAbsolutePath().normalize().resolve(fileName);
+    // milliseconds since the file was last modified, as long as can be when it is already gone
+    private long age(String fileName) {
+        try {
+            ObjectInfo object = storage.stat(fileName);
+            return object == null ? Long.MAX_VALUE : System.currentTimeMillis() - object.lastModified();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not stat " + fileName, e);
+        }
     }
 
+    // the same content may still be stored under another extension, its derived files are kept then
+    private void deleteDerived(String fileName) {
+        Matcher stored = STORED_NAME.matcher(fileName);
+        if (!stored.matches()) {
+            return;
+        }
+        List<String> siblings;
+        try {
+            siblings = storage.list(stored.group(1));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list derived files of " + fileName, e);
+        }
+        if (siblings.stream().anyMatch(sibling -> STORED_NAME.matcher(sibling).matches())) {
+            return;
+        }
+        for (String derived : siblings) {
+            try {
+                storage.delete(derived);
+            } catch (IOException e) {
+                log.warn("Could not delete {}", derived, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        purgeExecutor.shutdown();
+    }
+
+    // told from the name alone, the file may not be on this machine
     public String getContentType(String fileName) {
         String contentType = null;
         try {
-            contentType = Files.probeContentType(getPath(fileName));
+            contentType = Files.probeContentType(Paths.get(fileName));
         } catch (IOException ex) {
             System.out.println("Could not determine file type.");
         }
@@ -80,20 +320,150 @@ public class FileStorageService {
         return contentType != null ? contentType : "application/octet-stream";
     }
 
-    public UrlResource downloadMaterial(Long materialId) {
-        CourseMaterial material = courseMaterialRepo.findById(materialId)
-                .orElseThrow(() -> new ResourceNotFoundException("Material not found with id: " + materialId));
+    /**
+     * The stored file of a material with what a download needs to know about it, taken from the
+     * material itself so that serving it doesn't touch the filesystem before the body is sent.
+     * Materials stored before their file metadata was kept are looked up in the store, until
+     * {@link MaterialMetadataBackfillService} has filled it in.
+     */
+    public FileInfo getMaterialFile(CourseMaterial material) throws IOException {
+        String fileName = getStoredFileName(material);
+        if (material.getSha256() == null || material.getFileSize() == null || material.getContentType() == null) {
+            FileInfo info = describe(fileName);
+            return new FileInfo(fileName, getDownloadName(material), info.length(), info.lastModified(), info.contentType(), info.version());
+        }
+        // stored files never change, the material was added when its file was
+        long lastModified = material.getAddDate() == null ? -1
+                : material.getAddDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new FileInfo(fileName, getDownloadName(material), material.getFileSize(), lastModified,
+                material.getContentType(), material.getSha256());
+    }
+
+    // stored name of the material's file
+    public String getStoredFileName(CourseMaterial material) {
+        return fileName(material.getUrl());
+    }
+
+    // name offered to the browser when saving the file
+    public String getDownloadName(CourseMaterial material) {
+        return material.getOriginalFileName() != null ? material.getOriginalFileName() : getStoredFileName(material);
+    }
+
+    public String getContentType(CourseMaterial material) {
+        return material.getContentType() != null ? material.getContentType() : getContentType(getStoredFileName(material));
+    }
+
+    FileInfo describe(String fileName) throws IOException {
+        ObjectInfo object = storage.stat(fileName);
+        if (object == null) {
+            throw new ResourceNotFoundException("File not found: " + fileName);
+        }
+        // content-addressed files are named after their hash, and derived files after the hash of
+        // what they are made from; older files aren't read on a request to be hashed, their size
+        // and modification time tell their versions apart
+        Matcher stored = STORED_NAME.matcher(fileName);
+        String version;
+        if (stored.matches()) {
+            version = stored.group(1);
+        } else if (DERIVED_NAME.matcher(fileName).matches()) {
+            version = fileName;
+        } else {
+            version = Long.toHexString(object.length()) + "-" + Long.toHexString(object.lastModified());
+        }
+        return new FileInfo(fileName, fileName, object.length(), object.lastModified(), getContentType(fileName), version);
+    }
 
-        String fileName = material.getUrl().substring(material.getUrl().lastIndexOf('/') + 1);
-        return loadFileAsResource(fileName);
+    // lets a stored name be pinned or purged without racing an upload or a purge of the same name
+    private Object lockFor(String fileName) {
+        return locks[Math.floorMod(fileName.hashCode(), locks.length)];
     }
 
-    public String getMaterialContentType(Long materialId) {
-        CourseMaterial material = courseMaterialRepo.findById(materialId)
-                .orElseThrow(() -> new ResourceNotFoundException("Material not found with id: " + materialId));
+    static String hash(Path path) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel channel = FileChannel.open(path)) {
+            while (channel.read(buffer) >= 0) {
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static String hash(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        for (int read; (read = in.read(buffer)) >= 0; ) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // materials store "<upload-dir>/<file name>"
+    static String fileName(String url) {
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    // kept on the stored name so that the content type can still be told from it
+    static String extension(String originalFileName) {
+        String extension = StringUtils.getFilenameExtension(StringUtils.cleanPath(String.valueOf(originalFileName)));
+        if (extension == null) {
+            return "";
+        }
+        extension = extension.toLowerCase(Locale.ROOT);
+        return EXTENSION.matcher(extension).matches() ? "." + extension : "";
+    }
+
+    // the hash a stored name starts with, null for files stored before names were hashes
+    static String contentHash(String fileName) {
+        Matcher stored = STORED_NAME.matcher(fileName);
+        return stored.matches() ? stored.group(1) : null;
+    }
+
+    // stored under its content hash, or derived from a file that is
+    static boolean isContentAddressed(String fileName) {
+        return STORED_NAME.matcher(fileName).matches() || DERIVED_NAME.matcher(fileName).matches();
+    }
+
+    /**
+     * @param key stored name of the file to send
+     * @param name offered to the browser in {@code Content-Disposition}
+     * @param version changes with the content, validators are made from it: the hex SHA-256 of
+     *                the content, or for files not named after theirs, their name or their size
+     *                and modification time
+     * @param contentEncoding coding of a precompressed copy at {@code key}, null for the file itself
+     */
+    public record FileInfo(String key, String name, long length, long lastModified, String contentType, String version,
+                           String contentEncoding) {
+        public FileInfo(String key, String name, long length, long lastModified, String contentType, String version) {
+            this(key, name, length, lastModified, contentType, version, null);
+        }
+
+        // each coding is another representation and needs its own strong validator
+        public String eTag() {
+            return "\"" + version + (contentEncoding == null ? "" : "-" + contentEncoding) + "\"";
+        }
+    }
+
+    /**
+     * An upload as stored: the content-addressed name and the metadata
+     * worked out while it was written.
+     */
+    public record StoredFile(String fileName, long size, String contentType, String sha256, String originalFileName) {
+    }
 
-        String fileName = material.getUrl().substring(material.getUrl().lastIndexOf('/') + 1);
-        return getContentType(fileName);
+    private static CustomizableThreadFactory purgeThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("file-purge-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,300 @@
+package ma.emsi.emstudy.Service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Service.FileStorageService.FileInfo;
+import ma.emsi.emstudy.Storage.StorageBackend;
+import org.apache.catalina.Globals;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes stored files to the response with HTTP range support (RFC 7233), so a video player can
+ * seek without downloading the file again from byte zero: single ranges are answered with 206 and
+ * a {@code Content-Range}, several ranges with a {@code multipart/byteranges} body, ranges past the
+ * end of the file with 416, and {@code If-Range} falls back to the whole file once it changed.
+ * The whole file or a single range is handed to Tomcat's sendfile, which copies it from the page
+ * cache to the socket with {@code FileChannel.transferTo} without passing through the JVM heap.
+ * Multipart bodies, small files and connectors without sendfile (TLS) are read with positional
+ * reads through one fixed-size buffer, so memory use doesn't grow with the file or the number of
+ * ranges either way. Files kept in a remote store are streamed from it the same way, each range
+ * fetched on its own.
+ */
+@Service
+@RequiredArgsConstructor
+public class FileStreamingService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // below this, setting up sendfile costs more than copying; the same threshold as Tomcat's DefaultServlet
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    private final FileStorageService fileStorageService;
+    private final PrecompressionService precompressionService;
+    private final StorageBackend storage;
+
+    // internal nginx location mapped to the upload directory, empty to send the files from here
+    @Value("${file.accel-redirect-location:}")
+    private String accelRedirectLocation;
+
+    /**
+     * Sends a material's file. With an X-Accel-Redirect location configured and files on local
+     * disk, only the headers are written and nginx sends the file itself from the shared upload
+     * volume, ranges and conditional requests included, so the Tomcat thread is free as soon as
+     * the access check is done.
+     * Text-like files are sent gzipped from their precompressed copy to clients that accept it;
+     * those copies are small and always sent from here, as nginx drops the {@code Content-Encoding}
+     * of a redirecting response. Callers check access before calling this.
+     */
+    public void serve(CourseMaterial material, String disposition,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (PrecompressionService.isCompressible(fileStorageService.getContentType(material))) {
+            // the response depends on Accept-Encoding whichever representation is sent
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            FileInfo compressed = precompressionService.getVariant(material, request);
+            if (compressed != null) {
+                serve(compressed, disposition, request, response);
+                return;
+            }
+        }
+        if (accelRedirectLocation.isEmpty() || storage.localRoot() == null) {
+            serve(fileStorageService.getMaterialFile(material), disposition, request, response);
+            return;
+        }
+        String fileName = fileStorageService.getStoredFileName(material);
+        // nginx keeps these from the redirecting response and adds the rest
+        response.setContentType(fileStorageService.getContentType(material));
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(disposition, fileStorageService.getDownloadName(material)));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        String location = accelRedirectLocation.endsWith("/") ? accelRedirectLocation : accelRedirectLocation + "/";
+        // the file's path under the upload directory, which the location is mapped to
+        String path = storage.localRoot().relativize(storage.localPath(fileName)).toString().replace('\\', '/');
+        response.setHeader("X-Accel-Redirect", location + UriUtils.encodePath(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param disposition {@code inline} or {@code attachment}
+     */
+    public void serve(FileInfo file, String disposition,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String contentType = file.contentType();
+        String eTag = file.eTag();
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+            return;
+        }
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(disposition, file.name()));
+        if (file.contentEncoding() != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, file.contentEncoding());
+        }
+
+        List<HttpRange> ranges = requestedRanges(request, eTag, lastModified, length);
+        if (ranges == null) {
+            response.setContentType(contentType);
+            response.setContentLengthLong(length);
+            writeBody(request, response, file.key(), List.of(new Part(0, length - 1, null)), length);
+            return;
+        }
+
+        List<Part> parts = new ArrayList<>(ranges.size());
+        for (HttpRange range : ranges) {
+            // unsatisfiable ranges are dropped as long as another one can be served
+            if (range.getRangeStart(length) < length) {
+                parts.add(new Part(range.getRangeStart(length), range.getRangeEnd(length), null));
+            }
+        }
+        if (parts.isEmpty() || length == 0) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setContentLength(0);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (parts.size() == 1) {
+            Part part = parts.get(0);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(part, length));
+            response.setContentLengthLong(part.length());
+            writeBody(request, response, file.key(), parts, length);
+            return;
+        }
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<Part> multipart = new ArrayList<>(parts.size());
+        long contentLength = 0;
+        for (Part part : parts) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(part, length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            multipart.add(new Part(part.start(), part.end(), header));
+            contentLength += header.length + part.length();
+        }
+        byte[] trailer = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += trailer.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        writeBody(request, response, file.key(), multipart, length);
+        if (!isHead(request)) {
+            response.getOutputStream().write(trailer);
+        }
+    }
+
+    // null when the whole file should be sent
+    private static List<HttpRange> requestedRanges(HttpServletRequest request, String eTag, long lastModified, long length) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !rangeMatches(request.getHeader(HttpHeaders.IF_RANGE), eTag, lastModified)) {
+            return null;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // a malformed or non-byte Range header is ignored, not an error
+            return null;
+        }
+        if (ranges.isEmpty()) {
+            return null;
+        }
+        // overlapping ranges asking for more than the file itself are answered with the file once
+        long requested = 0;
+        for (HttpRange range : ranges) {
+            if (range.getRangeStart(length) < length) {
+                requested += range.getRangeEnd(length) - range.getRangeStart(length) + 1;
+            }
+        }
+        return requested > length ? null : ranges;
+    }
+
+    // If-Range holds either an entity tag, compared strongly, or the exact Last-Modified date
+    private static boolean rangeMatches(String ifRange, String eTag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            Instant date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return date.getEpochSecond() == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private void writeBody(HttpServletRequest request, HttpServletResponse response, String key,
+                           List<Part> parts, long length) throws IOException {
+        if (isHead(request) || length == 0) {
+            return;
+        }
+        Path file = storage.localPath(key);
+        if (file == null) {
+            writeRemoteBody(response, key, parts, length);
+            return;
+        }
+        if (parts.size() == 1 && parts.get(0).header() == null && parts.get(0).length() >= SENDFILE_MIN_SIZE
+                && Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))) {
+            // Tomcat sends it once the handler has returned, using the Content-Length already set
+            request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+            request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, parts.get(0).start());
+            request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, parts.get(0).end() + 1);
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (Part part : parts) {
+                if (part.header() != null) {
+                    out.write(part.header());
+                }
+                long position = part.start();
+                long end = part.end() + 1;
+                while (position < end) {
+                    buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position));
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        throw new IOException("File shrank while being sent: " + file.getFileName());
+                    }
+                    out.write(buffer.array(), 0, read);
+                    position += read;
+                }
+            }
+        }
+    }
+
+    private void writeRemoteBody(HttpServletResponse response, String key, List<Part> parts, long length) throws IOException {
+        OutputStream out = response.getOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (Part part : parts) {
+            if (part.header() != null) {
+                out.write(part.header());
+            }
+            long written = 0;
+            try (InputStream in = part.length() == length ? storage.get(key) : storage.get(key, part.start(), part.length())) {
+                for (int read; written < part.length()
+                        && (read = in.read(buffer, 0, (int) Math.min(BUFFER_SIZE, part.length() - written))) >= 0; ) {
+                    out.write(buffer, 0, read);
+                    written += read;
+                }
+            }
+            if (written != part.length()) {
+                throw new IOException("File shrank while being sent: " + key);
+            }
+        }
+    }
+
+    // original file names can hold quotes and non-ASCII characters
+    private static String contentDisposition(String disposition, String fileName) {
+        ContentDisposition.Builder builder = ContentDisposition.builder(disposition);
+        if (StandardCharsets.US_ASCII.newEncoder().canEncode(fileName)) {
+            builder.filename(fileName);
+        } else {
+            builder.filename(fileName, StandardCharsets.UTF_8);
+        }
+        return builder.build().toString();
+    }
+
+    private static boolean isHead(HttpServletRequest request) {
+        return "HEAD".equals(request.getMethod());
+    }
+
+    private static String contentRange(Part part, long length) {
+        return "bytes " + part.start() + "-" + part.end() + "/" + length;
+    }
+
+    // an inclusive byte range, with the multipart headers written before it
+    private record Part(long start, long end, byte[] header) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package ma.emsi.emstudy.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Entity.CourseMaterialType;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Exception.ResourceNotFoundException;
+import ma.emsi.emstudy.Service.FileStorageService.FileInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileCacheImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaled-down copies of image materials, so that pages listing images don't download every
+ * original. They are made in the background once an image is uploaded, on a small pool with a
+ * bounded queue, and kept next to the stored file under its content hash, so materials sharing a
+ * file share its renditions too. Until a rendition exists, or when the original is already
+ * smaller, the original is served instead.
+ */
+@Slf4j
+@Service
+public class ImageRenditionService {
+
+    private static final float JPEG_QUALITY = 0.82f;
+
+    private final FileStorageService fileStorageService;
+    private final ThreadPoolExecutor executor;
+    private final long maxPixels;
+    // stored files being rendered or waiting for it, so a burst of requests queues each once
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // renditions a stored file doesn't get (its original is small, animated or can't be decoded), by
+    // "<stored name>-<suffix>", so their requests don't queue it again
+    private final Cache<String, Boolean> withoutRenditions = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    public ImageRenditionService(FileStorageService fileStorageService,
+                                 @Value("${images.renditions.threads:2}") int threads,
+                                 @Value("${images.renditions.queue-capacity:200}") int queueCapacity,
+                                 @Value("${images.renditions.max-pixels:50000000}") long maxPixels) {
+        this.fileStorageService = fileStorageService;
+        this.maxPixels = maxPixels;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public enum Rendition {
+        THUMBNAIL("thumb", 320),
+        MEDIUM("medium", 1280);
+
+        private final String suffix;
+        private final int maxSide;
+
+        Rendition(String suffix, int maxSide) {
+            this.suffix = suffix;
+            this.maxSide = maxSide;
+        }
+
+        /**
+         * @param size {@code thumb}, {@code medium} or {@code original}
+         * @return the rendition, or null for the original
+         */
+        public static Rendition from(String size) {
+            if (size == null || size.equalsIgnoreCase("original")) {
+                return null;
+            }
+            for (Rendition rendition : values()) {
+                if (rendition.suffix.equalsIgnoreCase(size)) {
+                    return rendition;
+                }
+            }
+            throw new InvalidInputException("Unknown image size: " + size);
+        }
+    }
+
+    /**
+     * Queues the renditions of an image material. Nothing happens when the queue is full; the
+     * image is queued again the next time one of its renditions is asked for.
+     */
+    public void renderLater(CourseMaterial material) {
+        if (material.getCourseMaterialType() != CourseMaterialType.IMAGE || material.getUrl() == null) {
+            return;
+        }
+        String fileName = fileStorageService.getStoredFileName(material);
+        String contentType = fileStorageService.getContentType(material);
+        if (!FileStorageService.isContentAddressed(fileName) || !pending.add(fileName)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    render(fileName, contentType);
+                } catch (IOException | RuntimeException e) {
+                    // a file that couldn't be read or stored is tried again by its next request
+                    if (undecodable(e)) {
+                        skip(fileName, Rendition.values());
+                    }
+                    log.warn("Could not render {}", fileName, e);
+                } finally {
+                    pending.remove(fileName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(fileName);
+            log.debug("Rendition queue is full, {} is left for later", fileName);
+        }
+    }
+
+    /**
+     * The rendition of an image material, or null when the original should be served instead,
+     * because the rendition isn't made yet or the original is no larger.
+     */
+    public FileInfo getRendition(CourseMaterial material, Rendition rendition) throws IOException {
+        String fileName = fileStorageService.getStoredFileName(material);
+        if (withoutRenditions.getIfPresent(fileName + "-" + rendition.suffix) != null) {
+            return null;
+        }
+        String format = formatFor(fileStorageService.getContentType(material));
+        String renditionName = fileStorageService.getDerivedName(fileName, variant(rendition, format));
+        if (renditionName == null) {
+            return null;
+        }
+        FileInfo file;
+        try {
+            file = fileStorageService.describe(renditionName);
+        } catch (ResourceNotFoundException e) {
+            renderLater(material);
+            return null;
+        }
+        String baseName = StringUtils.stripFilenameExtension(fileStorageService.getDownloadName(material));
+        return new FileInfo(file.key(), baseName + "-" + rendition.suffix + "." + format, file.length(),
+                file.lastModified(), "image/" + format, file.version());
+    }
+
+    // decodes the original once, at the lowest resolution the largest rendition can be made from
+    void render(String fileName, String contentType) throws IOException {
+        String format = formatFor(contentType);
+        BufferedImage image;
+        try (ImageInputStream in = open(fileName)) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                skip(fileName, Rendition.values());
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int largestSide = Math.max(width, height);
+                // animations would lose their frames, huge images would need too much memory
+                if (largestSide <= Rendition.THUMBNAIL.maxSide || (long) width * height > maxPixels
+                        || (reader.getFormatName().equalsIgnoreCase("gif") && reader.getNumImages(true) > 1)) {
+                    skip(fileName, Rendition.values());
+                    return;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                // keep at least twice the pixels of the largest rendition for the smooth scaling below
+                int subsampling = Math.max(1, largestSide / (2 * Rendition.MEDIUM.maxSide));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        int largestSide = Math.max(image.getWidth(), image.getHeight());
+        for (Rendition rendition : new Rendition[]{Rendition.MEDIUM, Rendition.THUMBNAIL}) {
+            if (largestSide <= rendition.maxSide) {
+                skip(fileName, rendition);
+                continue;
+            }
+            // the thumbnail is scaled down from the medium one
+            image = scale(image, rendition.maxSide, format);
+            largestSide = Math.max(image.getWidth(), image.getHeight());
+            Path temp = fileStorageService.createTempFile(".rendition-");
+            try {
+                write(image, format, temp);
+                if (!fileStorageService.storeDerived(fileName, variant(rendition, format), temp)) {
+                    // the original was purged meanwhile
+                    return;
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    // the reader seeks back at times: a local file directly, a remote one through a disk cache of
+    // what was read so far
+    private ImageInputStream open(String fileName) throws IOException {
+        Path local = fileStorageService.getLocalPath(fileName);
+        if (local != null) {
+            return ImageIO.createImageInputStream(local.toFile());
+        }
+        InputStream stream = fileStorageService.openStream(fileName);
+        try {
+            return new FileCacheImageInputStream(stream, null) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        stream.close();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    // halves the image until it is within twice the target, as a single bilinear step that large
+    // would skip most source pixels
+    private static BufferedImage scale(BufferedImage image, int maxSide, String format) {
+        double ratio = (double) maxSide / Math.max(image.getWidth(), image.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage current = image;
+        do {
+            int width = Math.max(targetWidth, current.getWidth() / 2);
+            int height = Math.max(targetHeight, current.getHeight() / 2);
+            if (current.getWidth() <= 2 * targetWidth && current.getHeight() <= 2 * targetHeight) {
+                width = targetWidth;
+                height = targetHeight;
+            }
+            current = draw(current, width, height, format);
+        } while (current.getWidth() != targetWidth || current.getHeight() != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage image, int width, int height, String format) {
+        boolean png = format.equals("png");
+        BufferedImage scaled = new BufferedImage(width, height, png ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            if (!png) {
+                // JPEG has no transparency
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static void write(BufferedImage image, String format, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format.equals("jpeg")) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // formats that may be transparent keep it in PNG, the rest become JPEG; the JDK has no
+    // WebP or AVIF encoder
+    static String formatFor(String contentType) {
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+        return type.equals("image/png") || type.equals("image/gif") ? "png" : "jpeg";
+    }
+
+    // the image codecs rejected the original, rather than reading or writing a file failing
+    static boolean undecodable(Exception e) {
+        if (e instanceof IIOException) {
+            return !(e.getCause() instanceof IOException);
+        }
+        return e instanceof RuntimeException && !(e instanceof UncheckedIOException);
+    }
+
+    private void skip(String fileName, Rendition... renditions) {
+        for (Rendition rendition : renditions) {
+            withoutRenditions.put(fileName + "-" + rendition.suffix, Boolean.TRUE);
+        }
+    }
+
+    private static String variant(Rendition rendition, String format) {
+        return rendition.suffix + "." + format;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static CustomizableThreadFactory threadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("image-rendition-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
@@ -0,0 +1,163 @@
+package ma.emsi.emstudy.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import ma.emsi.emstudy.DTO.JoinCodeDTO;
+import ma.emsi.emstudy.Entity.Course;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Exception.ResourceNotFoundException;
+import ma.emsi.emstudy.Repository.CourseRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Generates course join codes and resolves them to course ids. Resolved codes are kept in
+ * memory, so a cohort enrolling at once only reaches the database for the first request.
+ * The cache is updated whenever a code is assigned, rotated or its course deleted on this
+ * instance; a change made on another one shows here once the entry is older than
+ * {@code join-codes.cache.ttl}.
+ */
+@Service
+public class JoinCodeService {
+
+    // no 0/O or 1/I, codes are read aloud and copied from slides
+    private static final char[] ALPHABET = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789".toCharArray();
+    private static final int CODE_LENGTH = 8;
+    static final int MAX_ATTEMPTS = 10;
+
+    private final CourseRepo courseRepo;
+    private final SecureRandom random = new SecureRandom();
+    private final Cache<String, Target> targets;
+    // the cached code of each course, so forgetting a course doesn't go through every code
+    private final Cache<Long, String> codes;
+
+    public JoinCodeService(CourseRepo courseRepo,
+                           @Value("${join-codes.cache.max-size:10000}") long maxSize,
+                           @Value("${join-codes.cache.ttl:30s}") Duration ttl) {
+        this.courseRepo = courseRepo;
+        this.targets = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).build();
+        this.codes = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).build();
+    }
+
+    /**
+     * @return the id of the course the code opens
+     * @throws ResourceNotFoundException if no course has this code
+     * @throws InvalidInputException     if the code has expired
+     */
+    public Long resolve(String joinCode) {
+        String code = normalize(joinCode);
+        Target target = targets.getIfPresent(code);
+        if (target == null) {
+            target = courseRepo.findJoinCodeTarget(code)
+                    .map(found -> new Target(found.getCourseId(), found.getExpiresAt()))
+                    .orElseThrow(() -> new ResourceNotFoundException("Invalid join code"));
+            put(code, target);
+        }
+        if (target.expiresAt() != null && target.expiresAt().isBefore(Instant.now())) {
+            throw new InvalidInputException("This join code has expired, ask your teacher for a new one");
+        }
+        return target.courseId();
+    }
+
+    /**
+     * Gives a course that is about to be created a code no other course uses. The unique
+     * index on the column still rejects the rare race between this check and the insert, the
+     * caller then assigns another one, up to {@link #MAX_ATTEMPTS} times.
+     */
+    public void assignNewCode(Course course) {
+        course.setJoinCode(unusedCode());
+    }
+
+    // Call once the course carrying a code from assignNewCode has been saved; inside a
+    // transaction the code only resolves once it commits, so a rolled back course never does
+    public void register(Course course) {
+        Target target = new Target(course.getCourseId(), course.getJoinCodeExpiresAt());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(course.getJoinCode(), target);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(course.getJoinCode(), target);
+            }
+        });
+    }
+
+    /**
+     * Replaces the course's code, invalidating the old one at once on this instance and within
+     * {@code join-codes.cache.ttl} on the others.
+     *
+     * @param validFor how long the new code is accepted, null for no expiry
+     */
+    public JoinCodeDTO rotate(Long courseId, Duration validFor) {
+        Instant expiresAt = validFor == null ? null : Instant.now().plus(validFor);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            String code = unusedCode();
+            int updated;
+            try {
+                updated = courseRepo.updateJoinCode(courseId, code, expiresAt);
+            } catch (DataIntegrityViolationException e) {
+                // another course took the code since unusedCode() checked it
+                continue;
+            }
+            if (updated == 0) {
+                throw new ResourceNotFoundException("Course not found with id: " + courseId);
+            }
+            forget(courseId);
+            put(code, new Target(courseId, expiresAt));
+            return new JoinCodeDTO(courseId, code, expiresAt);
+        }
+        throw new IllegalStateException("Could not find an unused join code");
+    }
+
+    public void forget(Long courseId) {
+        String code = codes.getIfPresent(courseId);
+        if (code != null) {
+            targets.invalidate(code);
+        }
+        codes.invalidate(courseId);
+    }
+
+    private void put(String code, Target target) {
+        String previous = codes.getIfPresent(target.courseId());
+        if (previous != null && !previous.equals(code)) {
+            targets.invalidate(previous);
+        }
+        targets.put(code, target);
+        codes.put(target.courseId(), code);
+    }
+
+    private String unusedCode() {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            String code = randomCode();
+            if (targets.getIfPresent(code) == null && !courseRepo.existsByJoinCode(code)) {
+                return code;
+            }
+        }
+        throw new IllegalStateException("Could not find an unused join code");
+    }
+
+    private String randomCode() {
+        char[] code = new char[CODE_LENGTH];
+        for (int i = 0; i < CODE_LENGTH; i++) {
+            code[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(code);
+    }
+
+    private static String normalize(String joinCode) {
+        return joinCode.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private record Target(Long courseId, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,836 @@
+package ma.emsi.emstudy.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Markdown to HTML for course materials: the CommonMark blocks and inlines course notes use,
+ * plus the GitHub extensions the course page rendered before (tables, strikethrough, task lists
+ * and bare links). Raw HTML is escaped rather than passed through, and links keep only safe
+ * schemes; the output is still sanitized by {@link MarkdownRenderingService}.
+ */
+final class MarkdownRenderer {
+
+    private static final Pattern FENCE = Pattern.compile(" {0,3}(`{3,}|~{3,})[ \\t]*([^`\\s]*)[^`]*");
+    private static final Pattern HEADING = Pattern.compile(" {0,3}(#{1,6})(?:[ \\t]+(.*))?");
+    private static final Pattern SETEXT_UNDERLINE = Pattern.compile(" {0,3}(=+|-+)[ \\t]*");
+    private static final Pattern BLOCKQUOTE = Pattern.compile(" {0,3}> ?(.*)");
+    private static final Pattern LIST_ITEM = Pattern.compile("( {0,3})([-*+]|\\d{1,9}[.)])(?:([ \\t]{1,4})(.*))?");
+    private static final Pattern TASK = Pattern.compile("\\[([ xX])][ \\t]+(.*)", Pattern.DOTALL);
+    private static final Pattern TABLE_ALIGNMENT = Pattern.compile(":?-+:?");
+    private static final Pattern AUTOLINK = Pattern.compile("<([a-zA-Z][a-zA-Z0-9+.-]{1,31}:[^<>\\s]*)>");
+    private static final Pattern EMAIL_AUTOLINK = Pattern.compile("<([a-zA-Z0-9.!#$%&'*+/=?^_`{|}~-]+@([a-zA-Z0-9.-]+))>");
+    private static final Pattern BARE_LINK = Pattern.compile("(?:https?://|www\\.)[^\\s<]*[^\\s<?!.,:*_~)'\"]");
+    private static final Pattern SCHEME = Pattern.compile("([a-zA-Z][a-zA-Z0-9+.-]*):.*", Pattern.DOTALL);
+    private static final Pattern CONTROL_OR_SPACE = Pattern.compile("[\\x00-\\x20\\x7f]");
+    private static final String PUNCTUATION = "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+    private static final String EMPHASIS = "*_~";
+    // quotes and lists nested deeper than this are left as text
+    private static final int MAX_NESTING = 16;
+
+    private MarkdownRenderer() {
+    }
+
+    static String render(String markdown) {
+        List<String> lines = new ArrayList<>();
+        for (String line : markdown.replace("\r\n", "\n").replace('\r', '\n').split("\n", -1)) {
+            lines.add(expandTabs(line));
+        }
+        StringBuilder html = new StringBuilder(markdown.length() + markdown.length() / 4);
+        renderBlocks(lines, false, 0, html);
+        return html.toString();
+    }
+
+    // tight list items hold their text without <p>
+    private static void renderBlocks(List<String> lines, boolean tight, int depth, StringBuilder html) {
+        int i = 0;
+        while (i < lines.size()) {
+            String line = lines.get(i);
+            Matcher matcher;
+            if (line.isBlank()) {
+                i++;
+            } else if ((matcher = FENCE.matcher(line)).matches()) {
+                i = fencedCode(lines, i, matcher, html);
+            } else if ((matcher = HEADING.matcher(line)).matches()) {
+                heading(matcher.group(1).length(), headingText(matcher.group(2)), html);
+                i++;
+            } else if (isThematicBreak(line)) {
+                html.append("<hr>\n");
+                i++;
+            } else if (line.startsWith("    ")) {
+                i = indentedCode(lines, i, html);
+            } else if (depth < MAX_NESTING && BLOCKQUOTE.matcher(line).matches()) {
+                i = blockquote(lines, i, depth, html);
+            } else if (depth < MAX_NESTING && (matcher = LIST_ITEM.matcher(line)).matches()) {
+                i = list(lines, i, matcher, depth, html);
+            } else if (isTable(lines, i)) {
+                i = table(lines, i, html);
+            } else {
+                i = paragraph(lines, i, tight, html);
+            }
+        }
+    }
+
+    private static int fencedCode(List<String> lines, int start, Matcher opening, StringBuilder html) {
+        String fence = opening.group(1);
+        int indent = leadingSpaces(lines.get(start));
+        String language = unescape(opening.group(2));
+        html.append("<pre><code");
+        if (!language.isEmpty()) {
+            html.append(" class=\"language-");
+            escape(language, html);
+            html.append('"');
+        }
+        html.append('>');
+        int i = start + 1;
+        for (; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String trimmed = line.strip();
+            if (leadingSpaces(line) < 4 && trimmed.length() >= fence.length()
+                    && trimmed.chars().allMatch(c -> c == fence.charAt(0))) {
+                i++;
+                break;
+            }
+            escape(line.substring(Math.min(indent, leadingSpaces(line))), html);
+            html.append('\n');
+        }
+        html.append("</code></pre>\n");
+        return i;
+    }
+
+    private static int indentedCode(List<String> lines, int start, StringBuilder html) {
+        int end = start;
+        for (int i = start; i < lines.size() && (lines.get(i).isBlank() || lines.get(i).startsWith("    ")); i++) {
+            if (!lines.get(i).isBlank()) {
+                end = i;
+            }
+        }
+        html.append("<pre><code>");
+        for (int i = start; i <= end; i++) {
+            String line = lines.get(i);
+            escape(line.length() > 4 ? line.substring(4) : "", html);
+            html.append('\n');
+        }
+        html.append("</code></pre>\n");
+        return end + 1;
+    }
+
+    // the closing #s are optional and need a space before them
+    private static String headingText(String text) {
+        if (text == null) {
+            return "";
+        }
+        String stripped = text.strip();
+        int end = stripped.length();
+        while (end > 0 && stripped.charAt(end - 1) == '#') {
+            end--;
+        }
+        return end > 0 && end < stripped.length() && Character.isWhitespace(stripped.charAt(end - 1))
+                ? stripped.substring(0, end) : stripped;
+    }
+
+    // three or more of the same '*', '-' or '_', spaces aside
+    private static boolean isThematicBreak(String line) {
+        if (leadingSpaces(line) > 3) {
+            return false;
+        }
+        String marks = line.replace(" ", "").replace("\t", "");
+        return marks.length() >= 3 && "*-_".indexOf(marks.charAt(0)) >= 0 && run(marks, 0, marks.charAt(0)) == marks.length();
+    }
+
+    private static void heading(int level, String text, StringBuilder html) {
+        html.append("<h").append(level).append('>');
+        inline(text.strip(), html);
+        html.append("</h").append(level).append(">\n");
+    }
+
+    // a quoted paragraph goes on over following lines without '>'
+    private static int blockquote(List<String> lines, int start, int depth, StringBuilder html) {
+        List<String> quoted = new ArrayList<>();
+        int i = start;
+        boolean inParagraph = false;
+        for (; i < lines.size(); i++) {
+            String line = lines.get(i);
+            Matcher matcher = BLOCKQUOTE.matcher(line);
+            if (matcher.matches()) {
+                quoted.add(matcher.group(1));
+                inParagraph = !matcher.group(1).isBlank() && !startsBlock(matcher.group(1));
+            } else if (inParagraph && !line.isBlank() && !startsBlock(line)) {
+                quoted.add(line);
+            } else {
+                break;
+            }
+        }
+        html.append("<blockquote>\n");
+        renderBlocks(quoted, false, depth + 1, html);
+        html.append("</blockquote>\n");
+        return i;
+    }
+
+    private static int list(List<String> lines, int start, Matcher first, int depth, StringBuilder html) {
+        String marker = first.group(2);
+        boolean ordered = Character.isDigit(marker.charAt(0));
+        char delimiter = marker.charAt(marker.length() - 1);
+        List<List<String>> items = new ArrayList<>();
+        boolean loose = false;
+        int i = start;
+        while (i < lines.size()) {
+            Matcher matcher = LIST_ITEM.matcher(lines.get(i));
+            if (!sameList(matcher, ordered, delimiter)) {
+                break;
+            }
+            String content = matcher.group(4) == null ? "" : matcher.group(4);
+            int contentIndent = matcher.group(1).length() + matcher.group(2).length()
+                    + (matcher.group(3) == null ? 1 : matcher.group(3).length());
+            List<String> item = new ArrayList<>();
+            item.add(content);
+            i++;
+            boolean blankBefore = false;
+            boolean inParagraph = !content.isBlank();
+            for (; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line.isBlank()) {
+                    blankBefore = true;
+                    inParagraph = false;
+                    item.add("");
+                } else if (leadingSpaces(line) >= contentIndent) {
+                    loose |= blankBefore && !item.get(0).isBlank();
+                    blankBefore = false;
+                    String nested = line.substring(contentIndent);
+                    inParagraph = !startsBlock(nested);
+                    item.add(nested);
+                } else if (inParagraph && !startsBlock(line) && !LIST_ITEM.matcher(line).matches()) {
+                    item.add(line.strip());
+                } else {
+                    break;
+                }
+            }
+            // a blank line before the next item loosens the list
+            if (blankBefore && i < lines.size() && sameList(LIST_ITEM.matcher(lines.get(i)), ordered, delimiter)) {
+                loose = true;
+            }
+            while (!item.isEmpty() && item.get(item.size() - 1).isBlank()) {
+                item.remove(item.size() - 1);
+            }
+            items.add(item);
+        }
+
+        if (ordered) {
+            int number = Integer.parseInt(marker.substring(0, marker.length() - 1));
+            html.append(number == 1 ? "<ol>\n" : "<ol start=\"" + number + "\">\n");
+        } else {
+            html.append("<ul>\n");
+        }
+        for (List<String> item : items) {
+            html.append("<li>");
+            Matcher task = item.isEmpty() ? null : TASK.matcher(item.get(0));
+            if (task != null && task.matches()) {
+                html.append(task.group(1).isBlank() ? "<input type=\"checkbox\" disabled> " : "<input type=\"checkbox\" checked disabled> ");
+                item.set(0, task.group(2));
+            }
+            if (!loose) {
+                StringBuilder content = new StringBuilder();
+                renderBlocks(item, true, depth + 1, content);
+                html.append(content.toString().strip());
+            } else {
+                html.append('\n');
+                renderBlocks(item, false, depth + 1, html);
+            }
+            html.append("</li>\n");
+        }
+        html.append(ordered ? "</ol>\n" : "</ul>\n");
+        return i;
+    }
+
+    // a different bullet or delimiter starts another list
+    private static boolean sameList(Matcher item, boolean ordered, char delimiter) {
+        if (!item.matches()) {
+            return false;
+        }
+        String marker = item.group(2);
+        return marker.charAt(marker.length() - 1) == delimiter && Character.isDigit(marker.charAt(0)) == ordered;
+    }
+
+    // |:--|--:| with optional outer pipes
+    private static boolean isTableDelimiter(String line) {
+        return leadingSpaces(line) <= 3 && cells(line).stream().allMatch(cell -> TABLE_ALIGNMENT.matcher(cell).matches());
+    }
+
+    private static boolean isTable(List<String> lines, int i) {
+        return i + 1 < lines.size() && lines.get(i).contains("|")
+                && isTableDelimiter(lines.get(i + 1))
+                && cells(lines.get(i)).size() == cells(lines.get(i + 1)).size();
+    }
+
+    private static int table(List<String> lines, int start, StringBuilder html) {
+        List<String> header = cells(lines.get(start));
+        List<String> alignments = new ArrayList<>();
+        for (String delimiter : cells(lines.get(start + 1))) {
+            boolean left = delimiter.startsWith(":");
+            boolean right = delimiter.endsWith(":");
+            alignments.add(left && right ? "center" : right ? "right" : left ? "left" : null);
+        }
+        html.append("<table>\n<thead>\n");
+        row(header, alignments, "th", html);
+        html.append("</thead>\n");
+        int i = start + 2;
+        boolean body = false;
+        for (; i < lines.size() && !lines.get(i).isBlank() && !startsBlock(lines.get(i)); i++) {
+            if (!body) {
+                html.append("<tbody>\n");
+                body = true;
+            }
+            row(cells(lines.get(i)), alignments, "td", html);
+        }
+        if (body) {
+            html.append("</tbody>\n");
+        }
+        html.append("</table>\n");
+        return i;
+    }
+
+    // rows have as many cells as the header, missing ones are left empty and extra ones dropped
+    private static void row(List<String> cells, List<String> alignments, String tag, StringBuilder html) {
+        html.append("<tr>\n");
+        for (int column = 0; column < alignments.size(); column++) {
+            html.append('<').append(tag);
+            if (alignments.get(column) != null) {
+                html.append(" align=\"").append(alignments.get(column)).append('"');
+            }
+            html.append('>');
+            if (column < cells.size()) {
+                inline(cells.get(column), html);
+            }
+            html.append("</").append(tag).append(">\n");
+        }
+        html.append("</tr>\n");
+    }
+
+    // splits on pipes that aren't escaped, leading and trailing pipes are optional
+    private static List<String> cells(String line) {
+        String row = line.strip();
+        if (row.startsWith("|")) {
+            row = row.substring(1);
+        }
+        if (row.endsWith("|") && !row.endsWith("\\|")) {
+            row = row.substring(0, row.length() - 1);
+        }
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (c == '\\' && i + 1 < row.length() && row.charAt(i + 1) == '|') {
+                cell.append('|');
+                i++;
+            } else if (c == '|') {
+                cells.add(cell.toString().strip());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString().strip());
+        return cells;
+    }
+
+    private static int paragraph(List<String> lines, int start, boolean tight, StringBuilder html) {
+        StringBuilder text = new StringBuilder(lines.get(start).strip());
+        int i = start + 1;
+        for (; i < lines.size(); i++) {
+            String line = lines.get(i);
+            Matcher underline = SETEXT_UNDERLINE.matcher(line);
+            if (underline.matches()) {
+                heading(underline.group(1).charAt(0) == '=' ? 1 : 2, text.toString(), html);
+                return i + 1;
+            }
+            if (line.isBlank() || startsBlock(line)) {
+                break;
+            }
+            // trailing spaces are kept until the inlines have looked for hard breaks
+            text.append('\n').append(line.stripLeading());
+        }
+        String content = text.toString().stripTrailing();
+        if (!tight) {
+            html.append("<p>");
+        }
+        inline(content, html);
+        html.append(tight ? "\n" : "</p>\n");
+        return i;
+    }
+
+    // whether a line interrupts a paragraph
+    private static boolean startsBlock(String line) {
+        Matcher item = LIST_ITEM.matcher(line);
+        return FENCE.matcher(line).matches() || HEADING.matcher(line).matches()
+                || isThematicBreak(line) || BLOCKQUOTE.matcher(line).matches()
+                || (item.matches() && item.group(4) != null && !item.group(4).isBlank()
+                && (!Character.isDigit(item.group(2).charAt(0)) || item.group(2).startsWith("1")));
+    }
+
+    private static void inline(String text, StringBuilder html) {
+        inline(new Inlines(text, true), html);
+    }
+
+    private static void inline(Inlines inlines, StringBuilder html) {
+        String text = inlines.text;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int next;
+            if (c == '\\' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                html.append("<br>\n");
+                i += 2;
+            } else if (c == '\\' && i + 1 < text.length() && PUNCTUATION.indexOf(text.charAt(i + 1)) >= 0) {
+                escape(String.valueOf(text.charAt(i + 1)), html);
+                i += 2;
+            } else if (c == '`' && (next = codeSpan(inlines, i, html)) > i) {
+                i = next;
+            } else if (c == '<' && (next = autolink(text, i, html)) > i) {
+                i = next;
+            } else if (c == '!' && i + 1 < text.length() && text.charAt(i + 1) == '[' && (next = link(inlines, i + 1, true, html)) > i) {
+                i = next;
+            } else if (c == '[' && inlines.links && (next = link(inlines, i, false, html)) > i) {
+                i = next;
+            } else if ((c == '*' || c == '_' || c == '~') && (next = emphasis(inlines, i, html)) > i) {
+                i = next;
+            } else if ((c == 'h' || c == 'w') && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))
+                    && (next = bareLink(text, i, html)) > i) {
+                i = next;
+            } else if (c == '\n') {
+                // two trailing spaces make a hard break
+                int spaces = html.length();
+                while (spaces > 0 && html.charAt(spaces - 1) == ' ') {
+                    spaces--;
+                }
+                boolean hardBreak = html.length() - spaces >= 2;
+                html.setLength(spaces);
+                html.append(hardBreak ? "<br>\n" : "\n");
+                i++;
+            } else {
+                escape(String.valueOf(c), html);
+                i++;
+            }
+        }
+    }
+
+    private static int codeSpan(Inlines inlines, int start, StringBuilder html) {
+        String text = inlines.text;
+        int ticks = run(text, start, '`');
+        Integer unclosedFrom = inlines.unclosedTicks.get(ticks);
+        int i = unclosedFrom != null && unclosedFrom <= start ? text.length() : start + ticks;
+        while (i < text.length()) {
+            int closing = text.indexOf('`', i);
+            if (closing < 0) {
+                break;
+            }
+            int closingTicks = run(text, closing, '`');
+            if (closingTicks == ticks) {
+                String code = text.substring(start + ticks, closing).replace('\n', ' ');
+                if (code.length() > 2 && code.startsWith(" ") && code.endsWith(" ") && !code.isBlank()) {
+                    code = code.substring(1, code.length() - 1);
+                }
+                html.append("<code>");
+                escape(code, html);
+                html.append("</code>");
+                return closing + closingTicks;
+            }
+            i = closing + closingTicks;
+        }
+        // no closing run, the backticks are text
+        inlines.unclosedTicks.merge(ticks, start, Math::min);
+        escape(text.substring(start, start + ticks), html);
+        return start + ticks;
+    }
+
+    private static int autolink(String text, int start, StringBuilder html) {
+        Matcher uri = AUTOLINK.matcher(text).region(start, text.length());
+        if (uri.lookingAt()) {
+            anchor(uri.group(1), null, uri.group(1), html);
+            return uri.end();
+        }
+        Matcher email = EMAIL_AUTOLINK.matcher(text).region(start, text.length());
+        String domain = email.lookingAt() ? email.group(2) : "";
+        if (domain.contains(".") && !domain.startsWith(".") && !domain.endsWith(".") && !domain.contains("..")) {
+            anchor("mailto:" + email.group(1), null, email.group(1), html);
+            return email.end();
+        }
+        return start;
+    }
+
+    private static int bareLink(String text, int start, StringBuilder html) {
+        Matcher matcher = BARE_LINK.matcher(text).region(start, text.length());
+        if (!matcher.lookingAt()) {
+            return start;
+        }
+        String url = matcher.group();
+        anchor(url.startsWith("www.") ? "http://" + url : url, null, url, html);
+        return matcher.end();
+    }
+
+    // [text](destination "title") and ![alt](source "title"); anything else stays text
+    private static int link(Inlines inlines, int open, boolean image, StringBuilder html) {
+        String text = inlines.text;
+        int unmatched = open - (image ? 1 : 0);
+        int close = inlines.closingBracket(open);
+        if (close < 0 || close + 1 >= text.length() || text.charAt(close + 1) != '(') {
+            return unmatched;
+        }
+        int i = inlines.skipSpaces(close + 2);
+        int destinationStart;
+        int destinationEnd;
+        if (i < text.length() && text.charAt(i) == '<') {
+            int end = inlines.indexOf('>', i);
+            int newline = inlines.indexOf('\n', i);
+            if (end < 0 || newline >= 0 && newline < end) {
+                return unmatched;
+            }
+            destinationStart = i + 1;
+            destinationEnd = end;
+            i = end + 1;
+        } else {
+            destinationStart = i;
+            destinationEnd = inlines.destinationEnd(i);
+            i = destinationEnd;
+        }
+        i = inlines.skipSpaces(i);
+        int titleStart = -1;
+        int titleEnd = -1;
+        if (i < text.length() && (text.charAt(i) == '"' || text.charAt(i) == '\'' || text.charAt(i) == '(')) {
+            char closing = text.charAt(i) == '(' ? ')' : text.charAt(i);
+            titleStart = i + 1;
+            titleEnd = inlines.indexOf(closing, titleStart);
+            if (titleEnd < 0) {
+                return unmatched;
+            }
+            i = inlines.skipSpaces(titleEnd + 1);
+        }
+        if (i >= text.length() || text.charAt(i) != ')') {
+            return unmatched;
+        }
+        String label = text.substring(open + 1, close);
+        String url = safeUrl(unescape(text.substring(destinationStart, destinationEnd)));
+        String title = titleEnd < 0 ? null : unescape(text.substring(titleStart, titleEnd));
+        if (image && url == null) {
+            escape(unescape(label), html);
+        } else if (image) {
+            html.append("<img src=\"");
+            escape(url, html);
+            html.append("\" alt=\"");
+            escape(unescape(label), html);
+            html.append('"');
+            if (title != null) {
+                html.append(" title=\"");
+                escape(title, html);
+                html.append('"');
+            }
+            html.append('>');
+        } else {
+            // links can't contain other links, images are fine
+            StringBuilder content = new StringBuilder();
+            inline(new Inlines(label, false), content);
+            anchorHtml(url, title, content, html);
+        }
+        return i + 1;
+    }
+
+    // *em*, **strong**, ***both***, _em_, __strong__ and ~~strikethrough~~ around inline content
+    private static int emphasis(Inlines inlines, int start, StringBuilder html) {
+        String text = inlines.text;
+        char delimiter = text.charAt(start);
+        int length = run(text, start, delimiter);
+        boolean leftFlanking = start + length < text.length() && !Character.isWhitespace(text.charAt(start + length));
+        boolean intraword = start > 0 && Character.isLetterOrDigit(text.charAt(start - 1));
+        if (!leftFlanking || length > 3 || (delimiter == '_' && intraword) || (delimiter == '~' && length != 2)) {
+            escape(text.substring(start, start + length), html);
+            return start + length;
+        }
+        int[] unclosedFrom = inlines.unclosedEmphasis[EMPHASIS.indexOf(delimiter)];
+        for (int i = start < unclosedFrom[length] ? start + length : text.length(); i < text.length(); ) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '`') {
+                i += run(text, i, '`');
+                continue;
+            }
+            if (c != delimiter) {
+                i++;
+                continue;
+            }
+            int closing = run(text, i, delimiter);
+            boolean rightFlanking = !Character.isWhitespace(text.charAt(i - 1));
+            boolean followedByWord = i + closing < text.length() && Character.isLetterOrDigit(text.charAt(i + closing));
+            if (closing == length && rightFlanking && !(delimiter == '_' && followedByWord)) {
+                String[] tags = delimiter == '~' ? new String[]{"del"}
+                        : length == 1 ? new String[]{"em"}
+                        : length == 2 ? new String[]{"strong"}
+                        : new String[]{"em", "strong"};
+                for (String tag : tags) {
+                    html.append('<').append(tag).append('>');
+                }
+                inline(new Inlines(text.substring(start + length, i), inlines.links), html);
+                for (int t = tags.length - 1; t >= 0; t--) {
+                    html.append("</").append(tags[t]).append('>');
+                }
+                return i + closing;
+            }
+            i += closing;
+        }
+        unclosedFrom[length] = Math.min(unclosedFrom[length], start);
+        escape(text.substring(start, start + length), html);
+        return start + length;
+    }
+
+    /**
+     * A text being parsed for inlines, with what earlier scans of it found out so that each
+     * opening delimiter doesn't rescan the rest of the text: a run that found no closer means
+     * none of the same kind after it will, brackets and parentheses are matched in one pass,
+     * and the searches for a closing character pick up where the previous one ended. That keeps
+     * input like {@code *a *a *a ...} or {@code [a]([a]([a](...} linear instead of quadratic.
+     */
+    private static final class Inlines {
+
+        // '>' and newline for <destinations>, and the characters that close a title
+        private static final String SEARCHED = ">\n\"')";
+
+        final String text;
+        final boolean links;
+        // by backtick run length, the first run with no closing run after it
+        final Map<Integer, Integer> unclosedTicks = new HashMap<>();
+        // by delimiter and run length, the first run with no closing run after it
+        final int[][] unclosedEmphasis = new int[EMPHASIS.length()][4];
+        private final int[] searchedFrom = new int[SEARCHED.length()];
+        private final int[] found = new int[SEARCHED.length()];
+        private int spacesFrom = Integer.MAX_VALUE;
+        private int spacesTo;
+        private BitSet escaped;
+        private int[] closingBrackets;
+        private int[] closingParens;
+        private int[] nextWhitespace;
+        private int[] destinationEnds;
+        private int[] walked;
+
+        Inlines(String text, boolean links) {
+            this.text = text;
+            this.links = links;
+            for (int[] unclosed : unclosedEmphasis) {
+                Arrays.fill(unclosed, Integer.MAX_VALUE);
+            }
+            Arrays.fill(searchedFrom, Integer.MAX_VALUE);
+        }
+
+        int indexOf(char c, int from) {
+            int k = SEARCHED.indexOf(c);
+            if (from < searchedFrom[k] || found[k] >= 0 && found[k] < from) {
+                searchedFrom[k] = from;
+                found[k] = text.indexOf(c, from);
+            }
+            return found[k];
+        }
+
+        int skipSpaces(int from) {
+            if (from < spacesFrom || from > spacesTo) {
+                spacesFrom = from;
+                spacesTo = MarkdownRenderer.skipSpaces(text, from);
+            }
+            return spacesTo;
+        }
+
+        // -1 when the bracket is never closed
+        int closingBracket(int open) {
+            if (closingBrackets == null) {
+                closingBrackets = matches('[', ']');
+            }
+            return closingBrackets[open];
+        }
+
+        // where an unbracketed destination ends: at whitespace or at a ')' it doesn't open
+        int destinationEnd(int start) {
+            if (destinationEnds == null) {
+                closingParens = matches('(', ')');
+                nextWhitespace = new int[text.length() + 1];
+                nextWhitespace[text.length()] = text.length();
+                for (int i = text.length() - 1; i >= 0; i--) {
+                    boolean whitespace = Character.isWhitespace(text.charAt(i)) && !escaped.get(i);
+                    nextWhitespace[i] = whitespace ? i : nextWhitespace[i + 1];
+                }
+                destinationEnds = new int[text.length()];
+                Arrays.fill(destinationEnds, -1);
+                walked = new int[text.length()];
+            }
+            // every position walked outside parentheses ends where this destination does
+            int count = 0;
+            int i = start;
+            int end;
+            while (true) {
+                if (i >= text.length()) {
+                    end = text.length();
+                    break;
+                }
+                if (destinationEnds[i] >= 0) {
+                    end = destinationEnds[i];
+                    break;
+                }
+                char c = text.charAt(i);
+                if (Character.isWhitespace(c) || c == ')') {
+                    end = i;
+                    break;
+                }
+                walked[count++] = i;
+                if (c == '\\') {
+                    i += 2;
+                } else if (c == '(' && (closingParens[i] < 0 || nextWhitespace[i] < closingParens[i])) {
+                    end = nextWhitespace[i];
+                    break;
+                } else if (c == '(') {
+                    i = closingParens[i] + 1;
+                } else {
+                    i++;
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                destinationEnds[walked[k]] = end;
+            }
+            return end;
+        }
+
+        // for each opening character that isn't escaped, the position of its closing one or -1
+        private int[] matches(char opening, char closing) {
+            if (escaped == null) {
+                escaped = new BitSet(text.length());
+                for (int i = 0; i + 1 < text.length(); i++) {
+                    if (text.charAt(i) == '\\') {
+                        escaped.set(++i);
+                    }
+                }
+            }
+            int[] matches = new int[text.length()];
+            int[] open = new int[text.length()];
+            int depth = 0;
+            Arrays.fill(matches, -1);
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (escaped.get(i) || c == '\\') {
+                    continue;
+                }
+                if (c == opening) {
+                    open[depth++] = i;
+                } else if (c == closing && depth > 0) {
+                    matches[open[--depth]] = i;
+                }
+            }
+            return matches;
+        }
+    }
+
+    private static void anchor(String href, String title, String text, StringBuilder html) {
+        StringBuilder content = new StringBuilder();
+        escape(text, content);
+        anchorHtml(safeUrl(href), title, content, html);
+    }
+
+    // a link whose url was dropped is left as its text
+    private static void anchorHtml(String href, String title, CharSequence content, StringBuilder html) {
+        if (href == null) {
+            html.append(content);
+            return;
+        }
+        html.append("<a href=\"");
+        escape(href, html);
+        html.append('"');
+        if (title != null) {
+            html.append(" title=\"");
+            escape(title, html);
+            html.append('"');
+        }
+        html.append('>').append(content).append("</a>");
+    }
+
+    // relative links and http(s)/mailto are kept, other schemes (javascript:, data:...) are
+    // dropped (null); browsers ignore whitespace and control characters inside a scheme, so does this
+    private static String safeUrl(String url) {
+        String normalized = CONTROL_OR_SPACE.matcher(url).replaceAll("");
+        Matcher scheme = SCHEME.matcher(normalized);
+        int slash = normalized.indexOf('/');
+        if (!scheme.matches() || slash >= 0 && slash < normalized.indexOf(':')) {
+            return url;
+        }
+        return switch (scheme.group(1).toLowerCase(Locale.ROOT)) {
+            case "http", "https", "mailto" -> url;
+            default -> null;
+        };
+    }
+
+    private static String unescape(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length() && PUNCTUATION.indexOf(text.charAt(i + 1)) >= 0) {
+                c = text.charAt(++i);
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    private static void escape(String text, StringBuilder html) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> html.append("&amp;");
+                case '<' -> html.append("&lt;");
+                case '>' -> html.append("&gt;");
+                case '"' -> html.append("&quot;");
+                default -> html.append(c);
+            }
+        }
+    }
+
+    private static int run(String text, int start, char c) {
+        int end = start;
+        while (end < text.length() && text.charAt(end) == c) {
+            end++;
+        }
+        return end - start;
+    }
+
+    private static int skipSpaces(String text, int i) {
+        while (i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '\t' || text.charAt(i) == '\n')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int leadingSpaces(String line) {
+        int spaces = 0;
+        while (spaces < line.length() && line.charAt(spaces) == ' ') {
+            spaces++;
+        }
+        return spaces;
+    }
+
+    private static String expandTabs(String line) {
+        if (line.indexOf('\t') < 0) {
+            return line;
+        }
+        StringBuilder expanded = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                expanded.append(" ".repeat(4 - expanded.length() % 4));
+            } else {
+                expanded.append(c);
+            }
+        }
+        return expanded.toString();
+    }
+}
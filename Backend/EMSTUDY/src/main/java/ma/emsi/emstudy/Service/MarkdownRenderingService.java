@@ -0,0 +1,146 @@
+package ma.emsi.emstudy.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Service.FileStorageService.FileInfo;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.safety.Safelist;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Markdown materials as sanitized HTML, rendered once per content instead of in every browser.
+ * The HTML is stored next to the markdown file, named after its content hash like the file
+ * itself, and the most used documents are also held in memory up to
+ * {@code markdown.cache.max-size}. Content never changes under a hash, so an entry can't go
+ * stale; the entry of a file a material stops using is dropped to give the memory back.
+ */
+@Slf4j
+@Service
+public class MarkdownRenderingService {
+
+    // bumped whenever the rendering changes, so that HTML rendered before isn't served again
+    private static final String VARIANT = "md1.html";
+    // only used to tell relative links from absolute ones, never appears in the output
+    private static final String BASE_URI = "https://emstudy.invalid/";
+    private static final Safelist SAFELIST = Safelist.relaxed()
+            .addTags("del", "hr", "input")
+            .addAttributes("code", "class")
+            .addAttributes("th", "align")
+            .addAttributes("td", "align")
+            .addAttributes("input", "checked", "disabled")
+            .addEnforcedAttribute("input", "type", "checkbox")
+            .addEnforcedAttribute("a", "rel", "nofollow noopener noreferrer")
+            .preserveRelativeLinks(true);
+
+    private final FileStorageService fileStorageService;
+    private final Cache<String, byte[]> rendered;
+    private final long maxSourceSize;
+
+    public MarkdownRenderingService(FileStorageService fileStorageService,
+                                    @Value("${markdown.cache.max-size:16MB}") DataSize cacheSize,
+                                    @Value("${markdown.max-source-size:2MB}") DataSize maxSourceSize) {
+        this.fileStorageService = fileStorageService;
+        this.maxSourceSize = maxSourceSize.toBytes();
+        this.rendered = Caffeine.newBuilder()
+                .maximumWeight(cacheSize.toBytes())
+                .<String, byte[]>weigher((version, html) -> html.length)
+                .build();
+    }
+
+    /**
+     * The material rendered to an HTML fragment, from memory, else from the rendered file in
+     * storage, else rendered now and kept in both; concurrent requests for the same content render
+     * it once.
+     */
+    public RenderedHtml getHtml(CourseMaterial material) throws IOException {
+        FileInfo source = fileStorageService.getMaterialFile(material);
+        String fileName = fileStorageService.getStoredFileName(material);
+        byte[] html;
+        try {
+            html = rendered.get(source.version(), version -> load(fileName, source));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new RenderedHtml(html, "W/\"" + source.version() + "-" + VARIANT + "\"");
+    }
+
+    // drops the in-memory HTML of content a material no longer points to
+    public void evict(String sha256) {
+        if (sha256 != null) {
+            rendered.invalidate(sha256);
+        }
+    }
+
+    private byte[] load(String fileName, FileInfo source) {
+        String artifact = fileStorageService.getDerivedName(fileName, VARIANT);
+        try {
+            if (artifact != null) {
+                try (InputStream in = fileStorageService.openStream(artifact)) {
+                    return in.readAllBytes();
+                } catch (NoSuchFileException e) {
+                    // not rendered yet
+                }
+            }
+            if (source.length() > maxSourceSize) {
+                throw new InvalidInputException("Markdown material is too large to display, download it instead");
+            }
+            String markdown;
+            try (InputStream in = fileStorageService.openStream(source.key())) {
+                markdown = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            byte[] html = render(markdown).getBytes(StandardCharsets.UTF_8);
+            if (artifact != null) {
+                store(fileName, html);
+            }
+            return html;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // a rendered file that can't be written is only logged, the next cache miss renders again
+    private void store(String fileName, byte[] html) {
+        Path temp = null;
+        try {
+            temp = fileStorageService.createTempFile(".markdown-");
+            Files.write(temp, html);
+            fileStorageService.storeDerived(fileName, VARIANT, temp);
+        } catch (IOException e) {
+            log.warn("Could not keep the rendered HTML of {}", fileName, e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    log.warn("Could not delete {}", temp, e);
+                }
+            }
+        }
+    }
+
+    static String render(String markdown) {
+        Document.OutputSettings settings = new Document.OutputSettings().prettyPrint(false);
+        return Jsoup.clean(MarkdownRenderer.render(markdown), BASE_URI, SAFELIST, settings);
+    }
+
+    /**
+     * @param eTag changes with the content and with the rendering; weak, so that the response can
+     *             still be compressed on the fly
+     */
+    public record RenderedHtml(byte[] html, String eTag) {
+    }
+}
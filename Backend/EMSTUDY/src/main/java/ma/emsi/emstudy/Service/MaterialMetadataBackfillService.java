@@ -0,0 +1,78 @@
+package ma.emsi.emstudy.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.emstudy.Repository.CourseMaterialRepo;
+import ma.emsi.emstudy.Storage.StorageBackend;
+import ma.emsi.emstudy.Storage.StorageBackend.ObjectInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fills in the file size, content hash and type of materials saved before materials kept them,
+ * so that serving those doesn't go to the store for them on every request. Enabled with
+ * {@code file.backfill-metadata-on-startup}; only materials still missing some of it are looked
+ * at, so once it has run it costs a single query. Files not named after their hash are read once
+ * here to be hashed. Runs after {@link UploadDeduplicationService}, which fills in the files it
+ * migrates.
+ */
+@Slf4j
+@Service
+@Order(Ordered.LOWEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class MaterialMetadataBackfillService implements ApplicationRunner {
+
+    private final FileStorageService fileStorageService;
+    private final CourseMaterialRepo courseMaterialRepo;
+    private final StorageBackend storage;
+
+    @Value("${file.backfill-metadata-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (backfillOnStartup) {
+            int materials = backfill();
+            if (materials > 0) {
+                log.info("File metadata backfill: {} materials filled in", materials);
+            }
+        }
+    }
+
+    // the number of materials filled in; a file that is missing or can't be read is logged and skipped
+    public int backfill() {
+        int materials = 0;
+        for (String url : courseMaterialRepo.findUrlsWithoutFileMetadata()) {
+            String fileName = FileStorageService.fileName(url);
+            try {
+                ObjectInfo object = storage.stat(fileName);
+                if (object == null) {
+                    log.warn("Stored file of {} is missing", url);
+                    continue;
+                }
+                materials += courseMaterialRepo.replaceFile(url, url, object.length(), sha256(fileName),
+                        fileStorageService.getContentType(fileName), null);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not fill in the file metadata of {}", url, e);
+            }
+        }
+        return materials;
+    }
+
+    private String sha256(String fileName) throws IOException {
+        String sha256 = FileStorageService.contentHash(fileName);
+        if (sha256 != null) {
+            return sha256;
+        }
+        try (InputStream in = storage.get(fileName)) {
+            return FileStorageService.hash(in);
+        }
+    }
+}
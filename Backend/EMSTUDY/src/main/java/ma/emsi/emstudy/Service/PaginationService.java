@@ -0,0 +1,120 @@
+package ma.emsi.emstudy.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import ma.emsi.emstudy.DTO.CursorPage;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Repository.KeysetRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cursor pages and NDJSON exports over a {@link KeysetRepository}, always ordered by the
+ * primary key so that every page is an index range scan. The cursor is the opaque, encoded
+ * key of the last row of the previous page.
+ */
+@Service
+public class PaginationService {
+
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int defaultSize;
+    private final int maxSize;
+    private final int exportBatchSize;
+
+    public PaginationService(EntityManager entityManager,
+                             ObjectMapper objectMapper,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${pagination.default-size:50}") int defaultSize,
+                             @Value("${pagination.max-size:500}") int maxSize,
+                             @Value("${pagination.export-batch-size:500}") int exportBatchSize) {
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.defaultSize = defaultSize;
+        this.maxSize = maxSize;
+        this.exportBatchSize = exportBatchSize;
+    }
+
+    /**
+     * @param idProperty name of the entity's id attribute
+     * @param size       requested page size, capped at {@code pagination.max-size}
+     */
+    public <T> CursorPage<T> page(KeysetRepository<T> repository, String idProperty, String cursor, Integer size) {
+        int limit = size == null ? defaultSize : Math.min(Math.max(size, 1), maxSize);
+        Window<T> window = repository.findAllBy(decode(cursor, idProperty), Sort.by(idProperty), Limit.of(limit));
+        String nextCursor = window.hasNext() ? encode(window, idProperty) : null;
+        return new CursorPage<>(window.getContent(), nextCursor);
+    }
+
+    /**
+     * Writes every row as one JSON line. Each batch is read in its own read-only transaction and
+     * then evicted from the persistence context, so memory stays flat however large the table is.
+     */
+    public <T> StreamingResponseBody exportNdjson(KeysetRepository<T> repository, String idProperty,
+                                                  Function<? super T, ?> mapper) {
+        return out -> {
+            ScrollPosition position = ScrollPosition.keyset();
+            Window<T> window;
+            do {
+                ScrollPosition from = position;
+                window = readOnlyTransaction.execute(status -> {
+                    Window<T> batch = repository.findAllBy(from, Sort.by(idProperty), Limit.of(exportBatchSize));
+                    batch.forEach(row -> writeLine(out, mapper.apply(row)));
+                    entityManager.clear();
+                    return batch;
+                });
+                out.flush();
+                if (window == null || window.isEmpty()) {
+                    return;
+                }
+                position = window.positionAt(window.size() - 1);
+            } while (window.hasNext());
+        };
+    }
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ScrollPosition decode(String cursor, String idProperty) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            return ScrollPosition.forward(Map.of(idProperty, Long.parseLong(key)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException("Invalid cursor");
+        }
+    }
+
+    private static String encode(Window<?> window, String idProperty) {
+        KeysetScrollPosition last = (KeysetScrollPosition) window.positionAt(window.size() - 1);
+        String key = String.valueOf(last.getKeys().get(idProperty));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,206 @@
+package ma.emsi.emstudy.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Exception.ResourceNotFoundException;
+import ma.emsi.emstudy.Service.FileStorageService.FileInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip copies of text-like materials (markdown, SVG, HTML, JSON...), made once in the background
+ * after upload at the highest compression level, so that downloads of them cost a fraction of the
+ * bytes without compressing on every request. The copy is kept next to the stored file as
+ * {@code <sha256>-gz} and picked by {@link FileStreamingService} when the client accepts gzip.
+ * Media types that are already compressed (video, images, PDF, Office files) are left alone.
+ */
+@Slf4j
+@Service
+public class PrecompressionService {
+
+    public static final String GZIP = "gzip";
+    private static final String VARIANT = "gz";
+
+    private final FileStorageService fileStorageService;
+    private final ThreadPoolExecutor executor;
+    private final long minSize;
+    // stored files being compressed or waiting for it
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // stored files whose gzip copy wouldn't be smaller enough to be worth sending
+    private final Cache<String, Boolean> incompressible = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    public PrecompressionService(FileStorageService fileStorageService,
+                                 @Value("${file.precompression.threads:1}") int threads,
+                                 @Value("${file.precompression.queue-capacity:200}") int queueCapacity,
+                                 @Value("${file.precompression.min-size:1KB}") DataSize minSize) {
+        this.fileStorageService = fileStorageService;
+        this.minSize = minSize.toBytes();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) {
+            type = type.substring(0, parameters).trim();
+        }
+        return type.startsWith("text/") || type.endsWith("+xml") || type.endsWith("+json")
+                || type.equals("application/json") || type.equals("application/xml")
+                || type.equals("application/javascript") || type.equals("application/x-ndjson");
+    }
+
+    /**
+     * Queues the gzip copy of a material's file. Nothing happens when the queue is full; the file
+     * is queued again the next time a client that accepts gzip downloads it.
+     */
+    public void compressLater(CourseMaterial material) {
+        if (material.getUrl() == null || !isCompressible(fileStorageService.getContentType(material))) {
+            return;
+        }
+        String fileName = fileStorageService.getStoredFileName(material);
+        if (!FileStorageService.isContentAddressed(fileName) || incompressible.getIfPresent(fileName) != null
+                || !pending.add(fileName)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    compress(fileName);
+                } catch (IOException | RuntimeException e) {
+                    // not marked incompressible, the next request for the file tries again
+                    log.warn("Could not compress {}", fileName, e);
+                } finally {
+                    pending.remove(fileName);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(fileName);
+            log.debug("Compression queue is full, {} is left for later", fileName);
+        }
+    }
+
+    /**
+     * The gzip copy of a material's file to send instead of the file, or null when the file
+     * itself should be sent: it isn't compressible, the client doesn't accept gzip, asks for a
+     * range of the file, or the copy isn't made yet.
+     */
+    public FileInfo getVariant(CourseMaterial material, HttpServletRequest request) throws IOException {
+        // ranges are of the file as stored, resuming a download must keep getting the same bytes
+        if (!acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING)) || request.getHeader(HttpHeaders.RANGE) != null) {
+            return null;
+        }
+        String fileName = fileStorageService.getStoredFileName(material);
+        String compressedName = fileStorageService.getDerivedName(fileName, VARIANT);
+        if (compressedName == null || incompressible.getIfPresent(fileName) != null) {
+            return null;
+        }
+        FileInfo compressed;
+        try {
+            compressed = fileStorageService.describe(compressedName);
+        } catch (ResourceNotFoundException e) {
+            compressLater(material);
+            return null;
+        }
+        FileInfo file = fileStorageService.getMaterialFile(material);
+        return new FileInfo(compressed.key(), file.name(), compressed.length(), file.lastModified(),
+                file.contentType(), file.version(), GZIP);
+    }
+
+    void compress(String fileName) throws IOException {
+        long size = fileStorageService.describe(fileName).length();
+        if (size < minSize) {
+            incompressible.put(fileName, Boolean.TRUE);
+            return;
+        }
+        Path temp = fileStorageService.createTempFile(".gzip-");
+        try {
+            try (InputStream in = fileStorageService.openStream(fileName);
+                 OutputStream out = new BestCompressionGzipStream(Files.newOutputStream(temp))) {
+                in.transferTo(out);
+            }
+            // a copy that saves less than a tenth isn't worth a second representation
+            if (Files.size(temp) > size * 9 / 10) {
+                incompressible.put(fileName, Boolean.TRUE);
+                return;
+            }
+            fileStorageService.storeDerived(fileName, VARIANT, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // gzip or x-gzip, or *, with a non-zero quality (RFC 9110 12.5.3)
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String member : acceptEncoding.split(",")) {
+            String[] parameters = member.split(";");
+            String coding = parameters[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+                gzip = quality;
+            } else if (coding.equals("*")) {
+                any = quality;
+            }
+        }
+        return gzip != null ? gzip > 0 : any != null && any > 0;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static CustomizableThreadFactory threadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("file-precompression-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    // the copy is made once and sent many times, so spending CPU on the smallest output pays off
+    private static final class BestCompressionGzipStream extends GZIPOutputStream {
+        BestCompressionGzipStream(OutputStream out) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package ma.emsi.emstudy.Service;
 
 import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.CursorPage;
 import ma.emsi.emstudy.Entity.Question;
 import ma.emsi.emstudy.Entity.Quiz;
 import ma.emsi.emstudy.Exception.ResourceNotFoundException;
@@ -18,6 +19,7 @@ public class QuestionService {
     
     private final QuestionRepo questionRepo;
     private final QuizRepo quizRepo;
+    private final PaginationService paginationService;
 
     public Question createQuestion(@PathVariable Long quizID, Question question) {
         Quiz quiz = quizRepo.findById(quizID)
@@ -26,8 +28,8 @@ public class QuestionService {
         return questionRepo.save(question);
     }
 
-    public List<Question> getAllQuestions() {
-        return questionRepo.findAll();
+    public CursorPage<Question> getAllQuestions(String cursor, Integer size) {
+        return paginationService.page(questionRepo, "questionId", cursor, size);
     }
 
     public Optional<Question> getQuestionById(Long id) {
@@ -46,6 +48,10 @@ public class QuestionService {
         question.setPoints(questionDetails.getPoints());
         question.setQuestionType(questionDetails.getQuestionType());
         question.setExplanation(questionDetails.getExplanation());
+        // same as in QuizService.updateQuiz, the answers arrive without their question
+        if (questionDetails.getAnswers() != null) {
+            questionDetails.getAnswers().forEach(answer -> answer.setQuestion(question));
+        }
         question.setAnswers(questionDetails.getAnswers());
         
         return questionRepo.save(question);
@@ -11,14 +11,24 @@ import org.springframework.stereotype.Service;
 @Service
 public class QuizService extends CourseItemService<Quiz>{
     private final QuizRepo quizRepo;
-    public QuizService(CourseItemRepo courseItemRepo, CourseRepo courseRepo, QuizRepo quizRepo) {
-        super(courseItemRepo, courseRepo);
+    public QuizService(CourseItemRepo courseItemRepo, CourseRepo courseRepo, PaginationService paginationService, QuizRepo quizRepo) {
+        super(courseItemRepo, courseRepo, paginationService);
         this.quizRepo = quizRepo;
     }
 
     public Quiz updateQuiz(Long quizId, Quiz updatedQuiz) {
         Quiz existingQuiz = quizRepo.findById(quizId)
                 .orElseThrow(() -> new ResourceNotFoundException("Quiz not found with id: " + quizId));
+        // the questions arrive without their back references; without them the rows would be
+        // saved detached from the quiz while the cached collection still listed them
+        if (updatedQuiz.getQuestions() != null) {
+            for (Question question : updatedQuiz.getQuestions()) {
+                question.setQuiz(existingQuiz);
+                if (question.getAnswers() != null) {
+                    question.getAnswers().forEach(answer -> answer.setQuestion(question));
+                }
+            }
+        }
         existingQuiz.setQuestions(updatedQuiz.getQuestions());
         existingQuiz.setShowCorrectAnswers(updatedQuiz.isShowCorrectAnswers());
         existingQuiz.setDurationInMinutes(updatedQuiz.getDurationInMinutes());
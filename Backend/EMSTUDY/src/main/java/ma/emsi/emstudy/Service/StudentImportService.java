@@ -0,0 +1,297 @@
+package ma.emsi.emstudy.Service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.StudentImportResult;
+import ma.emsi.emstudy.DTO.StudentImportResult.Row;
+import ma.emsi.emstudy.DTO.StudentImportResult.Status;
+import ma.emsi.emstudy.Entity.Course;
+import ma.emsi.emstudy.Entity.Enrollment;
+import ma.emsi.emstudy.Entity.Student;
+import ma.emsi.emstudy.Exception.ForbiddenAccessException;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Repository.CourseRepo;
+import ma.emsi.emstudy.Repository.EnrollmentRepo;
+import ma.emsi.emstudy.Repository.UserRepo;
+import ma.emsi.emstudy.Security.BoundedPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Registers students from a CSV roster with a {@code username,email,password[,studentGroup]}
+ * header. The file is read as a stream and handled in chunks: each chunk checks its emails
+ * with one query, hashes its passwords on the BCrypt pool and is inserted in its own
+ * transaction with JDBC batching, so a failing chunk doesn't undo the ones before it.
+ */
+@Service
+@RequiredArgsConstructor
+public class StudentImportService {
+
+    private static final List<String> REQUIRED_COLUMNS = List.of("username", "email", "password");
+
+    private final UserRepo userRepo;
+    private final CourseRepo courseRepo;
+    private final EnrollmentRepo enrollmentRepo;
+    private final JoinCodeService joinCodeService;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+
+    @Value("${students.import.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * @param joinCode optional; when set, created students and existing student accounts
+     *                 listed in the file are enrolled in that course, which must belong to the teacher
+     */
+    public StudentImportResult importStudents(Long teacherId, InputStream csv, String joinCode) throws IOException {
+        Long courseId = joinCode == null || joinCode.isBlank() ? null : findOwnCourse(teacherId, joinCode);
+        List<Row> rows = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new InvalidInputException("The CSV file is empty");
+            }
+            Map<String, Integer> columns = parseHeader(header);
+
+            Set<String> seenEmails = new HashSet<>();
+            List<Candidate> chunk = new ArrayList<>(chunkSize);
+            long lineNumber = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Candidate candidate = toCandidate(lineNumber, parseLine(line), columns, rows);
+                if (candidate == null) {
+                    continue;
+                }
+                if (!seenEmails.add(candidate.emailKey())) {
+                    rows.add(row(candidate, Status.DUPLICATE, "Email appears earlier in the file"));
+                    continue;
+                }
+                chunk.add(candidate);
+                if (chunk.size() >= chunkSize) {
+                    importChunk(chunk, courseId, rows);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, courseId, rows);
+            }
+        }
+
+        rows.sort(Comparator.comparingLong(Row::getLine));
+        return StudentImportResult.builder()
+                .created(count(rows, Status.CREATED))
+                .existing(count(rows, Status.EXISTING))
+                .failed(rows.size() - count(rows, Status.CREATED) - count(rows, Status.EXISTING))
+                .enrolled((int) rows.stream().filter(Row::isEnrolled).count())
+                .rows(rows)
+                .build();
+    }
+
+    private Long findOwnCourse(Long teacherId, String joinCode) {
+        Long courseId = joinCodeService.resolve(joinCode);
+        if (!courseRepo.existsByTeacherUserIdAndCourseId(teacherId, courseId)) {
+            throw new ForbiddenAccessException("You can only enroll students in your own courses");
+        }
+        return courseId;
+    }
+
+    private void importChunk(List<Candidate> chunk, Long courseId, List<Row> rows) {
+        Map<String, UserRepo.EmailOwner> owners = userRepo.findEmailOwners(chunk.stream().map(Candidate::email).toList())
+                .stream()
+                .collect(Collectors.toMap(owner -> owner.getEmail().toLowerCase(Locale.ROOT), Function.identity(), (a, b) -> a));
+
+        List<Candidate> newStudents = new ArrayList<>();
+        List<Row> existingStudentRows = new ArrayList<>();
+        for (Candidate candidate : chunk) {
+            UserRepo.EmailOwner owner = owners.get(candidate.emailKey());
+            if (owner == null) {
+                newStudents.add(candidate);
+                continue;
+            }
+            Row row = row(candidate, Status.EXISTING, "Email already registered");
+            row.setUserId(owner.getUserId());
+            rows.add(row);
+            if ("Student".equals(owner.getRole())) {
+                existingStudentRows.add(row);
+            }
+        }
+
+        // hash before opening the transaction so no connection is held during BCrypt
+        List<String> hashes = passwordEncoder.encodeAll(newStudents.stream().map(Candidate::password).toList());
+
+        try {
+            List<Row> created = transactionTemplate.execute(status -> {
+                List<Row> createdRows = new ArrayList<>(newStudents.size());
+                List<Student> students = new ArrayList<>(newStudents.size());
+                for (int i = 0; i < newStudents.size(); i++) {
+                    Candidate candidate = newStudents.get(i);
+                    Student student = new Student();
+                    student.setUsername(candidate.username());
+                    student.setEmail(candidate.email());
+                    student.setPassword(hashes.get(i));
+                    student.setStudentGroup(candidate.studentGroup());
+                    entityManager.persist(student);
+                    students.add(student);
+
+                    Row row = row(candidate, Status.CREATED, null);
+                    row.setUserId(student.getUserId());
+                    createdRows.add(row);
+                }
+                if (courseId != null) {
+                    enroll(courseId, students, createdRows, existingStudentRows);
+                }
+                entityManager.flush();
+                entityManager.clear();
+                return createdRows;
+            });
+            rows.addAll(created);
+        } catch (DataAccessException | PersistenceException e) {
+            // the shared EntityManager doesn't translate, a username taken since the check arrives as is
+            existingStudentRows.forEach(row -> row.setEnrolled(false));
+            newStudents.forEach(candidate -> rows.add(row(candidate, Status.FAILED, "Could not be saved, please retry")));
+        }
+    }
+
+    private void enroll(Long courseId, List<Student> createdStudents, List<Row> createdRows, List<Row> existingStudentRows) {
+        Course courseRef = entityManager.getReference(Course.class, courseId);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < createdStudents.size(); i++) {
+            entityManager.persist(Enrollment.builder()
+                    .student(createdStudents.get(i))
+                    .course(courseRef)
+                    .enrollmentDate(today)
+                    .build());
+            createdRows.get(i).setEnrolled(true);
+        }
+        if (existingStudentRows.isEmpty()) {
+            return;
+        }
+        Set<Long> alreadyEnrolled = enrollmentRepo.findEnrolledStudentIds(courseId,
+                existingStudentRows.stream().map(Row::getUserId).toList());
+        for (Row row : existingStudentRows) {
+            if (alreadyEnrolled.contains(row.getUserId())) {
+                continue;
+            }
+            entityManager.persist(Enrollment.builder()
+                    .student(entityManager.getReference(Student.class, row.getUserId()))
+                    .course(courseRef)
+                    .enrollmentDate(today)
+                    .build());
+            row.setEnrolled(true);
+        }
+    }
+
+    private static Map<String, Integer> parseHeader(String header) {
+        // Excel adds a byte order mark to UTF-8 exports
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = parseLine(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : REQUIRED_COLUMNS) {
+            if (!columns.containsKey(required)) {
+                throw new InvalidInputException("The CSV header must contain the columns " + REQUIRED_COLUMNS);
+            }
+        }
+        return columns;
+    }
+
+    private static Candidate toCandidate(long lineNumber, List<String> fields, Map<String, Integer> columns, List<Row> rows) {
+        String username = field(fields, columns, "username");
+        String email = field(fields, columns, "email");
+        String password = field(fields, columns, "password");
+        String studentGroup = field(fields, columns, "studentgroup");
+
+        String problem = null;
+        if (email == null || email.indexOf('@') < 1) {
+            problem = "A valid email is required";
+        } else if (username == null) {
+            problem = "A username is required";
+        } else if (password == null) {
+            problem = "A password is required";
+        }
+        if (problem != null) {
+            rows.add(Row.builder().line(lineNumber).email(email).status(Status.INVALID).message(problem).build());
+            return null;
+        }
+        return new Candidate(lineNumber, username, email, password, studentGroup);
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    // RFC 4180 fields on a single line: quoted fields may contain commas and doubled quotes
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static Row row(Candidate candidate, Status status, String message) {
+        return Row.builder()
+                .line(candidate.line())
+                .email(candidate.email())
+                .status(status)
+                .message(message)
+                .build();
+    }
+
+    private static int count(List<Row> rows, Status status) {
+        return (int) rows.stream().filter(row -> row.getStatus() == status).count();
+    }
+
+    private record Candidate(long line, String username, String email, String password, String studentGroup) {
+        String emailKey() {
+            return email.toLowerCase(Locale.ROOT);
+        }
+    }
+}
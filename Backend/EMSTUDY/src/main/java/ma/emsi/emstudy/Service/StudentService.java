@@ -5,7 +5,6 @@ import ma.emsi.emstudy.Entity.Enrollment;
 import ma.emsi.emstudy.Entity.Student;
 import ma.emsi.emstudy.Exception.ResourceNotFoundException;
 import ma.emsi.emstudy.Repository.EnrollmentRepo;
-import ma.emsi.emstudy.Repository.UserRepo;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -14,11 +13,13 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class StudentService {
 
-    private final UserRepo userRepo;
+    private final UserCache userCache;
     private final EnrollmentRepo enrollmentRepo;
 
     public Student getStudent(Long studentId) {
-        return (Student)userRepo.findByUserIdAndRoleEquals(studentId, "Student")
+        return userCache.findById(studentId)
+                .filter(Student.class::isInstance)
+                .map(Student.class::cast)
                 .orElseThrow(() -> new ResourceNotFoundException("Student not found with id: " + studentId));
     }
 
@@ -1,16 +1,19 @@
 package ma.emsi.emstudy.Service;
 
 import lombok.RequiredArgsConstructor;
+import ma.emsi.emstudy.DTO.CursorPage;
 import ma.emsi.emstudy.Entity.*;
 import ma.emsi.emstudy.Exception.QuizTimeExceededException;
 import ma.emsi.emstudy.Exception.ResourceNotFoundException;
 import ma.emsi.emstudy.Repository.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -20,9 +23,14 @@ public class SubmissionService {
     private final AnswerRepo answerRepo;
     private final EnrollmentRepo enrollmentRepo;
     private final QuizRepo quizRepo;
+    private final PaginationService paginationService;
 
-    public List<Submission> getAllSubmissions() {
-        return submissionRepo.findAll();
+    public CursorPage<Submission> getAllSubmissions(String cursor, Integer size) {
+        return paginationService.page(submissionRepo, "submissionId", cursor, size);
+    }
+
+    public StreamingResponseBody exportSubmissions(Function<Submission, ?> mapper) {
+        return paginationService.exportNdjson(submissionRepo, "submissionId", mapper);
     }
 
     public Optional<Submission> getSubmissionById(Long id) {
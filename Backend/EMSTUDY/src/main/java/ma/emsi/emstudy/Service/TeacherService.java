@@ -3,17 +3,18 @@ package ma.emsi.emstudy.Service;
 import lombok.RequiredArgsConstructor;
 import ma.emsi.emstudy.Entity.Teacher;
 import ma.emsi.emstudy.Exception.ResourceNotFoundException;
-import ma.emsi.emstudy.Repository.UserRepo;
 import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
 public class TeacherService {
 
-    private final UserRepo userRepo;
+    private final UserCache userCache;
 
     public Teacher getTeacher(Long teacherId) {
-        return (Teacher)userRepo.findByUserIdAndRoleEquals(teacherId, "Teacher")
+        return userCache.findById(teacherId)
+                .filter(Teacher.class::isInstance)
+                .map(Teacher.class::cast)
                 .orElseThrow(() -> new ResourceNotFoundException("Teacher not found with id: " + teacherId));
     }
 }
\ No newline at end of file
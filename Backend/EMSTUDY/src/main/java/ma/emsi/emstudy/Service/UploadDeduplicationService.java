@@ -0,0 +1,133 @@
+package ma.emsi.emstudy.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ma.emsi.emstudy.Repository.CourseMaterialRepo;
+import ma.emsi.emstudy.Storage.StorageBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Moves files uploaded before storage became content-addressed ({@code <uuid>_<name>}) to their
+ * {@code <sha256>.<ext>} name, so that copies of the same content end up as one file.
+ * Enabled with {@code file.deduplicate-on-startup}; files already migrated are skipped, so it can
+ * be left on or run again after an interruption. Each file is stored under its new name before
+ * the materials are pointed at it and loses the old one only after that, so every stored url
+ * keeps resolving while it runs. Materials pointing at a migrated file also get the file
+ * metadata newer uploads keep. Content-addressed files left at the top of the upload directory
+ * are handed to the storage backend as they are, which also moves a local upload directory into
+ * an object store.
+ */
+@Slf4j
+@Service
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@RequiredArgsConstructor
+public class UploadDeduplicationService implements ApplicationRunner {
+
+    // the random part of "<uuid>_<original name>"
+    private static final Pattern LEGACY_PREFIX = Pattern.compile("^[0-9a-fA-F-]{36}_");
+
+    private final FileStorageService fileStorageService;
+    private final CourseMaterialRepo courseMaterialRepo;
+    private final StorageBackend storage;
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    @Value("${file.deduplicate-on-startup:false}")
+    private boolean deduplicateOnStartup;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (deduplicateOnStartup) {
+            Report report = deduplicate();
+            log.info("Upload deduplication: {} files renamed, {} duplicates removed, {} bytes freed, {} files moved to storage",
+                    report.files() - report.duplicates(), report.duplicates(), report.bytesFreed(), report.moved());
+        }
+    }
+
+    public Report deduplicate() throws IOException {
+        Path uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
+        if (!Files.isDirectory(uploadPath)) {
+            return new Report(0, 0, 0, 0);
+        }
+        List<Path> topLevel;
+        try (Stream<Path> listing = Files.list(uploadPath)) {
+            // dot files are uploads still being written
+            topLevel = listing.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().startsWith("."))
+                    .toList();
+        }
+        List<Path> files = new ArrayList<>();
+        int moved = 0;
+        for (Path file : topLevel) {
+            String name = file.getFileName().toString();
+            if (!FileStorageService.isContentAddressed(name)) {
+                files.add(file);
+            } else if (!file.equals(storage.localPath(name))) {
+                store(file, name);
+                Files.deleteIfExists(file);
+                moved++;
+            }
+        }
+
+        int duplicates = 0;
+        long bytesFreed = 0;
+        for (Path file : files) {
+            String oldName = file.getFileName().toString();
+            String sha256 = FileStorageService.hash(file);
+            String newName = sha256 + FileStorageService.extension(oldName);
+            long size = Files.size(file);
+            if (storage.stat(newName) != null) {
+                duplicates++;
+                bytesFreed += size;
+            } else {
+                store(file, newName);
+            }
+            int materials = courseMaterialRepo.replaceFile(fileStorageService.getUrl(oldName), fileStorageService.getUrl(newName),
+                    size, sha256, fileStorageService.getContentType(newName), LEGACY_PREFIX.matcher(oldName).replaceFirst(""));
+            Files.delete(file);
+            log.debug("{} -> {} ({} materials)", oldName, newName, materials);
+        }
+        return new Report(files.size(), duplicates, bytesFreed, moved);
+    }
+
+    // stores a second name for the same inode where possible, else a copy, keeping the file under
+    // its current name until the materials no longer use it
+    private void store(Path file, String name) throws IOException {
+        Path temp = fileStorageService.createTempFile(".migrate-");
+        try {
+            try {
+                Files.delete(temp);
+                Files.createLink(temp, file);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            storage.put(name, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @param files files that had a pre-content-addressed name
+     * @param duplicates those whose content was already stored under another name
+     * @param moved content-addressed files handed to the storage backend from the upload directory
+     */
+    public record Report(int files, int duplicates, long bytesFreed, int moved) {
+    }
+}
@@ -0,0 +1,90 @@
+package ma.emsi.emstudy.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ma.emsi.emstudy.Entity.User;
+import ma.emsi.emstudy.Repository.UserRepo;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Bounded cache of users by id and by email, shared by authentication and by the
+ * student/teacher lookups so that each request doesn't re-run the joined inheritance query.
+ * Cached users are detached: only read their own columns or use them as association targets,
+ * never their lazy collections.
+ */
+@Service
+public class UserCache {
+
+    private final UserRepo userRepo;
+    private final Cache<Long, User> usersById;
+    private final Cache<String, Long> idsByEmail;
+
+    public UserCache(UserRepo userRepo,
+                     MeterRegistry meterRegistry,
+                     @Value("${users.cache.max-size:10000}") long maxSize,
+                     @Value("${users.cache.ttl:10m}") Duration ttl) {
+        this.userRepo = userRepo;
+        this.usersById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.idsByEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, usersById, "users.byId");
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByEmail, "users.byEmail");
+    }
+
+    public Optional<User> findById(Long userId) {
+        // a null from the loader is not cached, so unknown ids keep hitting the database
+        return Optional.ofNullable(usersById.get(userId, id -> userRepo.findById(id)
+                .map(user -> (User) Hibernate.unproxy(user))
+                .orElse(null)));
+    }
+
+    public Optional<User> findByEmail(String email) {
+        Long userId = idsByEmail.getIfPresent(email);
+        if (userId != null) {
+            User user = usersById.getIfPresent(userId);
+            if (user != null && email.equals(user.getEmail())) {
+                return Optional.of(user);
+            }
+        }
+        Optional<User> user = userRepo.findByEmail(email)
+                .map(found -> (User) Hibernate.unproxy(found));
+        user.ifPresent(this::put);
+        return user;
+    }
+
+    public void invalidate(Long userId) {
+        User cached = usersById.getIfPresent(userId);
+        usersById.invalidate(userId);
+        if (cached != null && cached.getEmail() != null) {
+            idsByEmail.invalidate(cached.getEmail());
+        }
+    }
+
+    public void invalidate(User user) {
+        if (user.getUserId() != null) {
+            invalidate(user.getUserId());
+        }
+        if (user.getEmail() != null) {
+            idsByEmail.invalidate(user.getEmail());
+        }
+    }
+
+    private void put(User user) {
+        usersById.put(user.getUserId(), user);
+        idsByEmail.put(user.getEmail(), user.getUserId());
+    }
+}
@@ -3,8 +3,9 @@ package ma.emsi.emstudy.Service;
 import lombok.RequiredArgsConstructor;
 import ma.emsi.emstudy.Entity.User;
 import ma.emsi.emstudy.Repository.UserRepo;
+import ma.emsi.emstudy.Security.TokenRevocationService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -14,17 +15,23 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class UserService {
 
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordEncoder passwordEncoder;
 
     private final UserRepo userRepo;
 
+    private final TokenRevocationService tokenRevocationService;
+
+    private final UserCache userCache;
+
     public boolean existsByEmail(String email) {
         return userRepo.existsByEmail(email);
     }
 
     public <T extends User> T createUser(T user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepo.save(user);
+        T saved = userRepo.save(user);
+        userCache.invalidate(saved);
+        return saved;
     }
 
     public List<User> findAll() {
@@ -40,6 +47,8 @@ public class UserService {
     }
 
     public void deleteUser(Long id) {
+        tokenRevocationService.revokeAllTokens(id);
         userRepo.deleteById(id);
+        userCache.invalidate(id);
     }
 }
\ No newline at end of file
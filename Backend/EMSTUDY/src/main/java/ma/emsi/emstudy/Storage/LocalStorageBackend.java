@@ -0,0 +1,174 @@
+package ma.emsi.emstudy.Storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Objects as files in a local directory, which nginx can also serve from. Keys starting with a
+ * content hash are spread over two levels of subdirectories named after its first four hex
+ * digits ({@code ab/cd/abcd…}), so that no directory ends up with more than a few hundred
+ * entries; a file and the files derived from it land in the same one. Other keys, files uploaded
+ * before storage was content-addressed, stay at the top. Dot files at the top are the upload
+ * directory's temporary files, never objects.
+ */
+@Slf4j
+public class LocalStorageBackend implements StorageBackend {
+
+    private static final Pattern SHARDED = Pattern.compile("[0-9a-f]{64}([.-].*)?");
+    private static final Pattern HASH_PREFIX = Pattern.compile("[0-9a-f]{64}.*");
+
+    private final Path root;
+
+    public LocalStorageBackend(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    // content-addressed files were kept at the top before the layout was sharded
+    @PostConstruct
+    void shardFlatFiles() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        List<Path> flat = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root)) {
+            for (Path entry : entries) {
+                if (SHARDED.matcher(entry.getFileName().toString()).matches() && Files.isRegularFile(entry)) {
+                    flat.add(entry);
+                }
+            }
+        }
+        for (Path file : flat) {
+            put(file.getFileName().toString(), file);
+        }
+        if (!flat.isEmpty()) {
+            log.info("Moved {} stored files into the sharded layout", flat.size());
+        }
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void put(String key, InputStream content, long length) throws IOException {
+        Files.createDirectories(root);
+        Path temp = Files.createTempFile(root, ".put-", ".tmp");
+        try {
+            long written = Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            if (written != length) {
+                throw new IOException("Expected " + length + " bytes for " + key + ", got " + written);
+            }
+            put(key, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        SeekableByteChannel channel = Files.newByteChannel(resolve(key));
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public ObjectInfo stat(String key) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(resolve(key), BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return attributes.isRegularFile() ? new ObjectInfo(attributes.size(), attributes.lastModifiedTime().toMillis()) : null;
+    }
+
+    @Override
+    public boolean touch(String key) throws IOException {
+        try {
+            Files.setLastModifiedTime(resolve(key), FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public List<String> list(String prefix) throws IOException {
+        // the keys starting with a whole content hash, a file and its derived files, share a shard
+        Path directory = HASH_PREFIX.matcher(prefix).matches() ? shard(prefix) : root;
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.walk(directory, directory.equals(root) ? 3 : 1)) {
+            return files.filter(file -> isObject(file, prefix))
+                    .map(file -> file.getFileName().toString())
+                    .toList();
+        }
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return resolve(key);
+    }
+
+    @Override
+    public Path localRoot() {
+        return root;
+    }
+
+    // a file kept where its name would be as a key, not a temporary or stray one
+    private boolean isObject(Path file, String prefix) {
+        String name = file.getFileName().toString();
+        return name.startsWith(prefix) && isKey(name) && Files.isRegularFile(file) && resolve(name).equals(file);
+    }
+
+    private Path resolve(String key) {
+        if (!isKey(key)) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return SHARDED.matcher(key).matches() ? shard(key).resolve(key) : root.resolve(key);
+    }
+
+    private static boolean isKey(String name) {
+        return !name.isEmpty() && !name.startsWith(".") && name.indexOf('/') < 0 && name.indexOf('\\') < 0;
+    }
+
+    private Path shard(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4));
+    }
+}
@@ -0,0 +1,269 @@
+package ma.emsi.emstudy.Storage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Objects in a bucket of an S3-compatible object store (AWS S3, MinIO...), so that several
+ * backend nodes share the same files without a shared volume. Requests are plain HTTP calls
+ * signed with {@link SignatureV4}, addressed path-style ({@code <endpoint>/<bucket>/<key>}),
+ * which every S3-compatible store accepts. Bodies are streamed both ways, and range reads ask
+ * the store for those bytes only. Objects are written with a single PUT, which S3 limits to 5 GB.
+ */
+@Slf4j
+public class S3StorageBackend implements StorageBackend {
+
+    private static final String US_EAST_1 = "us-east-1";
+
+    private final HttpClient client;
+    private final String bucketUrl;
+    private final String bucketPath;
+    private final String region;
+    private final SignatureV4 signer;
+    private final Duration timeout;
+    private final boolean createBucket;
+
+    /**
+     * @param timeout for the store to start answering; uploads take as long as they take
+     * @param createBucket whether a missing bucket is created on startup instead of failing it
+     */
+    public S3StorageBackend(URI endpoint, String bucket, String region, String accessKey, String secretKey,
+                            Duration timeout, boolean createBucket) {
+        String base = endpoint.toString();
+        this.bucketUrl = (base.endsWith("/") ? base : base + "/") + SignatureV4.encode(bucket, false);
+        this.bucketPath = "/" + SignatureV4.encode(bucket, false) + "/";
+        this.region = region;
+        this.signer = new SignatureV4(accessKey, secretKey, region);
+        this.timeout = timeout;
+        this.createBucket = createBucket;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    // a wrong endpoint, bucket or key fails startup rather than the first upload
+    @PostConstruct
+    void checkBucket() throws IOException {
+        URI uri = URI.create(bucketUrl);
+        HttpResponse<Void> response = send("HEAD", uri, Map.of(), BodyPublishers.noBody(), SignatureV4.EMPTY_PAYLOAD, BodyHandlers.discarding());
+        if (response.statusCode() == 200) {
+            return;
+        }
+        if (response.statusCode() != 404 || !createBucket) {
+            throw new IllegalStateException("Bucket " + bucketUrl + " is not usable: HTTP " + response.statusCode());
+        }
+        // us-east-1 is the default location, any other one is named in the request
+        String configuration = region.equals(US_EAST_1) ? "" : "<CreateBucketConfiguration xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+                + "<LocationConstraint>" + region + "</LocationConstraint></CreateBucketConfiguration>";
+        expectSuccess(send("PUT", uri, Map.of(), BodyPublishers.ofString(configuration), SignatureV4.UNSIGNED_PAYLOAD,
+                BodyHandlers.ofString()), bucketUrl);
+        log.info("Created bucket {}", bucketUrl);
+    }
+
+    @Override
+    public void put(String key, Path file) throws IOException {
+        put(key, BodyPublishers.ofFile(file));
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void put(String key, InputStream content, long length) throws IOException {
+        put(key, length == 0 ? BodyPublishers.noBody()
+                : BodyPublishers.fromPublisher(BodyPublishers.ofInputStream(() -> content), length));
+    }
+
+    private void put(String key, BodyPublisher body) throws IOException {
+        HttpResponse<String> response = send("PUT", objectUri(key), Map.of(), body, SignatureV4.UNSIGNED_PAYLOAD, BodyHandlers.ofString());
+        expectSuccess(response, key);
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        HttpResponse<InputStream> response = send("GET", objectUri(key), Map.of(), BodyPublishers.noBody(),
+                SignatureV4.EMPTY_PAYLOAD, BodyHandlers.ofInputStream());
+        return body(response, key);
+    }
+
+    @Override
+    public InputStream get(String key, long offset, long length) throws IOException {
+        if (length == 0) {
+            return InputStream.nullInputStream();
+        }
+        HttpResponse<InputStream> response = send("GET", objectUri(key), Map.of("Range", "bytes=" + offset + "-" + (offset + length - 1)),
+                BodyPublishers.noBody(), SignatureV4.EMPTY_PAYLOAD, BodyHandlers.ofInputStream());
+        InputStream body = body(response, key);
+        if (response.statusCode() == 206) {
+            return body;
+        }
+        // a store ignoring the range sends the whole object
+        try {
+            body.skipNBytes(offset);
+        } catch (IOException e) {
+            body.close();
+            throw e;
+        }
+        return new BoundedInputStream(body, length);
+    }
+
+    @Override
+    public ObjectInfo stat(String key) throws IOException {
+        HttpResponse<Void> response = send("HEAD", objectUri(key), Map.of(), BodyPublishers.noBody(),
+                SignatureV4.EMPTY_PAYLOAD, BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Could not stat " + key + ": HTTP " + response.statusCode());
+        }
+        long length = response.headers().firstValueAsLong("Content-Length").orElse(0);
+        long lastModified = response.headers().firstValue("Last-Modified")
+                .map(date -> ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                .orElse(0L);
+        return new ObjectInfo(length, lastModified);
+    }
+
+    // objects can't be modified in place, copying one onto itself is how S3 renews the date
+    @Override
+    public boolean touch(String key) throws IOException {
+        HttpResponse<String> response = send("PUT", objectUri(key),
+                Map.of("x-amz-copy-source", bucketPath + SignatureV4.encode(key, false), "x-amz-metadata-directive", "REPLACE"),
+                BodyPublishers.noBody(), SignatureV4.EMPTY_PAYLOAD, BodyHandlers.ofString());
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        expectSuccess(response, key);
+        return true;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<String> response = send("DELETE", objectUri(key), Map.of(), BodyPublishers.noBody(),
+                SignatureV4.EMPTY_PAYLOAD, BodyHandlers.ofString());
+        if (response.statusCode() != 404) {
+            expectSuccess(response, key);
+        }
+    }
+
+    // ListObjectsV2, a page of up to a thousand keys at a time
+    @Override
+    public List<String> list(String prefix) throws IOException {
+        List<String> keys = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            String query = "list-type=2&prefix=" + SignatureV4.encode(prefix, false)
+                    + (continuationToken == null ? "" : "&continuation-token=" + SignatureV4.encode(continuationToken, false));
+            HttpResponse<InputStream> response = send("GET", URI.create(bucketUrl + "?" + query), Map.of(),
+                    BodyPublishers.noBody(), SignatureV4.EMPTY_PAYLOAD, BodyHandlers.ofInputStream());
+            Document page;
+            try (InputStream body = body(response, prefix)) {
+                page = parse(body);
+            }
+            NodeList contents = page.getElementsByTagName("Contents");
+            for (int i = 0; i < contents.getLength(); i++) {
+                keys.add(text((Element) contents.item(i), "Key"));
+            }
+            continuationToken = "true".equals(text(page.getDocumentElement(), "IsTruncated"))
+                    ? text(page.getDocumentElement(), "NextContinuationToken") : null;
+        } while (continuationToken != null);
+        return keys;
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return null;
+    }
+
+    @Override
+    public Path localRoot() {
+        return null;
+    }
+
+    private URI objectUri(String key) {
+        return URI.create(bucketUrl + "/" + SignatureV4.encode(key, false));
+    }
+
+    private <T> HttpResponse<T> send(String method, URI uri, Map<String, String> headers, BodyPublisher body,
+                                     String payloadHash, BodyHandler<T> handler) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).method(method, body);
+        if (!method.equals("PUT")) {
+            request.timeout(timeout);
+        }
+        headers.forEach(request::header);
+        signer.sign(method, uri, headers, payloadHash, Instant.now()).forEach(request::header);
+        try {
+            return client.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while calling " + uri);
+        }
+    }
+
+    private static InputStream body(HttpResponse<InputStream> response, String key) throws IOException {
+        int status = response.statusCode();
+        if (status == 200 || status == 206) {
+            return response.body();
+        }
+        String error;
+        try (InputStream body = response.body()) {
+            error = new String(body.readNBytes(1024), StandardCharsets.UTF_8);
+        }
+        if (status == 404) {
+            throw new NoSuchFileException(key);
+        }
+        throw new IOException("Could not read " + key + ": HTTP " + status + " " + error);
+    }
+
+    private static void expectSuccess(HttpResponse<String> response, String key) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Request for " + key + " failed: HTTP " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    private static Document parse(InputStream xml) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(xml);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Unreadable listing", e);
+        }
+    }
+
+    // text of the first child element with that name, null when there is none
+    private static String text(Element parent, String name) {
+        NodeList children = parent.getElementsByTagName(name);
+        return children.getLength() == 0 ? null : children.item(0).getTextContent();
+    }
+}
@@ -0,0 +1,142 @@
+package ma.emsi.emstudy.Storage;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * AWS Signature Version 4 for S3 requests, which S3-compatible stores (MinIO, Ceph, R2...) accept
+ * as well, computed here rather than pulling in an SDK for the few calls the storage makes.
+ */
+final class SignatureV4 {
+
+    // the body isn't hashed, so that a file can be streamed without reading it twice
+    static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    static final String EMPTY_PAYLOAD = HexFormat.of().formatHex(sha256(new byte[0]));
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final String accessKey;
+    private final String secretKey;
+    private final String region;
+
+    SignatureV4(String accessKey, String secretKey, String region) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+    }
+
+    /**
+     * The headers that authenticate a request: {@code x-amz-date}, {@code x-amz-content-sha256}
+     * and {@code Authorization}. The host and the given headers are signed along with them.
+     *
+     * @param uri with its path and query already encoded by {@link #encode}
+     */
+    Map<String, String> sign(String method, URI uri, Map<String, String> headers, String payloadHash, Instant time) {
+        String timestamp = TIMESTAMP.format(time);
+        String scope = timestamp.substring(0, 8) + "/" + region + "/s3/aws4_request";
+
+        Map<String, String> signed = new TreeMap<>();
+        signed.put("host", host(uri));
+        headers.forEach((name, value) -> signed.put(name.toLowerCase(Locale.ROOT), value.trim()));
+        signed.put("x-amz-content-sha256", payloadHash);
+        signed.put("x-amz-date", timestamp);
+        String signedHeaders = String.join(";", signed.keySet());
+
+        StringBuilder canonicalRequest = new StringBuilder()
+                .append(method).append('\n')
+                .append(uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath()).append('\n')
+                .append(canonicalQuery(uri.getRawQuery())).append('\n');
+        signed.forEach((name, value) -> canonicalRequest.append(name).append(':').append(value).append('\n'));
+        canonicalRequest.append('\n').append(signedHeaders).append('\n').append(payloadHash);
+
+        String stringToSign = ALGORITHM + "\n" + timestamp + "\n" + scope + "\n"
+                + HexFormat.of().formatHex(sha256(canonicalRequest.toString().getBytes(StandardCharsets.UTF_8)));
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), timestamp.substring(0, 8));
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(key, stringToSign));
+
+        Map<String, String> authentication = new LinkedHashMap<>();
+        authentication.put("x-amz-date", timestamp);
+        authentication.put("x-amz-content-sha256", payloadHash);
+        authentication.put("Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+        return authentication;
+    }
+
+    /**
+     * Percent-encodes everything but the unreserved characters, as the signature expects the
+     * path and query to be encoded.
+     *
+     * @param keepSlashes for paths, whose separators stay as they are
+     */
+    static String encode(String value, boolean keepSlashes) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && keepSlashes)) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(HexFormat.of().withUpperCase().toHexDigits(b));
+            }
+        }
+        return encoded.toString();
+    }
+
+    // what HttpClient sends as Host: the port only when it isn't the scheme's default
+    static String host(URI uri) {
+        int port = uri.getPort();
+        boolean defaultPort = port == -1 || (port == 443 && "https".equals(uri.getScheme()))
+                || (port == 80 && "http".equals(uri.getScheme()));
+        return defaultPort ? uri.getHost() : uri.getHost() + ":" + port;
+    }
+
+    // parameters sorted by name, each with an "=" even when it has no value
+    private static String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        return Arrays.stream(rawQuery.split("&"))
+                .map(parameter -> parameter.contains("=") ? parameter.split("=", 2) : new String[]{parameter, ""})
+                .sorted(Comparator.<String[], String>comparing(parameter -> parameter[0]).thenComparing(parameter -> parameter[1]))
+                .map(parameter -> parameter[0] + "=" + parameter[1])
+                .collect(Collectors.joining("&"));
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ma.emsi.emstudy.Storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Where stored files live, by key: the names {@code FileStorageService} gives them
+ * ({@code <sha256>.<ext>}, {@code <sha256>-<variant>}, or the name of a file uploaded before
+ * storage was content-addressed). Keys never contain a slash. Objects are written whole and never
+ * changed in place, so a reader sees either all of an object or none of it.
+ * Selected with {@code storage.backend}, see {@code StorageConfig}.
+ */
+public interface StorageBackend {
+
+    /**
+     * Stores a file written in the upload directory under the key, replacing any object there.
+     * The file is taken over: it is gone once this returns.
+     */
+    void put(String key, Path file) throws IOException;
+
+    // same as put(String, Path) for content read from a stream of known length
+    void put(String key, InputStream content, long length) throws IOException;
+
+    /**
+     * The whole object; the caller closes the stream.
+     *
+     * @throws NoSuchFileException when there is no object under the key
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * {@code length} bytes of the object from {@code offset}, read without fetching the rest of it.
+     *
+     * @throws NoSuchFileException when there is no object under the key
+     */
+    InputStream get(String key, long offset, long length) throws IOException;
+
+    // null when there is no object under the key
+    ObjectInfo stat(String key) throws IOException;
+
+    /**
+     * Sets the object's modification time to now, leaving its content as it is.
+     *
+     * @return false when there is no object under the key
+     */
+    boolean touch(String key) throws IOException;
+
+    // nothing happens when there is no object under the key
+    void delete(String key) throws IOException;
+
+    // keys starting with the prefix, in no particular order
+    List<String> list(String prefix) throws IOException;
+
+    /**
+     * The object as a file on this machine, for sendfile, or null when objects aren't kept on
+     * local disk.
+     */
+    Path localPath(String key);
+
+    /**
+     * The directory {@link #localPath} files are under, for a front server reading the same
+     * volume, or null when objects aren't kept on local disk.
+     */
+    Path localRoot();
+
+    /**
+     * @param lastModified milliseconds since the epoch
+     */
+    record ObjectInfo(long length, long lastModified) {
+    }
+}
@@ -0,0 +1,121 @@
+package ma.emsi.emstudy.Config;
+
+import jakarta.persistence.EntityManager;
+import ma.emsi.emstudy.Entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the listener against H2 with real commits and rollbacks, which the bump hooks into.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@ActiveProfiles("test")
+@Import(CourseVersionListener.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CourseVersionListenerIntegrationTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Long courseId;
+    private Long quizId;
+    private Long questionId;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            Course course = new Course();
+            course.setName("Algorithms");
+            entityManager.persist(course);
+            Quiz quiz = new Quiz();
+            quiz.setTitle("Quiz 1");
+            quiz.setCourse(course);
+            entityManager.persist(quiz);
+            Question question = new Question();
+            question.setQuestionText("2 + 2?");
+            question.setQuiz(quiz);
+            entityManager.persist(question);
+            courseId = course.getCourseId();
+            quizId = quiz.getItemId();
+            questionId = question.getQuestionId();
+        });
+    }
+
+    private long contentVersion() {
+        return jdbcTemplate.queryForObject("select content_version from courses where course_id = ?", Long.class, courseId);
+    }
+
+    @Test
+    void testCreatingACourseWithContent_StartsAtZeroPerTransaction() {
+        // Assert
+        // the course's own insert doesn't count, its quiz and question bump it once together
+        assertEquals(1, contentVersion());
+    }
+
+    @Test
+    void testItemUpdate_BumpsOnCommit() {
+        // Arrange
+        long before = contentVersion();
+
+        // Act
+        transactionTemplate.executeWithoutResult(status ->
+                entityManager.find(Quiz.class, quizId).setTitle("Midterm"));
+
+        // Assert
+        assertEquals(before + 1, contentVersion());
+    }
+
+    @Test
+    void testQuestionAndAnswerWrites_BumpOncePerTransaction() {
+        // Arrange
+        long before = contentVersion();
+
+        // Act
+        transactionTemplate.executeWithoutResult(status -> {
+            Question question = entityManager.find(Question.class, questionId);
+            question.setPoints(2);
+            entityManager.persist(Answer.builder().answerText("4").Correct(true).question(question).build());
+        });
+
+        // Assert
+        assertEquals(before + 1, contentVersion());
+    }
+
+    @Test
+    void testRolledBackWrite_LeavesTheVersion() {
+        // Arrange
+        long before = contentVersion();
+
+        // Act
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.find(Question.class, questionId).setQuestionText("3 + 3?");
+            entityManager.flush();
+            status.setRollbackOnly();
+        });
+
+        // Assert
+        assertEquals(before, contentVersion());
+        assertEquals("2 + 2?", jdbcTemplate.queryForObject(
+                "select question_text from questions where question_id = ?", String.class, questionId));
+    }
+}
@@ -0,0 +1,61 @@
+package ma.emsi.emstudy.Config;
+
+import ma.emsi.emstudy.Entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CourseVersionListenerTest {
+
+    private Course course;
+    private Quiz quiz;
+
+    @BeforeEach
+    void setUp() {
+        course = new Course();
+        course.setCourseId(4L);
+        quiz = new Quiz();
+        quiz.setCourse(course);
+    }
+
+    @Test
+    void testCourseIdOf_ContentEntities() {
+        // Arrange
+        Question question = new Question();
+        question.setQuiz(quiz);
+        Answer answer = new Answer();
+        answer.setQuestion(question);
+
+        // Act & Assert
+        assertEquals(4L, CourseVersionListener.courseIdOf(course));
+        assertEquals(4L, CourseVersionListener.courseIdOf(quiz));
+        assertEquals(4L, CourseVersionListener.courseIdOf(question));
+        assertEquals(4L, CourseVersionListener.courseIdOf(answer));
+    }
+
+    @Test
+    void testCourseIdOf_EnrollmentsAndProgress() {
+        // Arrange
+        Enrollment enrollment = Enrollment.builder().course(course).build();
+        CompletedCourseItem completed = new CompletedCourseItem();
+        completed.setCourse(course);
+
+        // Act & Assert
+        assertEquals(4L, CourseVersionListener.courseIdOf(enrollment));
+        assertEquals(4L, CourseVersionListener.courseIdOf(completed));
+    }
+
+    @Test
+    void testCourseIdOf_UnrelatedOrDetached() {
+        // Arrange
+        Answer orphan = new Answer();
+        Question unattached = new Question();
+
+        // Act & Assert
+        assertNull(CourseVersionListener.courseIdOf(new Submission()));
+        assertNull(CourseVersionListener.courseIdOf(orphan));
+        assertNull(CourseVersionListener.courseIdOf(unattached));
+        assertNull(CourseVersionListener.courseIdOf(new CourseMaterial()));
+    }
+}
@@ -0,0 +1,107 @@
+package ma.emsi.emstudy.Controller;
+
+import ma.emsi.emstudy.Entity.Course;
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Entity.CourseMaterialType;
+import ma.emsi.emstudy.Service.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class CourseMaterialControllerTest {
+
+    private static final Long COURSE_ID = 3L;
+    private static final Long OUTSIDER_ID = 42L;
+
+    @Mock
+    private CourseService courseService;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @Mock
+    private FileStreamingService fileStreamingService;
+
+    @Mock
+    private CourseMaterialService courseMaterialService;
+
+    @Mock
+    private SubmissionService submissionService;
+
+    @Mock
+    private QuizService quizService;
+
+    @Mock
+    private ChunkedUploadService chunkedUploadService;
+
+    @Mock
+    private ImageRenditionService imageRenditionService;
+
+    @Mock
+    private MarkdownRenderingService markdownRenderingService;
+
+    @InjectMocks
+    private CourseMaterialController courseMaterialController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(courseMaterialController).build();
+        when(courseService.canViewCourse(OUTSIDER_ID, COURSE_ID)).thenReturn(false);
+    }
+
+    private void material(Long materialId, CourseMaterialType type) {
+        Course course = new Course();
+        course.setCourseId(COURSE_ID);
+        CourseMaterial material = new CourseMaterial();
+        material.setItemId(materialId);
+        material.setCourse(course);
+        material.setCourseMaterialType(type);
+        when(courseMaterialService.getCourseItemById(materialId)).thenReturn(material);
+    }
+
+    @Test
+    void testViewImage_NotEnrolled() throws Exception {
+        // Arrange
+        material(1L, CourseMaterialType.IMAGE);
+
+        // Act & Assert
+        mockMvc.perform(get("/materials/image/1").param("size", "thumb").requestAttr("userId", OUTSIDER_ID))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(imageRenditionService, fileStreamingService);
+    }
+
+    @Test
+    void testViewMarkdown_NotEnrolled() throws Exception {
+        // Arrange
+        material(2L, CourseMaterialType.MARKDOWN);
+
+        // Act & Assert
+        mockMvc.perform(get("/materials/markdown/2").requestAttr("userId", OUTSIDER_ID))
+                .andExpect(status().isForbidden());
+        verify(fileStreamingService, never()).serve(any(CourseMaterial.class), any(), any(), any());
+    }
+
+    @Test
+    void testViewMarkdownHtml_NotEnrolled() throws Exception {
+        // Arrange
+        material(3L, CourseMaterialType.MARKDOWN);
+
+        // Act & Assert
+        mockMvc.perform(get("/materials/markdown/3/html").requestAttr("userId", OUTSIDER_ID))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(markdownRenderingService);
+    }
+}
@@ -0,0 +1,88 @@
+package ma.emsi.emstudy.Repository;
+
+import jakarta.persistence.EntityManager;
+import ma.emsi.emstudy.Entity.Course;
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Service.CourseService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the bulk file replacement against H2, where it has to move the versions of the courses it touches.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CourseMaterialRepoIntegrationTest {
+
+    private static final String OLD_URL = "/api/files/1111_notes.md";
+    private static final String NEW_URL = "/api/files/2cf24dba.md";
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CourseMaterialRepo courseMaterialRepo;
+
+    @Autowired
+    private CourseRepo courseRepo;
+
+    private CourseService courseService;
+
+    private Long migratedCourseId;
+    private Long otherCourseId;
+
+    @BeforeEach
+    void setUp() {
+        courseService = new CourseService(courseRepo, null, null, null, null, null);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            migratedCourseId = persistCourseWithMaterial("Algorithms", OLD_URL);
+            otherCourseId = persistCourseWithMaterial("Networks", "/api/files/3333_slides.pdf");
+        });
+    }
+
+    private Long persistCourseWithMaterial(String name, String url) {
+        Course course = new Course();
+        course.setName(name);
+        entityManager.persist(course);
+        CourseMaterial material = new CourseMaterial();
+        material.setTitle("Week 1");
+        material.setUrl(url);
+        material.setCourse(course);
+        entityManager.persist(material);
+        return course.getCourseId();
+    }
+
+    @Test
+    void testReplaceFile_ChangesTheETagOfTheCoursesServingIt() {
+        // Arrange
+        String migratedETag = courseService.getContentETag(migratedCourseId);
+        String otherETag = courseService.getContentETag(otherCourseId);
+
+        // Act
+        int materials = courseMaterialRepo.replaceFile(OLD_URL, NEW_URL, 5L, "2cf24dba", "text/markdown", null);
+
+        // Assert
+        assertEquals(1, materials);
+        assertEquals(NEW_URL, jdbcTemplate.queryForObject(
+                "select url from course_materials where url = ?", String.class, NEW_URL));
+        assertNotEquals(migratedETag, courseService.getContentETag(migratedCourseId));
+        assertEquals(otherETag, courseService.getContentETag(otherCourseId));
+    }
+}
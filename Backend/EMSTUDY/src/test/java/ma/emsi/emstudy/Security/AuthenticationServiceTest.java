@@ -0,0 +1,116 @@
+package ma.emsi.emstudy.Security;
+
+import io.jsonwebtoken.security.SignatureException;
+import ma.emsi.emstudy.Entity.Student;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuthenticationServiceTest {
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    @Mock
+    private AuthenticationManager authenticationManager;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    @InjectMocks
+    private AuthenticationService authenticationService;
+
+    private AppUserDetails studentDetails;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(authenticationService, "secretKey", "test-secret-key-for-testing-purposes-only");
+        ReflectionTestUtils.setField(authenticationService, "jwtExpirationMs", 60_000L);
+        ReflectionTestUtils.setField(authenticationService, "claimsOnly", true);
+        ReflectionTestUtils.setField(authenticationService, "verifiedCacheSize", 100L);
+        authenticationService.init();
+
+        Student student = new Student();
+        student.setUserId(7L);
+        student.setUsername("student1");
+        student.setEmail("student@example.com");
+        student.setRole("Student");
+        studentDetails = new AppUserDetails(student);
+    }
+
+    @Test
+    void testValidateToken_ClaimsOnly() {
+        // Arrange
+        String token = authenticationService.generateToken(studentDetails);
+
+        // Act
+        UserDetails result = authenticationService.validateToken(token);
+
+        // Assert
+        JwtPrincipal principal = assertInstanceOf(JwtPrincipal.class, result);
+        assertEquals(7L, principal.getId());
+        assertEquals("student@example.com", principal.getUsername());
+        assertEquals("Student", principal.getAuthorities().iterator().next().getAuthority());
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void testValidateToken_LoadsUserWhenClaimsOnlyDisabled() {
+        // Arrange
+        ReflectionTestUtils.setField(authenticationService, "claimsOnly", false);
+        String token = authenticationService.generateToken(studentDetails);
+        when(userDetailsService.loadUserByUsername("student@example.com")).thenReturn(studentDetails);
+
+        // Act
+        UserDetails result = authenticationService.validateToken(token);
+
+        // Assert
+        assertSame(studentDetails, result);
+        verify(userDetailsService).loadUserByUsername("student@example.com");
+    }
+
+    @Test
+    void testValidateToken_Revoked() {
+        // Arrange
+        String token = authenticationService.generateToken(studentDetails);
+        when(tokenRevocationService.isRevoked(eq(7L), any())).thenReturn(true);
+
+        // Act & Assert
+        assertThrows(CredentialsExpiredException.class, () -> authenticationService.validateToken(token));
+    }
+
+    @Test
+    void testValidateToken_RevocationCheckedOnCachedToken() {
+        // Arrange
+        String token = authenticationService.generateToken(studentDetails);
+        authenticationService.validateToken(token);
+        when(tokenRevocationService.isRevoked(eq(7L), any())).thenReturn(true);
+
+        // Act & Assert
+        assertThrows(CredentialsExpiredException.class, () -> authenticationService.validateToken(token));
+    }
+
+    @Test
+    void testValidateToken_TamperedSignature() {
+        // Arrange
+        String token = authenticationService.generateToken(studentDetails);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        // Act & Assert
+        assertThrows(SignatureException.class, () -> authenticationService.validateToken(tampered));
+    }
+}
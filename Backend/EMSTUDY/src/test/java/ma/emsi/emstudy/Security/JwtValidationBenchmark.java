@@ -0,0 +1,79 @@
+package ma.emsi.emstudy.Security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import ma.emsi.emstudy.Entity.Student;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of validating one request's JWT: the previous implementation (key and parser rebuilt
+ * on every call), the pre-built parser alone, and the cached path taken by repeated tokens.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ma.emsi.emstudy.Security.JwtValidationBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtValidationBenchmark {
+
+    private static final String SECRET = "5f4d3c2b1a9e8d7f6c5b4a3e2d1c0f9a7e6d5c4b3a2f1c0e9d8f7c6b5a4e3d2";
+
+    private AuthenticationService authenticationService;
+    private io.jsonwebtoken.JwtParser prebuiltParser;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        authenticationService = new AuthenticationService(null, null, new TokenRevocationService(null, null));
+        ReflectionTestUtils.setField(authenticationService, "secretKey", SECRET);
+        ReflectionTestUtils.setField(authenticationService, "jwtExpirationMs", 3_600_000L);
+        ReflectionTestUtils.setField(authenticationService, "claimsOnly", true);
+        ReflectionTestUtils.setField(authenticationService, "verifiedCacheSize", 10_000L);
+        authenticationService.init();
+
+        Student student = new Student();
+        student.setUserId(1L);
+        student.setUsername("student1");
+        student.setEmail("student@example.com");
+        student.setRole("Student");
+        token = authenticationService.generateToken(new AppUserDetails(student));
+
+        prebuiltParser = Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes())).build();
+    }
+
+    @Benchmark
+    public String perRequestKeyAndParser() {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody()
+                .getSubject();
+    }
+
+    @Benchmark
+    public String prebuiltParser() {
+        return prebuiltParser.parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public UserDetails cachedValidation() {
+        return authenticationService.validateToken(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtValidationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
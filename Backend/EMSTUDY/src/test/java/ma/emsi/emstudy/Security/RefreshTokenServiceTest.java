@@ -0,0 +1,105 @@
+package ma.emsi.emstudy.Security;
+
+import ma.emsi.emstudy.Entity.RefreshToken;
+import ma.emsi.emstudy.Exception.InvalidTokenException;
+import ma.emsi.emstudy.Repository.RefreshTokenRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepo refreshTokenRepo;
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    private RefreshToken issuedToken;
+    private String rawToken;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(refreshTokenService, "refreshExpirationMs", 60_000L);
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        when(refreshTokenRepo.save(captor.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        rawToken = refreshTokenService.issue(1L);
+        issuedToken = captor.getValue();
+        issuedToken.setRefreshTokenId(10L);
+    }
+
+    @Test
+    void testIssue_StoresOnlyTheHash() {
+        // Assert
+        assertNotEquals(rawToken, issuedToken.getTokenHash());
+        assertEquals(1L, issuedToken.getUserId());
+        assertNotNull(issuedToken.getFamilyId());
+        assertTrue(issuedToken.getExpiresAt().isAfter(Instant.now()));
+    }
+
+    @Test
+    void testRotate() {
+        // Arrange
+        when(refreshTokenRepo.findByTokenHash(issuedToken.getTokenHash())).thenReturn(Optional.of(issuedToken));
+        when(refreshTokenRepo.markUsed(10L)).thenReturn(1);
+
+        // Act
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(rawToken);
+
+        // Assert
+        assertEquals(1L, rotation.userId());
+        assertNotEquals(rawToken, rotation.refreshToken());
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepo, times(2)).save(captor.capture());
+        assertEquals(issuedToken.getFamilyId(), captor.getValue().getFamilyId());
+        verify(refreshTokenRepo, never()).deleteFamily(anyString());
+    }
+
+    @Test
+    void testRotate_ReuseRevokesFamily() {
+        // Arrange
+        when(refreshTokenRepo.findByTokenHash(issuedToken.getTokenHash())).thenReturn(Optional.of(issuedToken));
+        when(refreshTokenRepo.markUsed(10L)).thenReturn(0);
+
+        // Act & Assert
+        assertThrows(InvalidTokenException.class, () -> refreshTokenService.rotate(rawToken));
+        verify(refreshTokenRepo).deleteFamily(issuedToken.getFamilyId());
+        verify(refreshTokenRepo, times(1)).save(any(RefreshToken.class));
+    }
+
+    @Test
+    void testRotate_Expired() {
+        // Arrange
+        issuedToken.setExpiresAt(Instant.now().minusSeconds(1));
+        when(refreshTokenRepo.findByTokenHash(issuedToken.getTokenHash())).thenReturn(Optional.of(issuedToken));
+
+        // Act & Assert
+        assertThrows(InvalidTokenException.class, () -> refreshTokenService.rotate(rawToken));
+        verify(refreshTokenRepo).deleteFamily(issuedToken.getFamilyId());
+        verify(refreshTokenRepo, never()).markUsed(any());
+    }
+
+    @Test
+    void testRotate_UnknownToken() {
+        // Arrange
+        when(refreshTokenRepo.findByTokenHash(anyString())).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(InvalidTokenException.class, () -> refreshTokenService.rotate("unknown"));
+    }
+}
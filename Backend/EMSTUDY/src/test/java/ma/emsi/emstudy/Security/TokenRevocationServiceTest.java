@@ -0,0 +1,99 @@
+package ma.emsi.emstudy.Security;
+
+import ma.emsi.emstudy.Repository.UserRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private UserRepo userRepo;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @InjectMocks
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(tokenRevocationService, "jwtExpirationMs", 900_000L);
+    }
+
+    private static UserRepo.TokenCutoff cutoff(Long userId, Instant tokensValidAfter) {
+        return new UserRepo.TokenCutoff() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public Instant getTokensValidAfter() {
+                return tokensValidAfter;
+            }
+        };
+    }
+
+    @Test
+    void testIsRevoked_TokenIssuedInTheSecondOfTheCutoff() {
+        // Arrange
+        Instant second = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        when(userRepo.findTokenCutoffsSince(any())).thenReturn(List.of(cutoff(1L, second.plusMillis(500))));
+        tokenRevocationService.loadRecentCutoffs();
+
+        // Act & Assert
+        // "iat" of a token issued at .300 of that second, before the cutoff
+        assertTrue(tokenRevocationService.isRevoked(1L, Date.from(second)));
+        assertTrue(tokenRevocationService.isRevoked(1L, Date.from(second.minusSeconds(1))));
+        assertFalse(tokenRevocationService.isRevoked(1L, Date.from(second.plusSeconds(1))));
+        assertFalse(tokenRevocationService.isRevoked(2L, Date.from(second)));
+    }
+
+    @Test
+    void testLoadRecentCutoffs_PicksUpRevocationsOfAnotherInstance() {
+        // Arrange
+        Instant issuedAt = Instant.now().minusSeconds(60).truncatedTo(ChronoUnit.SECONDS);
+        when(userRepo.findTokenCutoffsSince(any()))
+                .thenReturn(List.of())
+                .thenReturn(List.of(cutoff(1L, issuedAt.plusSeconds(30))));
+        tokenRevocationService.loadRecentCutoffs();
+        boolean revokedBefore = tokenRevocationService.isRevoked(1L, Date.from(issuedAt));
+
+        // Act
+        tokenRevocationService.loadRecentCutoffs();
+
+        // Assert
+        assertFalse(revokedBefore);
+        assertTrue(tokenRevocationService.isRevoked(1L, Date.from(issuedAt)));
+    }
+
+    @Test
+    void testLoadRecentCutoffs_KeepsALaterLocalCutoff() {
+        // Arrange
+        Instant stored = Instant.now().minusSeconds(60);
+        when(userRepo.findTokenCutoffsSince(any())).thenReturn(List.of(cutoff(1L, stored)));
+        tokenRevocationService.revokeAllTokens(1L);
+
+        // Act
+        tokenRevocationService.loadRecentCutoffs();
+
+        // Assert
+        assertTrue(tokenRevocationService.isRevoked(1L, Date.from(stored.plusSeconds(30))));
+        verify(refreshTokenService).revokeAll(1L);
+    }
+}
@@ -0,0 +1,254 @@
+package ma.emsi.emstudy.Service;
+
+import ma.emsi.emstudy.DTO.UploadSessionDTO;
+import ma.emsi.emstudy.DTO.UploadSessionRequest;
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Entity.UploadSession;
+import ma.emsi.emstudy.Exception.ForbiddenAccessException;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Exception.UploadOffsetMismatchException;
+import ma.emsi.emstudy.Repository.CourseMaterialRepo;
+import ma.emsi.emstudy.Repository.UploadSessionRepo;
+import ma.emsi.emstudy.Storage.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ChunkedUploadServiceTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private final Map<String, UploadSession> sessions = new HashMap<>();
+    private final UploadSessionRepo uploadSessionRepo = mock(UploadSessionRepo.class);
+    private final CourseMaterialService courseMaterialService = mock(CourseMaterialService.class);
+    private final CourseMaterialRepo courseMaterialRepo = mock(CourseMaterialRepo.class);
+    private LocalStorageBackend storage;
+    private FileStorageService fileStorageService;
+    private ChunkedUploadService chunkedUploadService;
+
+    @TempDir
+    private Path uploadDir;
+
+    @BeforeEach
+    void setUp() {
+        storage = new LocalStorageBackend(uploadDir);
+        fileStorageService = new FileStorageService(courseMaterialRepo, storage);
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(fileStorageService, "purgeGracePeriod", Duration.ZERO);
+        when(uploadSessionRepo.save(any())).thenAnswer(invocation -> {
+            UploadSession session = invocation.getArgument(0);
+            sessions.put(session.getUploadId(), session);
+            return session;
+        });
+        when(uploadSessionRepo.findById(any())).thenAnswer(invocation -> Optional.ofNullable(sessions.get(invocation.<String>getArgument(0))));
+        doAnswer(invocation -> sessions.remove(invocation.<String>getArgument(0))).when(uploadSessionRepo).deleteById(any());
+        when(courseMaterialService.addCourseItem(any(), eq(7L))).thenAnswer(invocation -> invocation.getArgument(0));
+        // the saved material keeps its file from being purged once the upload releases it
+        when(courseMaterialRepo.countByUrl(any())).thenReturn(1L);
+        chunkedUploadService = newService();
+    }
+
+    // a fresh instance has no hashing progress in memory, like after a restart
+    private ChunkedUploadService newService() {
+        ChunkedUploadService service = new ChunkedUploadService(uploadSessionRepo, fileStorageService, courseMaterialService);
+        ReflectionTestUtils.setField(service, "chunkSize", DataSize.ofBytes(4));
+        ReflectionTestUtils.setField(service, "maxFileSize", DataSize.ofKilobytes(1));
+        ReflectionTestUtils.setField(service, "sessionTtl", Duration.ofHours(1));
+        return service;
+    }
+
+    private String start() {
+        return chunkedUploadService.start(new UploadSessionRequest("Lecture", 7L, "lecture.MP4", "video/mp4", CONTENT.length), 1L)
+                .getUploadId();
+    }
+
+    private UploadSessionDTO send(ChunkedUploadService service, String uploadId, int from, int to, String digest) throws Exception {
+        byte[] chunk = Arrays.copyOfRange(CONTENT, from, to);
+        return service.appendChunk(uploadId, 1L, from, digest, new ByteArrayInputStream(chunk));
+    }
+
+    private static String digestOf(byte[] bytes) throws Exception {
+        return "sha-256=:" + Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(bytes)) + ":";
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    @Test
+    void testAppendChunk_CompletesWithTheLastChunk() throws Exception {
+        // Arrange
+        String uploadId = start();
+
+        // Act
+        UploadSessionDTO first = send(chunkedUploadService, uploadId, 0, 4, null);
+        UploadSessionDTO second = send(chunkedUploadService, uploadId, 4, 8, digestOf("4567".getBytes()));
+        UploadSessionDTO last = send(chunkedUploadService, uploadId, 8, 10, null);
+
+        // Assert
+        assertEquals(4, first.getOffset());
+        assertNull(first.getMaterial());
+        assertEquals(8, second.getOffset());
+        CourseMaterial material = last.getMaterial();
+        assertNotNull(material);
+        String storedName = sha256(CONTENT) + ".mp4";
+        assertEquals(uploadDir + "/" + storedName, material.getUrl());
+        assertEquals("Lecture", material.getTitle());
+        assertEquals(10L, material.getFileSize());
+        assertEquals(sha256(CONTENT), material.getSha256());
+        assertEquals("lecture.MP4", material.getOriginalFileName());
+        assertArrayEquals(CONTENT, Files.readAllBytes(storage.localPath(storedName)));
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            assertEquals(List.of(storage.localPath(storedName)), files.filter(Files::isRegularFile).toList());
+        }
+        assertTrue(sessions.isEmpty());
+        verify(courseMaterialService, times(1)).addCourseItem(any(), eq(7L));
+    }
+
+    @Test
+    void testAppendChunk_LastChunkCanBeSentAgainWhenCompletingFails() throws Exception {
+        // Arrange
+        String uploadId = start();
+        send(chunkedUploadService, uploadId, 0, 4, null);
+        send(chunkedUploadService, uploadId, 4, 8, null);
+        when(courseMaterialService.addCourseItem(any(), eq(7L)))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        // nothing references the stored file until the material is saved
+        when(courseMaterialRepo.countByUrl(any())).thenReturn(0L);
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> send(chunkedUploadService, uploadId, 8, 10, null));
+        boolean sessionKept = sessions.containsKey(uploadId);
+        byte[] partial = Files.readAllBytes(fileStorageService.getPartialPath(uploadId));
+        when(courseMaterialRepo.countByUrl(any())).thenReturn(1L);
+        UploadSessionDTO retried = send(chunkedUploadService, uploadId, 8, 10, null);
+
+        // Assert
+        assertTrue(sessionKept);
+        assertArrayEquals(CONTENT, partial);
+        assertEquals(sha256(CONTENT), retried.getMaterial().getSha256());
+        assertArrayEquals(CONTENT, Files.readAllBytes(storage.localPath(sha256(CONTENT) + ".mp4")));
+        assertTrue(sessions.isEmpty());
+        assertFalse(Files.exists(fileStorageService.getPartialPath(uploadId)));
+    }
+
+    @Test
+    void testAppendChunk_WrongOffset() throws Exception {
+        // Arrange
+        String uploadId = start();
+        send(chunkedUploadService, uploadId, 0, 4, null);
+
+        // Act & Assert
+        assertThrows(UploadOffsetMismatchException.class, () -> send(chunkedUploadService, uploadId, 0, 4, null));
+        assertThrows(UploadOffsetMismatchException.class, () -> send(chunkedUploadService, uploadId, 8, 10, null));
+        assertEquals(4, chunkedUploadService.getSession(uploadId, 1L).getOffset());
+    }
+
+    @Test
+    void testAppendChunk_ChecksumMismatchIsDiscarded() throws Exception {
+        // Arrange
+        String uploadId = start();
+        send(chunkedUploadService, uploadId, 0, 4, null);
+
+        // Act
+        assertThrows(InvalidInputException.class, () -> send(chunkedUploadService, uploadId, 4, 8, digestOf("xxxx".getBytes())));
+        long offsetAfterMismatch = chunkedUploadService.getSession(uploadId, 1L).getOffset();
+        send(chunkedUploadService, uploadId, 4, 8, null);
+        UploadSessionDTO last = send(chunkedUploadService, uploadId, 8, 10, null);
+
+        // Assert
+        assertEquals(4, offsetAfterMismatch);
+        assertTrue(last.getMaterial().getUrl().endsWith(sha256(CONTENT) + ".mp4"));
+    }
+
+    @Test
+    void testAppendChunk_ChunkLargerThanChunkSize() throws Exception {
+        // Arrange
+        String uploadId = start();
+
+        // Act & Assert
+        assertThrows(InvalidInputException.class, () -> send(chunkedUploadService, uploadId, 0, 6, null));
+        assertEquals(0, chunkedUploadService.getSession(uploadId, 1L).getOffset());
+        assertEquals(0, Files.size(fileStorageService.getPartialPath(uploadId)));
+    }
+
+    @Test
+    void testAppendChunk_ResumesAfterRestart() throws Exception {
+        // Arrange
+        String uploadId = start();
+        send(chunkedUploadService, uploadId, 0, 4, null);
+        ChunkedUploadService restarted = newService();
+
+        // Act
+        send(restarted, uploadId, 4, 8, null);
+        UploadSessionDTO last = send(restarted, uploadId, 8, 10, null);
+
+        // Assert
+        assertTrue(last.getMaterial().getUrl().endsWith(sha256(CONTENT) + ".mp4"));
+    }
+
+    @Test
+    void testAppendChunk_OtherUsersUpload() {
+        // Arrange
+        String uploadId = start();
+
+        // Act & Assert
+        assertThrows(ForbiddenAccessException.class,
+                () -> chunkedUploadService.appendChunk(uploadId, 2L, 0, null, new ByteArrayInputStream(CONTENT)));
+    }
+
+    @Test
+    void testStart_TooLarge() {
+        // Act & Assert
+        assertThrows(InvalidInputException.class,
+                () -> chunkedUploadService.start(new UploadSessionRequest("Lecture", 7L, "big.mp4", "video/mp4", 2048), 1L));
+    }
+
+    @Test
+    void testPurgeExpired_RemovesSessionAndPartialFile() throws Exception {
+        // Arrange
+        String uploadId = start();
+        send(chunkedUploadService, uploadId, 0, 4, null);
+        sessions.get(uploadId).setExpiresAt(Instant.now().minusSeconds(1));
+        when(uploadSessionRepo.findByExpiresAtBefore(any())).thenReturn(List.of(sessions.get(uploadId)));
+
+        // Act
+        chunkedUploadService.purgeExpired();
+
+        // Assert
+        assertTrue(sessions.isEmpty());
+        assertFalse(Files.exists(fileStorageService.getPartialPath(uploadId)));
+    }
+
+    @Test
+    void testParseContentDigest() {
+        // Act & Assert
+        assertArrayEquals(new byte[]{1, 2, 3}, ChunkedUploadService.parseContentDigest("sha-512=:AAAA:, sha-256=:AQID:"));
+        assertNull(ChunkedUploadService.parseContentDigest("md5=:AQID:"));
+        assertThrows(InvalidInputException.class, () -> ChunkedUploadService.parseContentDigest("sha-256=AQID"));
+    }
+}
@@ -0,0 +1,179 @@
+package ma.emsi.emstudy.Service;
+
+import jakarta.persistence.EntityManager;
+import ma.emsi.emstudy.Entity.*;
+import ma.emsi.emstudy.Exception.ResourceNotFoundException;
+import ma.emsi.emstudy.Repository.CourseItemRepo;
+import ma.emsi.emstudy.Repository.CourseRepo;
+import ma.emsi.emstudy.Repository.QuestionRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CourseCloneServiceTest {
+
+    @Mock
+    private CourseRepo courseRepo;
+
+    @Mock
+    private CourseItemRepo courseItemRepo;
+
+    @Mock
+    private QuestionRepo questionRepo;
+
+    @Mock
+    private JoinCodeService joinCodeService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @InjectMocks
+    private CourseCloneService courseCloneService;
+
+    private Course source;
+    private CourseMaterial material;
+    private Quiz quiz;
+    private Question question;
+
+    @BeforeEach
+    void setUp() {
+        source = new Course();
+        source.setCourseId(1L);
+        source.setName("Algorithms");
+        source.setDescription("Fall semester");
+
+        material = new CourseMaterial();
+        material.setItemId(10L);
+        material.setTitle("Slides");
+        material.setUrl("abc_slides.pdf");
+        material.setCourseMaterialType(CourseMaterialType.PDF);
+
+        quiz = new Quiz();
+        quiz.setItemId(11L);
+        quiz.setTitle("Quiz 1");
+        quiz.setDurationInMinutes(20);
+
+        question = new Question();
+        question.setQuestionId(20L);
+        question.setQuestionText("2 + 2?");
+        question.setQuiz(quiz);
+        question.setAnswers(new ArrayList<>(List.of(
+                Answer.builder().answerId(30L).answerText("4").Correct(true).build(),
+                Answer.builder().answerId(31L).answerText("5").build())));
+    }
+
+    private void stubTransaction() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void testCloneCourse() {
+        // Arrange
+        stubTransaction();
+        Teacher teacher = new Teacher();
+        when(courseRepo.findById(1L)).thenReturn(Optional.of(source));
+        when(courseItemRepo.findOrderedByCourseId(1L)).thenReturn(List.of(material, quiz));
+        when(questionRepo.findWithAnswersByQuizIds(List.of(11L))).thenReturn(List.of(question));
+        when(entityManager.getReference(Teacher.class, 5L)).thenReturn(teacher);
+
+        // Act
+        Course clone = courseCloneService.cloneCourse(1L, 5L, null);
+
+        // Assert
+        assertEquals("Algorithms (copy)", clone.getName());
+        assertEquals("Fall semester", clone.getDescription());
+        assertSame(teacher, clone.getTeacher());
+        verify(joinCodeService).assignNewCode(clone);
+        verify(joinCodeService).register(clone);
+        verify(courseRepo).saveAndFlush(clone);
+
+        ArgumentCaptor<Object> persisted = ArgumentCaptor.forClass(Object.class);
+        verify(entityManager, times(5)).persist(persisted.capture());
+        List<Object> entities = persisted.getAllValues();
+
+        CourseMaterial materialCopy = (CourseMaterial) entities.get(0);
+        assertNull(materialCopy.getItemId());
+        assertEquals("abc_slides.pdf", materialCopy.getUrl());
+        assertSame(clone, materialCopy.getCourse());
+        assertEquals(0, materialCopy.getSortOrder());
+
+        Quiz quizCopy = (Quiz) entities.get(1);
+        assertEquals(20, quizCopy.getDurationInMinutes());
+        assertEquals(1, quizCopy.getSortOrder());
+
+        Question questionCopy = (Question) entities.get(2);
+        assertSame(quizCopy, questionCopy.getQuiz());
+        Answer answerCopy = (Answer) entities.get(3);
+        assertSame(questionCopy, answerCopy.getQuestion());
+        assertTrue(answerCopy.isCorrect());
+        assertNull(answerCopy.getAnswerId());
+        verify(entityManager).flush();
+    }
+
+    @Test
+    void testCloneCourse_WithName() {
+        // Arrange
+        stubTransaction();
+        when(courseRepo.findById(1L)).thenReturn(Optional.of(source));
+        when(courseItemRepo.findOrderedByCourseId(1L)).thenReturn(List.of(material));
+
+        // Act
+        Course clone = courseCloneService.cloneCourse(1L, 5L, "  Algorithms 2027 ");
+
+        // Assert
+        assertEquals("Algorithms 2027", clone.getName());
+        verify(questionRepo, never()).findWithAnswersByQuizIds(any());
+    }
+
+    @Test
+    void testCloneCourse_CopiesAgainWhenTheCodeWasTaken() {
+        // Arrange
+        stubTransaction();
+        when(courseRepo.findById(1L)).thenReturn(Optional.of(source));
+        when(courseItemRepo.findOrderedByCourseId(1L)).thenReturn(List.of(material));
+        when(courseRepo.saveAndFlush(any(Course.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_course_join_code"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        Course clone = courseCloneService.cloneCourse(1L, 5L, null);
+
+        // Assert
+        assertEquals("Algorithms (copy)", clone.getName());
+        verify(joinCodeService, times(2)).assignNewCode(any());
+        verify(joinCodeService, times(1)).register(any());
+        verify(joinCodeService).register(clone);
+    }
+
+    @Test
+    void testCloneCourse_NotFound() {
+        // Arrange
+        stubTransaction();
+        when(courseRepo.findById(99L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> courseCloneService.cloneCourse(99L, 5L, null));
+        verify(entityManager, never()).persist(any());
+        verify(joinCodeService, never()).register(any());
+    }
+}
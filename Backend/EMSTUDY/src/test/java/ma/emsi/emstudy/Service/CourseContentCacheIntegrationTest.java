@@ -0,0 +1,192 @@
+package ma.emsi.emstudy.Service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import ma.emsi.emstudy.Entity.*;
+import ma.emsi.emstudy.Repository.AnswerRepo;
+import ma.emsi.emstudy.Repository.CourseItemRepo;
+import ma.emsi.emstudy.Repository.CourseRepo;
+import ma.emsi.emstudy.Repository.QuestionRepo;
+import ma.emsi.emstudy.Repository.QuizRepo;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the quiz, question and answer updates against H2 with the second-level cache on, and
+ * checks that what the cache serves afterwards (entities, collections and cached queries) is
+ * what the database holds.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CourseContentCacheIntegrationTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CourseRepo courseRepo;
+
+    @Autowired
+    private CourseItemRepo courseItemRepo;
+
+    @Autowired
+    private QuizRepo quizRepo;
+
+    @Autowired
+    private QuestionRepo questionRepo;
+
+    @Autowired
+    private AnswerRepo answerRepo;
+
+    private TransactionTemplate transactionTemplate;
+    private QuizService quizService;
+    private QuestionService questionService;
+    private AnswerService answerService;
+
+    private Long quizId;
+    private Long questionId;
+    private Long answerId;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        quizService = new QuizService(courseItemRepo, courseRepo, null, quizRepo);
+        questionService = new QuestionService(questionRepo, quizRepo, null);
+        answerService = new AnswerService(questionRepo, answerRepo);
+        transactionTemplate.executeWithoutResult(status -> {
+            Course course = new Course();
+            course.setName("Algorithms");
+            entityManager.persist(course);
+            Quiz quiz = new Quiz();
+            quiz.setTitle("Quiz 1");
+            quiz.setCourse(course);
+            entityManager.persist(quiz);
+            Question question = Question.builder().questionText("2 + 2?").quiz(quiz).answers(new ArrayList<>()).build();
+            entityManager.persist(question);
+            Answer answer = Answer.builder().answerText("4").Correct(true).question(question).build();
+            entityManager.persist(answer);
+            quizId = quiz.getItemId();
+            questionId = question.getQuestionId();
+            answerId = answer.getAnswerId();
+        });
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    // the quiz as read through the cache: its title, then each question with its answers, then the cached query
+    private List<String> read() {
+        return transactionTemplate.execute(status -> {
+            List<String> lines = new ArrayList<>();
+            Quiz quiz = entityManager.find(Quiz.class, quizId);
+            lines.add(quiz.getTitle());
+            quiz.getQuestions().stream()
+                    .sorted(Comparator.comparing(Question::getQuestionId))
+                    .forEach(question -> lines.add(question.getQuestionText() + " " + question.getAnswers().stream()
+                            .sorted(Comparator.comparing(Answer::getAnswerId))
+                            .map(answer -> answer.getAnswerText() + (answer.isCorrect() ? "*" : ""))
+                            .toList()));
+            questionRepo.findByQuizItemId(quizId).stream()
+                    .sorted(Comparator.comparing(Question::getQuestionId))
+                    .forEach(question -> lines.add("query: " + question.getQuestionText()));
+            return lines;
+        });
+    }
+
+    // reads once to fill the cache and once more served from it
+    private void warmUp() {
+        read();
+        long hits = statistics().getSecondLevelCacheHitCount();
+        long queryHits = statistics().getQueryCacheHitCount();
+        read();
+        assertTrue(statistics().getSecondLevelCacheHitCount() > hits);
+        assertTrue(statistics().getQueryCacheHitCount() > queryHits);
+    }
+
+    // what the database holds, read with every cache region emptied
+    private List<String> readFromDatabase() {
+        entityManagerFactory.getCache().evictAll();
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+        return read();
+    }
+
+    @Test
+    void testUpdateAnswer_CachedReadsSeeTheChange() {
+        // Arrange
+        warmUp();
+
+        // Act
+        answerService.updateAnswer(answerId, Answer.builder().answerText("four").Correct(false).build());
+        List<String> cached = read();
+
+        // Assert
+        assertEquals(List.of("Quiz 1", "2 + 2? [four]", "query: 2 + 2?"), cached);
+        assertEquals(readFromDatabase(), cached);
+    }
+
+    @Test
+    void testUpdateQuestion_CachedReadsSeeTheChange() {
+        // Arrange
+        warmUp();
+        List<Answer> answers = new ArrayList<>(List.of(
+                entityManager.find(Answer.class, answerId),
+                Answer.builder().answerText("5").build()));
+
+        // Act
+        questionService.updateQuestion(questionId, Question.builder().questionText("2 + 2 = ?").points(2).answers(answers).build());
+        List<String> cached = read();
+
+        // Assert
+        assertEquals(List.of("Quiz 1", "2 + 2 = ? [4*, 5]", "query: 2 + 2 = ?"), cached);
+        assertEquals(readFromDatabase(), cached);
+    }
+
+    @Test
+    void testUpdateQuiz_CachedReadsSeeTheChange() {
+        // Arrange
+        warmUp();
+        Question existing = transactionTemplate.execute(status -> {
+            Question question = entityManager.find(Question.class, questionId);
+            question.getAnswers().size();
+            return question;
+        });
+        Question added = Question.builder().questionText("3 + 3?")
+                .answers(new ArrayList<>(List.of(Answer.builder().answerText("6").Correct(true).build()))).build();
+        Quiz updated = new Quiz();
+        updated.setTitle("Midterm");
+        updated.setDurationInMinutes(30);
+        updated.setQuestions(new ArrayList<>(List.of(existing, added)));
+
+        // Act
+        quizService.updateQuiz(quizId, updated);
+        List<String> cached = read();
+
+        // Assert
+        assertEquals(List.of("Midterm", "2 + 2? [4*]", "3 + 3? [6*]", "query: 2 + 2?", "query: 3 + 3?"), cached);
+        assertEquals(readFromDatabase(), cached);
+    }
+}
@@ -0,0 +1,129 @@
+package ma.emsi.emstudy.Service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.query.NativeQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class CourseDeletionServiceTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @InjectMocks
+    private CourseDeletionService courseDeletionService;
+
+    @Mock
+    private TypedQuery<String> courseUrls;
+
+    @Mock
+    private TypedQuery<String> stillUsedUrls;
+
+    @Mock
+    private Query bulkDelete;
+
+    @Mock
+    private Query courseDelete;
+
+    @Mock
+    private Query nativeDelete;
+
+    @Mock(answer = org.mockito.Answers.RETURNS_SELF)
+    private NativeQuery<?> hibernateNativeDelete;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(entityManager.createQuery(startsWith("select distinct m.url from CourseMaterial m where m.course"), eq(String.class)))
+                .thenReturn(courseUrls);
+        when(entityManager.createQuery(startsWith("select distinct m.url from CourseMaterial m where m.url in"), eq(String.class)))
+                .thenReturn(stillUsedUrls);
+        when(entityManager.createQuery(startsWith("delete from"))).thenReturn(bulkDelete);
+        when(entityManager.createQuery("delete from Course c where c.courseId = :courseId")).thenReturn(courseDelete);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(nativeDelete);
+        when(nativeDelete.unwrap(NativeQuery.class)).thenReturn(hibernateNativeDelete);
+        when(courseUrls.setParameter(anyString(), any())).thenReturn(courseUrls);
+        when(stillUsedUrls.setParameter(anyString(), any())).thenReturn(stillUsedUrls);
+        when(bulkDelete.setParameter(anyString(), any())).thenReturn(bulkDelete);
+        when(courseDelete.setParameter(anyString(), any())).thenReturn(courseDelete);
+    }
+
+    @Test
+    void testDeleteCourse_PurgesOnlyUnsharedFiles() {
+        // Arrange
+        when(courseUrls.getResultList()).thenReturn(List.of("uploads/a.pdf", "uploads/shared.pdf"));
+        when(stillUsedUrls.getResultList()).thenReturn(List.of("uploads/shared.pdf"));
+        when(courseDelete.executeUpdate()).thenReturn(1);
+
+        // Act
+        boolean found = courseDeletionService.deleteCourse(1L);
+
+        // Assert
+        assertTrue(found);
+        verify(fileStorageService).deleteFilesLater(List.of("uploads/a.pdf"));
+        verify(entityManager, never()).remove(any());
+        verify(entityManager).clear();
+    }
+
+    @Test
+    void testDeleteCourse_DeletesChildrenFirst() {
+        // Arrange
+        when(courseUrls.getResultList()).thenReturn(List.of());
+        when(courseDelete.executeUpdate()).thenReturn(1);
+
+        // Act
+        courseDeletionService.deleteCourse(1L);
+
+        // Assert
+        InOrder inOrder = inOrder(entityManager);
+        inOrder.verify(entityManager).createNativeQuery(startsWith("delete from submissions_answers"));
+        inOrder.verify(entityManager).createQuery(startsWith("delete from Submission "));
+        inOrder.verify(entityManager).createQuery(startsWith("delete from Answer "));
+        inOrder.verify(entityManager).createQuery(startsWith("delete from Question "));
+        inOrder.verify(entityManager).createNativeQuery("delete from course_items where course_id = :courseId");
+        inOrder.verify(entityManager).createQuery(startsWith("delete from Enrollment "));
+        inOrder.verify(entityManager).createQuery("delete from Course c where c.courseId = :courseId");
+        verify(fileStorageService).deleteFilesLater(List.of());
+        verify(hibernateNativeDelete).addSynchronizedQuerySpace("submissions_answers");
+        verify(hibernateNativeDelete).addSynchronizedQuerySpace("course_items");
+    }
+
+    @Test
+    void testDeleteCourse_NotFound() {
+        // Arrange
+        when(courseUrls.getResultList()).thenReturn(List.of());
+        when(courseDelete.executeUpdate()).thenReturn(0);
+
+        // Act
+        boolean found = courseDeletionService.deleteCourse(99L);
+
+        // Assert
+        assertFalse(found);
+    }
+}
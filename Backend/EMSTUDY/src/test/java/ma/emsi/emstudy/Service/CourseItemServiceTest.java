@@ -0,0 +1,112 @@
+package ma.emsi.emstudy.Service;
+
+import ma.emsi.emstudy.DTO.CourseOutlineItemDTO;
+import ma.emsi.emstudy.Entity.Course;
+import ma.emsi.emstudy.Entity.CourseItem;
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Entity.Quiz;
+import ma.emsi.emstudy.Exception.ResourceNotFoundException;
+import ma.emsi.emstudy.Repository.CourseItemRepo;
+import ma.emsi.emstudy.Repository.CourseRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CourseItemServiceTest {
+
+    @Mock
+    private CourseItemRepo courseItemRepo;
+
+    @Mock
+    private CourseRepo courseRepo;
+
+    @Mock
+    private PaginationService paginationService;
+
+    private CourseItemService<CourseItem> courseItemService;
+    private Course testCourse;
+
+    @BeforeEach
+    void setUp() {
+        courseItemService = new CourseItemService<>(courseItemRepo, courseRepo, paginationService);
+        testCourse = new Course();
+        testCourse.setCourseId(1L);
+    }
+
+    @Test
+    void testAddCourseItem_AppendsToCourse() {
+        // Arrange
+        Quiz quiz = new Quiz();
+        quiz.setTitle("Quiz 3");
+        when(courseRepo.findById(1L)).thenReturn(Optional.of(testCourse));
+        when(courseItemRepo.findNextSortOrder(1L)).thenReturn(2);
+        when(courseItemRepo.save(any(CourseItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        CourseItem result = courseItemService.addCourseItem(quiz, 1L);
+
+        // Assert
+        assertEquals(2, result.getSortOrder());
+        assertSame(testCourse, result.getCourse());
+        assertNotNull(result.getAddDate());
+    }
+
+    @Test
+    void testAddCourseItem_CourseNotFound() {
+        // Arrange
+        when(courseRepo.findById(99L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> courseItemService.addCourseItem(new Quiz(), 99L));
+        verify(courseItemRepo, never()).save(any());
+    }
+
+    @Test
+    void testUpdateCourseItem_KeepsPosition() {
+        // Arrange
+        CourseMaterial existing = new CourseMaterial();
+        existing.setItemId(5L);
+        existing.setCourse(testCourse);
+        existing.setSortOrder(4);
+        existing.setAddDate(LocalDateTime.of(2026, 1, 1, 9, 0));
+        CourseMaterial updated = new CourseMaterial();
+        updated.setTitle("Renamed");
+        when(courseItemRepo.findById(5L)).thenReturn(Optional.of(existing));
+        when(courseItemRepo.save(any(CourseItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        CourseItem result = courseItemService.updateCourseItem(5L, updated);
+
+        // Assert
+        assertEquals(4, result.getSortOrder());
+        assertEquals(5L, result.getItemId());
+        assertEquals(existing.getAddDate(), result.getAddDate());
+    }
+
+    @Test
+    void testGetCourseOutline() {
+        // Arrange
+        List<CourseOutlineItemDTO> outline = List.of(
+                new CourseOutlineItemDTO(5L, "Slides", "CM", LocalDateTime.now()),
+                new CourseOutlineItemDTO(6L, "Quiz 1", "Q", LocalDateTime.now()));
+        when(courseItemRepo.findOutlineByCourseId(1L)).thenReturn(outline);
+
+        // Act
+        List<CourseOutlineItemDTO> result = courseItemService.getCourseOutline(1L);
+
+        // Assert
+        assertEquals(outline, result);
+        verify(courseItemRepo, never()).findByCourseCourseId(any());
+    }
+}
@@ -0,0 +1,109 @@
+package ma.emsi.emstudy.Service;
+
+import jakarta.persistence.EntityManager;
+import ma.emsi.emstudy.Entity.*;
+import ma.emsi.emstudy.Repository.CourseItemRepo;
+import ma.emsi.emstudy.Repository.CourseRepo;
+import ma.emsi.emstudy.Repository.EnrollmentRepo;
+import ma.emsi.emstudy.Repository.QuestionRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Creates courses against H2, where a join code taken by another course is rejected by the
+ * unique index on commit rather than by a mock.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CourseServiceIntegrationTest {
+
+    private static final String TAKEN = "TAKEN234";
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CourseRepo courseRepo;
+
+    @Autowired
+    private CourseItemRepo courseItemRepo;
+
+    @Autowired
+    private QuestionRepo questionRepo;
+
+    @Autowired
+    private EnrollmentRepo enrollmentRepo;
+
+    private JoinCodeService joinCodeService;
+    private CourseService courseService;
+
+    @BeforeEach
+    void setUp() {
+        joinCodeService = spy(new JoinCodeService(courseRepo, 100, Duration.ofMinutes(1)));
+        courseService = new CourseService(courseRepo, courseItemRepo, questionRepo, enrollmentRepo, joinCodeService, null);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Course existing = new Course();
+            existing.setName("Existing");
+            existing.setJoinCode(TAKEN);
+            entityManager.persist(existing);
+        });
+    }
+
+    @Test
+    void testAddCourse_InsertsWithAnotherCodeAfterACollision() {
+        // Arrange
+        // the first code is taken between the check and the insert
+        doAnswer(invocation -> {
+            invocation.<Course>getArgument(0).setJoinCode(TAKEN);
+            return null;
+        }).doCallRealMethod().when(joinCodeService).assignNewCode(any());
+        Answer answer = Answer.builder().answerText("4").Correct(true).build();
+        Question question = Question.builder().questionText("2 + 2?").answers(new ArrayList<>(List.of(answer))).build();
+        answer.setQuestion(question);
+        Quiz quiz = new Quiz();
+        quiz.setTitle("Quiz 1");
+        quiz.setQuestions(new ArrayList<>(List.of(question)));
+        question.setQuiz(quiz);
+        Course course = new Course();
+        course.setName("Algorithms");
+        course.setCourseItems(new ArrayList<>(List.of(quiz)));
+
+        // Act
+        Course saved = courseService.addCourse(course);
+
+        // Assert
+        verify(joinCodeService, times(2)).assignNewCode(course);
+        assertNotEquals(TAKEN, saved.getJoinCode());
+        assertEquals(saved.getCourseId(), joinCodeService.resolve(saved.getJoinCode()));
+        assertEquals("Algorithms", jdbcTemplate.queryForObject(
+                "select name from courses where course_id = ?", String.class, saved.getCourseId()));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from course_items where course_id = ?", Integer.class, saved.getCourseId()));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from answers a join questions q on q.question_id = a.question_id "
+                        + "where q.quiz_id = ?", Integer.class, saved.getCourseItems().get(0).getItemId()));
+    }
+}
@@ -1,11 +1,21 @@
 package ma.emsi.emstudy.Service;
 
 import jakarta.persistence.EntityNotFoundException;
+import ma.emsi.emstudy.DTO.CourseSummaryDTO;
+import ma.emsi.emstudy.DTO.CourseTreeDTO;
+import ma.emsi.emstudy.Entity.Answer;
 import ma.emsi.emstudy.Entity.Course;
 import ma.emsi.emstudy.Entity.CourseItem;
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Entity.Question;
 import ma.emsi.emstudy.Entity.Quiz;
 import ma.emsi.emstudy.Entity.Teacher;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Exception.ResourceNotFoundException;
+import ma.emsi.emstudy.Repository.CourseItemRepo;
 import ma.emsi.emstudy.Repository.CourseRepo;
+import ma.emsi.emstudy.Repository.EnrollmentRepo;
+import ma.emsi.emstudy.Repository.QuestionRepo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,8 +24,14 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.BeanUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -23,6 +39,7 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,6 +48,21 @@ class CourseServiceTest {
     @Mock
     private CourseRepo courseRepo;
 
+    @Mock
+    private CourseItemRepo courseItemRepo;
+
+    @Mock
+    private QuestionRepo questionRepo;
+
+    @Mock
+    private EnrollmentRepo enrollmentRepo;
+
+    @Mock
+    private JoinCodeService joinCodeService;
+
+    @Mock
+    private CourseDeletionService courseDeletionService;
+
     @InjectMocks
     private CourseService courseService;
 
@@ -76,6 +108,24 @@ class CourseServiceTest {
         assertEquals("Test Course", result.getName());
         assertNotNull(result.getCreationDate());
         verify(courseRepo, times(1)).save(any(Course.class));
+        verify(joinCodeService).assignNewCode(testCourse);
+        verify(joinCodeService).register(savedCourse);
+    }
+
+    @Test
+    void testAddCourse_RetriesWhenTheCodeWasTaken() {
+        // Arrange
+        when(courseRepo.save(any(Course.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_course_join_code"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        Course result = courseService.addCourse(testCourse);
+
+        // Assert
+        assertSame(testCourse, result);
+        verify(joinCodeService, times(2)).assignNewCode(testCourse);
+        verify(joinCodeService, times(1)).register(testCourse);
     }
 
     @Test
@@ -106,8 +156,9 @@ class CourseServiceTest {
         verify(courseRepo).save(courseCaptor.capture());
         Course capturedCourse = courseCaptor.getValue();
 
-        // Verify course reference is set in the items
+        // Verify course reference and position are set in the items
         assertEquals(capturedCourse, capturedCourse.getCourseItems().get(0).getCourse());
+        assertEquals(0, capturedCourse.getCourseItems().get(0).getSortOrder());
     }
 
     @Test
@@ -141,6 +192,31 @@ class CourseServiceTest {
         verify(courseRepo, times(1)).findById(courseId);
     }
 
+    @Test
+    void testGetContentETag() {
+        // Arrange
+        when(courseRepo.findContentVersion(1L)).thenReturn(Optional.of(7L));
+
+        // Act
+        String result = courseService.getContentETag(1L);
+
+        // Assert
+        assertEquals("W/\"1-7\"", result);
+        verify(courseRepo, never()).findById(any());
+    }
+
+    @Test
+    void testGetContentETag_NotFound() {
+        // Arrange
+        when(courseRepo.findContentVersion(1L)).thenReturn(Optional.empty());
+
+        // Act
+        String result = courseService.getContentETag(1L);
+
+        // Assert
+        assertNull(result);
+    }
+
     @Test
     void testGetAllTeacherCourses() {
         // Arrange
@@ -158,6 +234,47 @@ class CourseServiceTest {
         verify(courseRepo, times(1)).findByTeacherUserId(teacherId);
     }
 
+    @Test
+    void testGetTeacherCourseSummaries() {
+        // Arrange
+        Long teacherId = 1L;
+        PageRequest pageable = PageRequest.of(0, 20);
+        CourseSummaryDTO summary = new CourseSummaryDTO(1L, "Test Course", "Test Description", "ABCDEFGH",
+                LocalDate.of(2024, 1, 1), 3L, 2L, 1L,
+                LocalDateTime.of(2024, 2, 1, 10, 0), null,
+                LocalDate.of(2024, 3, 1), LocalDate.of(2024, 1, 15));
+        when(courseRepo.findSummariesByTeacher(teacherId, pageable)).thenReturn(new PageImpl<>(List.of(summary), pageable, 1));
+
+        // Act
+        Page<CourseSummaryDTO> result = courseService.getTeacherCourseSummaries(teacherId, pageable);
+
+        // Assert
+        assertEquals(1, result.getTotalElements());
+        assertEquals(3L, result.getContent().get(0).getItemCount());
+        assertEquals(LocalDateTime.of(2024, 3, 1, 0, 0), result.getContent().get(0).getLastActivity());
+        verify(courseRepo, never()).findByTeacherUserId(any());
+    }
+
+    @Test
+    void testGetTeacherCourseSummaries_SortByName() {
+        // Arrange
+        when(courseRepo.findSummariesByTeacher(eq(1L), any())).thenReturn(Page.empty());
+
+        // Act
+        courseService.getTeacherCourseSummaries(1L, PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "name")));
+
+        // Assert
+        verify(courseRepo).findSummariesByTeacher(1L, PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "Name")));
+    }
+
+    @Test
+    void testGetTeacherCourseSummaries_UnknownSortProperty() {
+        // Act & Assert
+        assertThrows(InvalidInputException.class, () -> courseService.getTeacherCourseSummaries(1L,
+                PageRequest.of(0, 20, Sort.by("teacher.password"))));
+        verify(courseRepo, never()).findSummariesByTeacher(any(), any());
+    }
+
     @Test
     void testUpdateCourse() {
         // Arrange
@@ -201,17 +318,83 @@ class CourseServiceTest {
         verify(courseRepo, never()).save(any(Course.class));
     }
 
+    @Test
+    void testGetCourseTree() {
+        // Arrange
+        testCourse.setCourseId(1L);
+        CourseMaterial material = new CourseMaterial();
+        material.setItemId(10L);
+        material.setTitle("Slides");
+        material.setUrl("slides.pdf");
+        testQuiz.setItemId(11L);
+        Question question = new Question();
+        question.setQuestionId(20L);
+        question.setQuestionText("2 + 2?");
+        question.setQuiz(testQuiz);
+        question.setAnswers(List.of(
+                Answer.builder().answerId(30L).answerText("4").Correct(true).build(),
+                Answer.builder().answerId(31L).answerText("5").build()));
+
+        when(courseRepo.findById(1L)).thenReturn(Optional.of(testCourse));
+        when(courseItemRepo.findOrderedByCourseId(1L)).thenReturn(List.of(material, testQuiz));
+        when(questionRepo.findWithAnswersByQuizIds(List.of(11L))).thenReturn(List.of(question));
+
+        // Act
+        CourseTreeDTO result = courseService.getCourseTree(1L);
+
+        // Assert
+        assertEquals("Test Course", result.getName());
+        assertEquals(2, result.getItems().size());
+        CourseTreeDTO.Item materialNode = result.getItems().get(0);
+        assertEquals("CM", materialNode.getItemType());
+        assertEquals("slides.pdf", materialNode.getUrl());
+        assertNull(materialNode.getQuestions());
+        CourseTreeDTO.Item quizNode = result.getItems().get(1);
+        assertEquals("Q", quizNode.getItemType());
+        assertEquals(30, quizNode.getDurationInMinutes());
+        assertEquals(1, quizNode.getQuestions().size());
+        assertEquals(2, quizNode.getQuestions().get(0).getAnswers().size());
+        assertTrue(quizNode.getQuestions().get(0).getAnswers().get(0).isCorrect());
+        verify(questionRepo, times(1)).findWithAnswersByQuizIds(any());
+    }
+
+    @Test
+    void testGetCourseTree_NoQuizzesSkipsQuestionQuery() {
+        // Arrange
+        testCourse.setCourseId(1L);
+        when(courseRepo.findById(1L)).thenReturn(Optional.of(testCourse));
+        when(courseItemRepo.findOrderedByCourseId(1L)).thenReturn(List.of());
+
+        // Act
+        CourseTreeDTO result = courseService.getCourseTree(1L);
+
+        // Assert
+        assertTrue(result.getItems().isEmpty());
+        verify(questionRepo, never()).findWithAnswersByQuizIds(any());
+    }
+
+    @Test
+    void testGetCourseTree_NotFound() {
+        // Arrange
+        when(courseRepo.findById(99L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> courseService.getCourseTree(99L));
+    }
+
     @Test
     void testDeleteCourse() {
         // Arrange
         Long courseId = 1L;
-        doNothing().when(courseRepo).deleteById(courseId);
+        when(courseDeletionService.deleteCourse(courseId)).thenReturn(true);
 
         // Act
         courseService.deleteCourse(courseId);
 
         // Assert
-        verify(courseRepo, times(1)).deleteById(courseId);
+        verify(courseDeletionService, times(1)).deleteCourse(courseId);
+        verify(courseRepo, never()).deleteById(any());
+        verify(joinCodeService).forget(courseId);
     }
 
     @Test
@@ -1,5 +1,6 @@
 package ma.emsi.emstudy.Service;
 
+import ma.emsi.emstudy.DTO.CursorPage;
 import ma.emsi.emstudy.Entity.Course;
 import ma.emsi.emstudy.Entity.Enrollment;
 import ma.emsi.emstudy.Entity.Student;
@@ -44,6 +45,12 @@ class EnrollmentServiceTest {
     @Mock
     private StudentService studentService;
 
+    @Mock
+    private PaginationService paginationService;
+
+    @Mock
+    private JoinCodeService joinCodeService;
+
     @InjectMocks
     private EnrollmentService enrollmentService;
 
@@ -86,7 +93,8 @@ class EnrollmentServiceTest {
     void testCreateEnrollment() {
         // Arrange
         Long studentId = 1L;
-        when(courseRepo.findByJoinCode(joinCode)).thenReturn(Optional.of(testCourse));
+        when(joinCodeService.resolve(joinCode)).thenReturn(testCourse.getCourseId());
+        when(courseRepo.getReferenceById(testCourse.getCourseId())).thenReturn(testCourse);
         when(enrollmentRepo.findByStudentUserIdAndCourse_CourseId(studentId, testCourse.getCourseId()))
                 .thenReturn(Optional.empty());
         when(studentService.getStudent(studentId)).thenReturn(testStudent);
@@ -99,7 +107,7 @@ class EnrollmentServiceTest {
         assertNotNull(result);
         assertEquals(testStudent, result.getStudent());
         assertEquals(testCourse, result.getCourse());
-        verify(courseRepo).findByJoinCode(joinCode);
+        verify(joinCodeService).resolve(joinCode);
         verify(enrollmentRepo).findByStudentUserIdAndCourse_CourseId(studentId, testCourse.getCourseId());
         verify(studentService).getStudent(studentId);
         verify(enrollmentRepo).save(any(Enrollment.class));
@@ -110,20 +118,21 @@ class EnrollmentServiceTest {
         // Arrange
         Long studentId = 1L;
         String invalidCode = "INVALID";
-        when(courseRepo.findByJoinCode(invalidCode)).thenReturn(Optional.empty());
+        when(joinCodeService.resolve(invalidCode)).thenThrow(new ResourceNotFoundException("Invalid join code"));
 
         // Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> {
             enrollmentService.createEnrollment(studentId, invalidCode);
         });
-        verify(courseRepo).findByJoinCode(invalidCode);
+        verify(joinCodeService).resolve(invalidCode);
+        verify(enrollmentRepo, never()).save(any(Enrollment.class));
     }
 
     @Test
     void testCreateEnrollment_AlreadyEnrolled() {
         // Arrange
         Long studentId = 1L;
-        when(courseRepo.findByJoinCode(joinCode)).thenReturn(Optional.of(testCourse));
+        when(joinCodeService.resolve(joinCode)).thenReturn(testCourse.getCourseId());
         when(enrollmentRepo.findByStudentUserIdAndCourse_CourseId(studentId, testCourse.getCourseId()))
                 .thenReturn(Optional.of(testEnrollment));
 
@@ -131,7 +140,7 @@ class EnrollmentServiceTest {
         assertThrows(AlreadyEnrolledException.class, () -> {
             enrollmentService.createEnrollment(studentId, joinCode);
         });
-        verify(courseRepo).findByJoinCode(joinCode);
+        verify(joinCodeService).resolve(joinCode);
         verify(enrollmentRepo).findByStudentUserIdAndCourse_CourseId(studentId, testCourse.getCourseId());
     }
 
@@ -166,16 +175,17 @@ class EnrollmentServiceTest {
     @Test
     void testGetAllEnrollments() {
         // Arrange
-        List<Enrollment> enrollments = Arrays.asList(testEnrollment);
-        when(enrollmentRepo.findAll()).thenReturn(enrollments);
+        CursorPage<Enrollment> page = new CursorPage<>(List.of(testEnrollment), "Mg");
+        when(paginationService.page(enrollmentRepo, "enrollmentId", null, 20)).thenReturn(page);
 
         // Act
-        List<Enrollment> result = enrollmentService.getAllEnrollments();
+        CursorPage<Enrollment> result = enrollmentService.getAllEnrollments(null, 20);
 
         // Assert
         assertNotNull(result);
-        assertEquals(1, result.size());
-        verify(enrollmentRepo).findAll();
+        assertEquals(1, result.getItems().size());
+        assertEquals("Mg", result.getNextCursor());
+        verify(enrollmentRepo, never()).findAll();
     }
 
     @Test
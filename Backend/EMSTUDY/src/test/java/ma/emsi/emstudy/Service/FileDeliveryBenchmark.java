@@ -0,0 +1,151 @@
+package ma.emsi.emstudy.Service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.UrlResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sending one 64 MiB material to a loopback socket that a second thread drains: the previous path
+ * (content type probed, then the file streamed through an 8 KiB buffer the way Spring copies a
+ * {@code UrlResource}), the positional reads kept for multipart ranges and connectors without
+ * sendfile, and {@code FileChannel.transferTo}, which Tomcat's sendfile uses. Next to the
+ * throughput, each iteration prints the CPU time the sending thread spent per GB, kernel time
+ * included. Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=ma.emsi.emstudy.Service.FileDeliveryBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FileDeliveryBenchmark {
+
+    private static final int FILE_SIZE = 64 * 1024 * 1024;
+    private static final double GB = 1024.0 * 1024 * 1024;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private Path file;
+    private ServerSocketChannel server;
+    private SocketChannel client;
+    private Thread drain;
+    private OutputStream socketOut;
+    private ByteBuffer buffer;
+
+    private long iterationStartCpu;
+    private long iterationFiles;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("material", ".mp4");
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(1).nextBytes(chunk);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < FILE_SIZE / chunk.length; i++) {
+                out.write(chunk);
+            }
+        }
+
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+        drain = new Thread(() -> {
+            ByteBuffer sink = ByteBuffer.allocateDirect(256 * 1024);
+            try (accepted) {
+                while (accepted.read(sink.clear()) >= 0) {
+                    // discard
+                }
+            } catch (IOException e) {
+                // closed by tearDown
+            }
+        }, "drain");
+        drain.setDaemon(true);
+        drain.start();
+        socketOut = Channels.newOutputStream(client);
+        buffer = ByteBuffer.allocate(64 * 1024);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        client.close();
+        drain.join(1000);
+        server.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        iterationStartCpu = threads.getCurrentThreadCpuTime();
+        iterationFiles = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        double cpuMs = (threads.getCurrentThreadCpuTime() - iterationStartCpu) / 1e6;
+        double gb = iterationFiles * FILE_SIZE / GB;
+        System.out.printf("%n  sending thread CPU: %.1f ms per GB (%.2f GB sent)%n", cpuMs / gb, gb);
+    }
+
+    @Benchmark
+    public long servletBufferCopy() throws IOException {
+        iterationFiles++;
+        Files.probeContentType(file);
+        try (InputStream in = new UrlResource(file.toUri()).getInputStream()) {
+            return StreamUtils.copy(in, socketOut);
+        }
+    }
+
+    @Benchmark
+    public long positionalReads() throws IOException {
+        iterationFiles++;
+        long position = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (position < FILE_SIZE) {
+                int read = channel.read(buffer.clear(), position);
+                socketOut.write(buffer.array(), 0, read);
+                position += read;
+            }
+        }
+        return position;
+    }
+
+    @Benchmark
+    public long sendfile() throws IOException {
+        iterationFiles++;
+        long position = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (position < FILE_SIZE) {
+                position += channel.transferTo(position, FILE_SIZE - position, client);
+            }
+        }
+        return position;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FileDeliveryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,258 @@
+package ma.emsi.emstudy.Service;
+
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Exception.ResourceNotFoundException;
+import ma.emsi.emstudy.Repository.CourseMaterialRepo;
+import ma.emsi.emstudy.Service.FileStorageService.FileInfo;
+import ma.emsi.emstudy.Storage.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class FileStorageServiceTest {
+
+    // SHA-256 of "hello"
+    private static final String HELLO_SHA256 = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    @Mock
+    private CourseMaterialRepo courseMaterialRepo;
+
+    private LocalStorageBackend storage;
+    private FileStorageService fileStorageService;
+
+    @TempDir
+    private Path uploadDir;
+
+    @BeforeEach
+    void setUp() {
+        storage = new LocalStorageBackend(uploadDir);
+        fileStorageService = new FileStorageService(courseMaterialRepo, storage);
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(fileStorageService, "purgeGracePeriod", Duration.ZERO);
+    }
+
+    private List<Path> storedFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    private static CourseMaterial material(String fileName) {
+        CourseMaterial material = new CourseMaterial();
+        material.setUrl("uploads/" + fileName);
+        return material;
+    }
+
+    @Test
+    void testStoreFile_KeepsMetadataOnTheMaterial() throws Exception {
+        // Arrange
+        MockMultipartFile upload = new MockMultipartFile("file", "Week 1 \"notes\".md", "text/markdown", "hello".getBytes());
+        CourseMaterial material = new CourseMaterial();
+        material.setAddDate(LocalDateTime.of(2025, 3, 1, 10, 0));
+
+        // Act
+        fileStorageService.attach(material, fileStorageService.storeFile(upload));
+        Files.delete(storage.localPath(HELLO_SHA256 + ".md"));
+        FileInfo info = fileStorageService.getMaterialFile(material);
+
+        // Assert
+        assertEquals(uploadDir + "/" + HELLO_SHA256 + ".md", material.getUrl());
+        assertEquals(5L, material.getFileSize());
+        assertEquals("text/markdown", material.getContentType());
+        assertEquals(HELLO_SHA256, material.getSha256());
+        assertEquals("Week 1 \"notes\".md", material.getOriginalFileName());
+        // served from the material alone, the file isn't looked at
+        assertEquals("\"" + HELLO_SHA256 + "\"", info.eTag());
+        assertEquals(5, info.length());
+        assertEquals("text/markdown", info.contentType());
+        assertEquals("Week 1 \"notes\".md", info.name());
+    }
+
+    @Test
+    void testGetMaterialFile_ExistingFileIsNotRead() throws Exception {
+        // Arrange
+        Path path = Files.writeString(uploadDir.resolve("old.txt"), "hello");
+        Files.setLastModifiedTime(path, FileTime.fromMillis(0x1234));
+        CourseMaterial material = material("old.txt");
+
+        // Act
+        FileInfo info = fileStorageService.getMaterialFile(material);
+
+        // Assert
+        assertEquals("5-1234", info.version());
+        assertEquals("\"5-1234\"", info.eTag());
+        assertEquals(5, info.length());
+        assertEquals("text/plain", info.contentType());
+    }
+
+    @Test
+    void testGetMaterialFile_ChangedFileGetsAnotherVersion() throws Exception {
+        // Arrange
+        Path path = Files.writeString(uploadDir.resolve("old.txt"), "hello");
+        CourseMaterial material = material("old.txt");
+        FileInfo before = fileStorageService.getMaterialFile(material);
+        Files.writeString(path, "world");
+        Files.setLastModifiedTime(path, FileTime.fromMillis(before.lastModified() + 5_000));
+
+        // Act
+        FileInfo after = fileStorageService.getMaterialFile(material);
+
+        // Assert
+        assertNotEquals(before.version(), after.version());
+    }
+
+    @Test
+    void testGetMaterialFile_MissingFile() {
+        // Arrange
+        CourseMaterial material = material("gone.pdf");
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> fileStorageService.getMaterialFile(material));
+    }
+
+    @Test
+    void testStoreFile_DuplicateContentIsStoredOnce() throws Exception {
+        // Arrange
+        MockMultipartFile first = new MockMultipartFile("file", "notes.md", "text/markdown", "hello".getBytes());
+        MockMultipartFile second = new MockMultipartFile("file", "Copy of notes.MD", "text/markdown", "hello".getBytes());
+
+        // Act
+        String firstName = fileStorageService.storeFile(first).fileName();
+        String secondName = fileStorageService.storeFile(second).fileName();
+
+        // Assert
+        assertEquals(HELLO_SHA256 + ".md", firstName);
+        assertEquals(firstName, secondName);
+        assertEquals(List.of(uploadDir.resolve("2c/f2/" + firstName)), storedFiles());
+    }
+
+    @Test
+    void testPurge_OnlyRemovesUnreferencedFiles() throws Exception {
+        // Arrange
+        String fileName = fileStorageService.storeFile(new MockMultipartFile("file", "a.pdf", "application/pdf", "hello".getBytes())).fileName();
+        String url = fileStorageService.getUrl(fileName);
+        boolean removedWhilePinned = fileStorageService.purge(url);
+        when(courseMaterialRepo.countByUrl(url)).thenReturn(1L);
+        fileStorageService.release(fileName);
+
+        // Act
+        boolean removedWhileReferenced = fileStorageService.purge(url);
+        boolean keptWhileReferenced = Files.exists(storage.localPath(fileName));
+        when(courseMaterialRepo.countByUrl(url)).thenReturn(0L);
+        fileStorageService.purge(url);
+
+        // Assert
+        assertFalse(removedWhilePinned);
+        assertFalse(removedWhileReferenced);
+        assertTrue(keptWhileReferenced);
+        assertFalse(Files.exists(storage.localPath(fileName)));
+    }
+
+    @Test
+    void testPurge_LeavesFilesAnUploadJustStoredOrFound() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(fileStorageService, "purgeGracePeriod", Duration.ofHours(1));
+        MockMultipartFile upload = new MockMultipartFile("file", "a.pdf", "application/pdf", "hello".getBytes());
+        String fileName = fileStorageService.storeFile(upload).fileName();
+        String url = fileStorageService.getUrl(fileName);
+        Path path = storage.localPath(fileName);
+        fileStorageService.release(fileName);
+        boolean removedWhenJustStored = fileStorageService.purge(url);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - Duration.ofHours(2).toMillis()));
+        // an upload on another node finding the same content
+        fileStorageService.release(fileStorageService.storeFile(upload).fileName());
+
+        // Act
+        boolean removedWhenJustFound = fileStorageService.purge(url);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - Duration.ofHours(2).toMillis()));
+        boolean removedOnceOld = fileStorageService.purge(url);
+
+        // Assert
+        assertFalse(removedWhenJustStored);
+        assertFalse(removedWhenJustFound);
+        assertTrue(removedOnceOld);
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void testPurge_RemovesDerivedFilesWithTheLastCopy() throws Exception {
+        // Arrange
+        String pngName = fileStorageService.storeFile(new MockMultipartFile("file", "a.png", "image/png", "hello".getBytes())).fileName();
+        String jpgName = fileStorageService.storeFile(new MockMultipartFile("file", "a.jpg", "image/jpeg", "hello".getBytes())).fileName();
+        Path written = Files.writeString(uploadDir.resolve(".rendition-1.tmp"), "thumb");
+        fileStorageService.storeDerived(pngName, "thumb.png", written);
+        String derivedName = fileStorageService.getDerivedName(pngName, "thumb.png");
+        Path derived = storage.localPath(derivedName);
+
+        // Act
+        fileStorageService.release(pngName);
+        fileStorageService.purge(fileStorageService.getUrl(pngName));
+        boolean keptWhileOtherCopyExists = Files.exists(derived);
+        fileStorageService.release(jpgName);
+        fileStorageService.purge(fileStorageService.getUrl(jpgName));
+
+        // Assert
+        assertEquals(HELLO_SHA256 + "-thumb.png", derivedName);
+        assertTrue(keptWhileOtherCopyExists);
+        assertFalse(Files.exists(derived));
+        assertTrue(FileStorageService.isContentAddressed(derivedName));
+        assertEquals(List.of(), storedFiles());
+    }
+
+    @Test
+    void testStoreDerived_DroppedWhenTheOriginalIsGone() throws Exception {
+        // Arrange
+        Path written = Files.writeString(uploadDir.resolve(".rendition-1.tmp"), "thumb");
+
+        // Act
+        boolean kept = fileStorageService.storeDerived(HELLO_SHA256 + ".png", "thumb.png", written);
+
+        // Assert
+        assertFalse(kept);
+        assertFalse(Files.exists(written));
+        assertNull(fileStorageService.getDerivedName("1234_legacy.png", "thumb.png"));
+    }
+
+    @Test
+    void testStoreDerived_RemovedWhenTheOriginalIsPurgedMeanwhile() throws Exception {
+        // Arrange
+        LocalStorageBackend purgedDuringPut = spy(storage);
+        FileStorageService service = new FileStorageService(courseMaterialRepo, purgedDuringPut);
+        ReflectionTestUtils.setField(service, "uploadDir", uploadDir.toString());
+        String pngName = service.storeFile(new MockMultipartFile("file", "a.png", "image/png", "hello".getBytes())).fileName();
+        doAnswer(invocation -> {
+            invocation.callRealMethod();
+            storage.delete(pngName);
+            return null;
+        }).when(purgedDuringPut).put(eq(HELLO_SHA256 + "-thumb.png"), any(Path.class));
+        Path written = Files.writeString(uploadDir.resolve(".rendition-1.tmp"), "thumb");
+
+        // Act
+        boolean kept = service.storeDerived(pngName, "thumb.png", written);
+
+        // Assert
+        assertFalse(kept);
+        assertEquals(List.of(), storedFiles());
+    }
+}
@@ -0,0 +1,291 @@
+package ma.emsi.emstudy.Service;
+
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Service.FileStorageService.FileInfo;
+import ma.emsi.emstudy.Storage.LocalStorageBackend;
+import org.apache.catalina.Globals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FileStreamingServiceTest {
+
+    private final FileStorageService fileStorageService = mock(FileStorageService.class);
+    private final PrecompressionService precompressionService = mock(PrecompressionService.class);
+
+    private FileStreamingService fileStreamingService;
+
+    @TempDir
+    private Path dir;
+
+    private FileInfo file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fileStreamingService = new FileStreamingService(fileStorageService, precompressionService, new LocalStorageBackend(dir));
+        file = describe(Files.writeString(dir.resolve("lecture.mp4"), "0123456789abcdefghij"));
+    }
+
+    private static FileInfo describe(Path path) throws Exception {
+        return new FileInfo(path.getFileName().toString(), "Lecture 1.mp4", Files.size(path), Files.getLastModifiedTime(path).toMillis(), "video/mp4", "0a1b2c");
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileStreamingService.serve(file, "inline", request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest get(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/materials/1");
+        if (range != null) {
+            request.addHeader("Range", range);
+        }
+        return request;
+    }
+
+    @Test
+    void testServe_WholeFile() throws Exception {
+        // Act
+        MockHttpServletResponse response = serve(get(null));
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals(20, response.getContentLength());
+        assertEquals("0123456789abcdefghij", response.getContentAsString());
+        assertEquals("\"0a1b2c\"", response.getHeader("ETag"));
+        assertEquals("inline; filename=\"Lecture 1.mp4\"", response.getHeader("Content-Disposition"));
+        assertNotNull(response.getHeader("Last-Modified"));
+    }
+
+    @Test
+    void testServe_SingleRange() throws Exception {
+        // Act
+        MockHttpServletResponse response = serve(get("bytes=2-5"));
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/20", response.getHeader("Content-Range"));
+        assertEquals(4, response.getContentLength());
+        assertEquals("2345", response.getContentAsString());
+    }
+
+    @Test
+    void testServe_SuffixAndOpenEndedRanges() throws Exception {
+        // Act
+        MockHttpServletResponse suffix = serve(get("bytes=-3"));
+        MockHttpServletResponse openEnded = serve(get("bytes=15-"));
+
+        // Assert
+        assertEquals("bytes 17-19/20", suffix.getHeader("Content-Range"));
+        assertEquals("hij", suffix.getContentAsString());
+        assertEquals("bytes 15-19/20", openEnded.getHeader("Content-Range"));
+        assertEquals("fghij", openEnded.getContentAsString());
+    }
+
+    @Test
+    void testServe_MultipleRanges() throws Exception {
+        // Act
+        MockHttpServletResponse response = serve(get("bytes=0-1,5-6"));
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String boundary = response.getContentType().substring(response.getContentType().indexOf('=') + 1);
+        String expected = "\r\n--" + boundary + "\r\nContent-Type: video/mp4\r\nContent-Range: bytes 0-1/20\r\n\r\n01"
+                + "\r\n--" + boundary + "\r\nContent-Type: video/mp4\r\nContent-Range: bytes 5-6/20\r\n\r\n56"
+                + "\r\n--" + boundary + "--\r\n";
+        assertEquals(expected, response.getContentAsString());
+        assertEquals(expected.length(), response.getContentLength());
+    }
+
+    @Test
+    void testServe_UnsatisfiableRange() throws Exception {
+        // Act
+        MockHttpServletResponse response = serve(get("bytes=50-60"));
+
+        // Assert
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */20", response.getHeader("Content-Range"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testServe_MalformedRangeIsIgnored() throws Exception {
+        // Act
+        MockHttpServletResponse response = serve(get("bytes=abc"));
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertEquals(20, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testServe_IfRange() throws Exception {
+        // Arrange
+        String eTag = serve(get(null)).getHeader("ETag");
+        MockHttpServletRequest current = get("bytes=2-5");
+        current.addHeader("If-Range", eTag);
+        MockHttpServletRequest changed = get("bytes=2-5");
+        changed.addHeader("If-Range", "\"something-else\"");
+
+        // Act
+        MockHttpServletResponse partial = serve(current);
+        MockHttpServletResponse whole = serve(changed);
+
+        // Assert
+        assertEquals(206, partial.getStatus());
+        assertEquals("2345", partial.getContentAsString());
+        assertEquals(200, whole.getStatus());
+        assertEquals("0123456789abcdefghij", whole.getContentAsString());
+    }
+
+    @Test
+    void testServe_NotModified() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = get(null);
+        request.addHeader("If-None-Match", serve(get(null)).getHeader("ETag"));
+
+        // Act
+        MockHttpServletResponse response = serve(request);
+
+        // Assert
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testServe_NotModifiedSince() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = get(null);
+        request.addHeader("If-Modified-Since", serve(get(null)).getHeader("Last-Modified"));
+
+        // Act
+        MockHttpServletResponse response = serve(request);
+
+        // Assert
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    void testServe_LargeFileGoesThroughSendfile() throws Exception {
+        // Arrange
+        file = describe(Files.write(dir.resolve("large.mp4"), new byte[100_000]));
+        MockHttpServletRequest request = get("bytes=1000-");
+        request.setAttribute(Globals.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+
+        // Act
+        MockHttpServletResponse response = serve(request);
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        assertEquals(99_000, response.getContentLength());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(dir.resolve("large.mp4").toAbsolutePath().toString(), request.getAttribute(Globals.SENDFILE_FILENAME_ATTR));
+        assertEquals(1000L, request.getAttribute(Globals.SENDFILE_FILE_START_ATTR));
+        assertEquals(100_000L, request.getAttribute(Globals.SENDFILE_FILE_END_ATTR));
+    }
+
+    @Test
+    void testServe_SmallFileIsCopiedEvenWithSendfile() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = get(null);
+        request.setAttribute(Globals.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+
+        // Act
+        MockHttpServletResponse response = serve(request);
+
+        // Assert
+        assertEquals("0123456789abcdefghij", response.getContentAsString());
+        assertNull(request.getAttribute(Globals.SENDFILE_FILENAME_ATTR));
+    }
+
+    @Test
+    void testServe_HeadSendsHeadersOnly() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/materials/1");
+        request.addHeader("Range", "bytes=2-5");
+
+        // Act
+        MockHttpServletResponse response = serve(request);
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        assertEquals(4, response.getContentLength());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testServeMaterial_FromTheApplication() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(fileStreamingService, "accelRedirectLocation", "");
+        CourseMaterial material = new CourseMaterial();
+        when(fileStorageService.getMaterialFile(material)).thenReturn(file);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        fileStreamingService.serve(material, "inline", get(null), response);
+
+        // Assert
+        assertEquals("0123456789abcdefghij", response.getContentAsString());
+        assertNull(response.getHeader("X-Accel-Redirect"));
+    }
+
+    @Test
+    void testServeMaterial_OffloadedToNginx() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(fileStreamingService, "accelRedirectLocation", "/protected-uploads");
+        CourseMaterial material = new CourseMaterial();
+        when(fileStorageService.getStoredFileName(material)).thenReturn("1234_week 1.pdf");
+        when(fileStorageService.getContentType(material)).thenReturn("application/pdf");
+        when(fileStorageService.getDownloadName(material)).thenReturn("Semaine 1 – cours.pdf");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        fileStreamingService.serve(material, "attachment", get("bytes=0-10"), response);
+
+        // Assert
+        assertEquals("/protected-uploads/1234_week%201.pdf", response.getHeader("X-Accel-Redirect"));
+        assertEquals("application/pdf", response.getContentType());
+        assertEquals("attachment; filename=\"=?UTF-8?Q?Semaine_1_=E2=80=93_cours.pdf?=\"; filename*=UTF-8''Semaine%201%20%E2%80%93%20cours.pdf",
+                response.getHeader("Content-Disposition"));
+        assertEquals(200, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        verify(fileStorageService, never()).getMaterialFile(any(CourseMaterial.class));
+    }
+
+    @Test
+    void testServeMaterial_GzipCopyEvenWhenOffloaded() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(fileStreamingService, "accelRedirectLocation", "/protected-uploads");
+        CourseMaterial material = new CourseMaterial();
+        MockHttpServletRequest request = get(null);
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+        Files.write(dir.resolve("0a1b2c-gz"), new byte[]{31, -117, 8});
+        when(fileStorageService.getContentType(material)).thenReturn("text/markdown");
+        when(precompressionService.getVariant(material, request)).thenReturn(new FileInfo(
+                "0a1b2c-gz", "notes.md", 3, file.lastModified(), "text/markdown", "0a1b2c", PrecompressionService.GZIP));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        fileStreamingService.serve(material, "inline", request, response);
+
+        // Assert
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals("\"0a1b2c-gzip\"", response.getHeader("ETag"));
+        assertEquals("text/markdown", response.getContentType());
+        assertEquals(3, response.getContentLength());
+        assertNull(response.getHeader("X-Accel-Redirect"));
+    }
+}
@@ -0,0 +1,188 @@
+package ma.emsi.emstudy.Service;
+
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Entity.CourseMaterialType;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Repository.CourseMaterialRepo;
+import ma.emsi.emstudy.Service.FileStorageService.FileInfo;
+import ma.emsi.emstudy.Service.FileStorageService.StoredFile;
+import ma.emsi.emstudy.Service.ImageRenditionService.Rendition;
+import ma.emsi.emstudy.Storage.LocalStorageBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ImageRenditionServiceTest {
+
+    private final CourseMaterialRepo courseMaterialRepo = mock(CourseMaterialRepo.class);
+    private LocalStorageBackend storage;
+    private FileStorageService fileStorageService;
+    private ImageRenditionService imageRenditionService;
+
+    @TempDir
+    private Path uploadDir;
+
+    @BeforeEach
+    void setUp() {
+        storage = new LocalStorageBackend(uploadDir);
+        fileStorageService = new FileStorageService(courseMaterialRepo, storage);
+        imageRenditionService = new ImageRenditionService(fileStorageService, 1, 10, 50_000_000);
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(fileStorageService, "purgeGracePeriod", Duration.ZERO);
+        // the saved material keeps its file from being purged once the upload releases it
+        when(courseMaterialRepo.countByUrl(any())).thenReturn(1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageRenditionService.shutdown();
+    }
+
+    private CourseMaterial upload(String name, String contentType, int width, int height, boolean transparent) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, transparent ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(transparent ? new Color(255, 0, 0, 128) : Color.BLUE);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.dispose();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, contentType.substring("image/".length()), bytes);
+
+        StoredFile storedFile = fileStorageService.storeFile(new MockMultipartFile("file", name, contentType, bytes.toByteArray()));
+        CourseMaterial material = new CourseMaterial();
+        material.setCourseMaterialType(CourseMaterialType.IMAGE);
+        fileStorageService.attach(material, storedFile);
+        fileStorageService.release(storedFile.fileName());
+        return material;
+    }
+
+    private void render(CourseMaterial material) throws Exception {
+        imageRenditionService.render(fileStorageService.getStoredFileName(material), material.getContentType());
+    }
+
+    private BufferedImage read(FileInfo rendition) throws Exception {
+        try (InputStream in = storage.get(rendition.key())) {
+            return ImageIO.read(in);
+        }
+    }
+
+    @Test
+    void testRender_ScalesJpegDownToBothSizes() throws Exception {
+        // Arrange
+        CourseMaterial material = upload("Photo.JPG", "image/jpeg", 4000, 3000, false);
+
+        // Act
+        render(material);
+        FileInfo thumbnail = imageRenditionService.getRendition(material, Rendition.THUMBNAIL);
+        FileInfo medium = imageRenditionService.getRendition(material, Rendition.MEDIUM);
+
+        // Assert
+        assertEquals("image/jpeg", thumbnail.contentType());
+        assertEquals("Photo-thumb.jpeg", thumbnail.name());
+        assertEquals(material.getSha256() + "-thumb.jpeg", thumbnail.key());
+        BufferedImage thumbnailImage = read(thumbnail);
+        assertEquals(320, thumbnailImage.getWidth());
+        assertEquals(240, thumbnailImage.getHeight());
+        BufferedImage mediumImage = read(medium);
+        assertEquals(1280, mediumImage.getWidth());
+        assertEquals(960, mediumImage.getHeight());
+        assertTrue(thumbnail.length() < medium.length());
+        assertNotEquals(thumbnail.eTag(), medium.eTag());
+    }
+
+    @Test
+    void testRender_PngKeepsTransparency() throws Exception {
+        // Arrange
+        CourseMaterial material = upload("diagram.png", "image/png", 500, 1000, true);
+
+        // Act
+        render(material);
+        FileInfo thumbnail = imageRenditionService.getRendition(material, Rendition.THUMBNAIL);
+        FileInfo medium = imageRenditionService.getRendition(material, Rendition.MEDIUM);
+
+        // Assert
+        assertEquals("image/png", thumbnail.contentType());
+        BufferedImage thumbnailImage = read(thumbnail);
+        assertEquals(160, thumbnailImage.getWidth());
+        assertEquals(320, thumbnailImage.getHeight());
+        assertTrue(thumbnailImage.getColorModel().hasAlpha());
+        assertEquals(128, new Color(thumbnailImage.getRGB(10, 10), true).getAlpha(), 2);
+        // already within the medium size, the original is served for it
+        assertNull(medium);
+    }
+
+    @Test
+    void testGetRendition_SmallImageHasNone() throws Exception {
+        // Arrange
+        CourseMaterial material = upload("icon.png", "image/png", 100, 100, false);
+
+        // Act
+        render(material);
+
+        // Assert
+        assertNull(imageRenditionService.getRendition(material, Rendition.THUMBNAIL));
+        assertNull(imageRenditionService.getRendition(material, Rendition.MEDIUM));
+        try (var files = Files.walk(uploadDir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void testGetRendition_NotRenderedYetQueuesIt() throws Exception {
+        // Arrange
+        CourseMaterial material = upload("photo.jpg", "image/jpeg", 800, 600, false);
+
+        // Act
+        FileInfo beforeRendering = imageRenditionService.getRendition(material, Rendition.THUMBNAIL);
+        FileInfo rendered = null;
+        for (int i = 0; i < 100 && rendered == null; i++) {
+            Thread.sleep(50);
+            rendered = imageRenditionService.getRendition(material, Rendition.THUMBNAIL);
+        }
+
+        // Assert
+        assertNull(beforeRendering);
+        assertNotNull(rendered);
+        assertEquals(320, read(rendered).getWidth());
+    }
+
+    @Test
+    void testUndecodable_OnlyCodecFailures() {
+        // Act & Assert
+        assertTrue(ImageRenditionService.undecodable(new IIOException("Unsupported JPEG process")));
+        assertTrue(ImageRenditionService.undecodable(new ArrayIndexOutOfBoundsException()));
+        assertFalse(ImageRenditionService.undecodable(new IIOException("Can't read input", new IOException("disk"))));
+        assertFalse(ImageRenditionService.undecodable(new NoSuchFileException("2cf2.png")));
+        assertFalse(ImageRenditionService.undecodable(new UncheckedIOException(new IOException("connection reset"))));
+    }
+
+    @Test
+    void testRenditionFrom() {
+        // Act & Assert
+        assertNull(Rendition.from("original"));
+        assertEquals(Rendition.THUMBNAIL, Rendition.from("thumb"));
+        assertEquals(Rendition.MEDIUM, Rendition.from("MEDIUM"));
+        assertThrows(InvalidInputException.class, () -> Rendition.from("huge"));
+    }
+}
@@ -0,0 +1,189 @@
+package ma.emsi.emstudy.Service;
+
+import ma.emsi.emstudy.DTO.JoinCodeDTO;
+import ma.emsi.emstudy.Entity.Course;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Exception.ResourceNotFoundException;
+import ma.emsi.emstudy.Repository.CourseRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JoinCodeServiceTest {
+
+    @Mock
+    private CourseRepo courseRepo;
+
+    private JoinCodeService joinCodeService;
+
+    @BeforeEach
+    void setUp() {
+        joinCodeService = new JoinCodeService(courseRepo, 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void testResolve_LoadsOnceAndNormalizes() {
+        // Arrange
+        when(courseRepo.findJoinCodeTarget("ABCD2345")).thenReturn(Optional.of(target(7L, null)));
+
+        // Act
+        Long first = joinCodeService.resolve("abcd2345");
+        Long second = joinCodeService.resolve(" ABCD2345 ");
+
+        // Assert
+        assertEquals(7L, first);
+        assertEquals(7L, second);
+        verify(courseRepo, times(1)).findJoinCodeTarget("ABCD2345");
+    }
+
+    @Test
+    void testResolve_UnknownCode() {
+        // Arrange
+        when(courseRepo.findJoinCodeTarget("ZZZZZZZZ")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> joinCodeService.resolve("ZZZZZZZZ"));
+    }
+
+    @Test
+    void testResolve_ExpiredCode() {
+        // Arrange
+        when(courseRepo.findJoinCodeTarget("ABCD2345"))
+                .thenReturn(Optional.of(target(7L, Instant.now().minusSeconds(60))));
+
+        // Act & Assert
+        assertThrows(InvalidInputException.class, () -> joinCodeService.resolve("ABCD2345"));
+    }
+
+    @Test
+    void testAssignNewCode_SkipsCodesInUse() {
+        // Arrange
+        Course course = new Course();
+        when(courseRepo.existsByJoinCode(anyString())).thenReturn(true, false);
+
+        // Act
+        joinCodeService.assignNewCode(course);
+        course.setCourseId(3L);
+        joinCodeService.register(course);
+
+        // Assert
+        assertTrue(course.getJoinCode().matches("[A-HJ-NP-Z2-9]{8}"));
+        verify(courseRepo, times(2)).existsByJoinCode(anyString());
+        assertEquals(3L, joinCodeService.resolve(course.getJoinCode()));
+        verify(courseRepo, never()).findJoinCodeTarget(anyString());
+    }
+
+    @Test
+    void testRotate_RetriesOnCollisionAndDropsOldCode() {
+        // Arrange
+        Course course = new Course();
+        course.setCourseId(3L);
+        joinCodeService.assignNewCode(course);
+        joinCodeService.register(course);
+        String oldCode = course.getJoinCode();
+        when(courseRepo.updateJoinCode(eq(3L), anyString(), any(Instant.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_course_join_code"))
+                .thenReturn(1);
+        when(courseRepo.findJoinCodeTarget(oldCode)).thenReturn(Optional.empty());
+
+        // Act
+        JoinCodeDTO result = joinCodeService.rotate(3L, Duration.ofHours(2));
+
+        // Assert
+        assertNotEquals(oldCode, result.getJoinCode());
+        assertNotNull(result.getExpiresAt());
+        assertEquals(3L, joinCodeService.resolve(result.getJoinCode()));
+        assertThrows(ResourceNotFoundException.class, () -> joinCodeService.resolve(oldCode));
+        verify(courseRepo, times(2)).updateJoinCode(eq(3L), anyString(), any(Instant.class));
+    }
+
+    @Test
+    void testRegister_InsideATransactionOnlyOnceItCommits() {
+        // Arrange
+        Course course = new Course();
+        course.setCourseId(3L);
+        joinCodeService.assignNewCode(course);
+        when(courseRepo.findJoinCodeTarget(course.getJoinCode())).thenReturn(Optional.empty());
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        try {
+            joinCodeService.register(course);
+            assertThrows(ResourceNotFoundException.class, () -> joinCodeService.resolve(course.getJoinCode()));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Assert
+        assertEquals(3L, joinCodeService.resolve(course.getJoinCode()));
+    }
+
+    @Test
+    void testResolve_ChangesOnAnotherInstanceShowOnceTheEntryExpires() {
+        // Arrange
+        JoinCodeService uncached = new JoinCodeService(courseRepo, 100, Duration.ZERO);
+        when(courseRepo.findJoinCodeTarget("ABCD2345"))
+                .thenReturn(Optional.of(target(7L, null)))
+                .thenReturn(Optional.empty());
+
+        // Act
+        Long before = uncached.resolve("ABCD2345");
+
+        // Assert
+        assertEquals(7L, before);
+        assertThrows(ResourceNotFoundException.class, () -> uncached.resolve("ABCD2345"));
+    }
+
+    @Test
+    void testForget_DropsTheCodeOfTheCourse() {
+        // Arrange
+        when(courseRepo.findJoinCodeTarget("ABCD2345"))
+                .thenReturn(Optional.of(target(7L, null)))
+                .thenReturn(Optional.empty());
+        joinCodeService.resolve("ABCD2345");
+
+        // Act
+        joinCodeService.forget(7L);
+
+        // Assert
+        assertThrows(ResourceNotFoundException.class, () -> joinCodeService.resolve("ABCD2345"));
+    }
+
+    @Test
+    void testRotate_CourseNotFound() {
+        // Arrange
+        when(courseRepo.updateJoinCode(eq(99L), anyString(), isNull())).thenReturn(0);
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> joinCodeService.rotate(99L, null));
+    }
+
+    private static CourseRepo.JoinCodeTarget target(Long courseId, Instant expiresAt) {
+        return new CourseRepo.JoinCodeTarget() {
+            @Override
+            public Long getCourseId() {
+                return courseId;
+            }
+
+            @Override
+            public Instant getExpiresAt() {
+                return expiresAt;
+            }
+        };
+    }
+}
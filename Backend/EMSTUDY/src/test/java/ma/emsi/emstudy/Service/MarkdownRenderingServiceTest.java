@@ -0,0 +1,262 @@
+package ma.emsi.emstudy.Service;
+
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Entity.CourseMaterialType;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Repository.CourseMaterialRepo;
+import ma.emsi.emstudy.Service.FileStorageService.StoredFile;
+import ma.emsi.emstudy.Service.MarkdownRenderingService.RenderedHtml;
+import ma.emsi.emstudy.Storage.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MarkdownRenderingServiceTest {
+
+    private final CourseMaterialRepo courseMaterialRepo = mock(CourseMaterialRepo.class);
+    private LocalStorageBackend storage;
+    private FileStorageService fileStorageService;
+    private MarkdownRenderingService markdownRenderingService;
+
+    @TempDir
+    private Path uploadDir;
+
+    @BeforeEach
+    void setUp() {
+        storage = new LocalStorageBackend(uploadDir);
+        fileStorageService = new FileStorageService(courseMaterialRepo, storage);
+        markdownRenderingService = new MarkdownRenderingService(fileStorageService, DataSize.ofMegabytes(1), DataSize.ofKilobytes(1));
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(fileStorageService, "purgeGracePeriod", Duration.ZERO);
+        // the saved material keeps its file from being purged once the upload releases it
+        when(courseMaterialRepo.countByUrl(any())).thenReturn(1L);
+    }
+
+    private CourseMaterial upload(String markdown) throws Exception {
+        StoredFile storedFile = fileStorageService.storeFile(
+                new MockMultipartFile("file", "notes.md", "text/markdown", markdown.getBytes(StandardCharsets.UTF_8)));
+        CourseMaterial material = new CourseMaterial();
+        material.setCourseMaterialType(CourseMaterialType.MARKDOWN);
+        fileStorageService.attach(material, storedFile);
+        fileStorageService.release(storedFile.fileName());
+        return material;
+    }
+
+    private static String html(RenderedHtml rendered) {
+        return new String(rendered.html(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testRender_Blocks() {
+        // Arrange
+        String markdown = """
+                # Week 1 #
+
+                Intro *with* **bold**, ~~old~~ and `a < b`
+                on two lines.\\
+                Forced break.
+
+                Setext
+                ------
+
+                - one
+                - two
+                  - nested
+
+                3. three
+                4. four
+
+                > quoted
+                continued
+
+                ```java
+                if (a < b) {}
+                ```
+
+                | Name | Score |
+                |:-----|------:|
+                | Ada  | 20    |
+
+                ***
+                """;
+
+        // Act
+        String html = MarkdownRenderingService.render(markdown);
+
+        // Assert
+        assertEquals("""
+                <h1>Week 1</h1>
+                <p>Intro <em>with</em> <strong>bold</strong>, <del>old</del> and <code>a &lt; b</code>
+                on two lines.<br>
+                Forced break.</p>
+                <h2>Setext</h2>
+                <ul>
+                <li>one</li>
+                <li>two
+                <ul>
+                <li>nested</li>
+                </ul></li>
+                </ul>
+                <ol start="3">
+                <li>three</li>
+                <li>four</li>
+                </ol>
+                <blockquote>
+                <p>quoted
+                continued</p>
+                </blockquote>
+                <pre><code class="language-java">if (a &lt; b) {}
+                </code></pre>
+                <table>
+                <thead>
+                <tr>
+                <th align="left">Name</th>
+                <th align="right">Score</th>
+                </tr>
+                </thead>
+                <tbody>
+                <tr>
+                <td align="left">Ada</td>
+                <td align="right">20</td>
+                </tr>
+                </tbody>
+                </table>
+                <hr>
+                """, html);
+    }
+
+    @Test
+    void testRender_LinksAndTasks() {
+        // Arrange
+        String markdown = """
+                See [the *docs*](https://example.com/a_b "Docs"), <https://example.com> and www.example.com.
+
+                ![diagram](https://example.com/d.png)
+
+                - [x] done
+                - [ ] todo
+                """;
+
+        // Act
+        String html = MarkdownRenderingService.render(markdown);
+
+        // Assert
+        assertTrue(html.contains("<a href=\"https://example.com/a_b\" title=\"Docs\" rel=\"nofollow noopener noreferrer\">the <em>docs</em></a>"), html);
+        assertTrue(html.contains("<a href=\"https://example.com\" rel=\"nofollow noopener noreferrer\">https://example.com</a>"), html);
+        assertTrue(html.contains("<a href=\"http://www.example.com\" rel=\"nofollow noopener noreferrer\">www.example.com</a>."), html);
+        assertTrue(html.contains("<img src=\"https://example.com/d.png\" alt=\"diagram\">"), html);
+        assertTrue(html.contains("<li><input type=\"checkbox\" checked disabled> done</li>"), html);
+        assertTrue(html.contains("<li><input type=\"checkbox\" disabled> todo</li>"), html);
+    }
+
+    @Test
+    void testRender_ScriptsAreNeverPassedThrough() {
+        // Arrange
+        String markdown = """
+                <script>alert(1)</script>
+
+                <img src=x onerror=alert(1)>
+
+                [click](javascript:alert(1)) [hidden](\u0001JavaScript:alert(1)) ![x](data:image/svg+xml,<svg/onload=alert(1)>)
+
+                [relative](../week2.md)
+                """;
+
+        // Act
+        String html = MarkdownRenderingService.render(markdown);
+
+        // Assert
+        assertFalse(html.contains("<script"), html);
+        assertFalse(html.contains("<img src=\"x\""), html);
+        assertFalse(html.toLowerCase().contains("javascript"), html);
+        assertFalse(html.contains("data:"), html);
+        assertTrue(html.contains("<p>click hidden x</p>"), html);
+        assertTrue(html.contains("&lt;script&gt;alert(1)&lt;/script&gt;"), html);
+        assertTrue(html.contains("<a href=\"../week2.md\" rel=\"nofollow noopener noreferrer\">relative</a>"), html);
+    }
+
+    @Test
+    void testRender_PathologicalInputInLinearTime() {
+        // Arrange
+        List<String> inputs = List.of(
+                "*a ".repeat(50_000),
+                "[".repeat(50_000),
+                "[a](".repeat(50_000),
+                "[a](<".repeat(50_000),
+                "[a](b \"".repeat(50_000),
+                "``a` ".repeat(50_000),
+                "[".repeat(20_000) + "a" + "](x)".repeat(20_000),
+                ">".repeat(20_000) + " a",
+                "- ".repeat(20_000) + "a",
+                "# a" + " ".repeat(50_000) + "b",
+                "a|b\n" + "|-".repeat(20_000));
+
+        // Act & Assert
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> inputs.forEach(MarkdownRenderer::render));
+        // a link inside a link label stays text
+        assertEquals("<p><a href=\"c\" rel=\"nofollow noopener noreferrer\">[a](b)</a></p>\n",
+                MarkdownRenderingService.render("[[a](b)](c)"));
+    }
+
+    @Test
+    void testGetHtml_RenderedOnceAndKeptOnDisk() throws Exception {
+        // Arrange
+        CourseMaterial material = upload("# Title\n");
+        Path artifact = storage.localPath(material.getSha256() + "-md1.html");
+
+        // Act
+        RenderedHtml first = markdownRenderingService.getHtml(material);
+        boolean keptOnDisk = Files.exists(artifact);
+        // a changed artifact only shows once the memory entry is gone
+        Files.writeString(artifact, "<p>from disk</p>");
+        RenderedHtml fromMemory = markdownRenderingService.getHtml(material);
+        markdownRenderingService.evict(material.getSha256());
+        RenderedHtml fromDisk = markdownRenderingService.getHtml(material);
+
+        // Assert
+        assertEquals("<h1>Title</h1>\n", html(first));
+        assertTrue(keptOnDisk);
+        assertEquals("W/\"" + material.getSha256() + "-md1.html\"", first.eTag());
+        assertEquals("<h1>Title</h1>\n", html(fromMemory));
+        assertEquals("<p>from disk</p>", html(fromDisk));
+    }
+
+    @Test
+    void testGetHtml_PurgedWithTheMarkdown() throws Exception {
+        // Arrange
+        CourseMaterial material = upload("text\n");
+        markdownRenderingService.getHtml(material);
+        when(courseMaterialRepo.countByUrl(material.getUrl())).thenReturn(0L);
+
+        // Act
+        fileStorageService.purge(material.getUrl());
+
+        // Assert
+        try (var files = Files.walk(uploadDir)) {
+            assertEquals(0, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void testGetHtml_TooLarge() throws Exception {
+        // Arrange
+        CourseMaterial material = upload("a".repeat(2048));
+
+        // Act & Assert
+        assertThrows(InvalidInputException.class, () -> markdownRenderingService.getHtml(material));
+    }
+}
@@ -0,0 +1,77 @@
+package ma.emsi.emstudy.Service;
+
+import ma.emsi.emstudy.Repository.CourseMaterialRepo;
+import ma.emsi.emstudy.Storage.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MaterialMetadataBackfillServiceTest {
+
+    // SHA-256 of "hello" and of "world"
+    private static final String HELLO_SHA256 = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+    private static final String WORLD_SHA256 = "486ea46224d1bb4fb680f34f7c9ad96a8f24ec88be73ea8e5a6c65260e9cb8a7";
+
+    private final CourseMaterialRepo courseMaterialRepo = mock(CourseMaterialRepo.class);
+
+    private LocalStorageBackend storage;
+
+    private MaterialMetadataBackfillService materialMetadataBackfillService;
+
+    @TempDir
+    private Path uploadDir;
+
+    @BeforeEach
+    void setUp() {
+        storage = new LocalStorageBackend(uploadDir);
+        FileStorageService fileStorageService = new FileStorageService(courseMaterialRepo, storage);
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+        materialMetadataBackfillService = new MaterialMetadataBackfillService(fileStorageService, courseMaterialRepo, storage);
+        when(courseMaterialRepo.replaceFile(any(), any(), anyLong(), any(), any(), any())).thenReturn(1);
+    }
+
+    private String url(String fileName) {
+        return uploadDir + "/" + fileName;
+    }
+
+    @Test
+    void testBackfill_FillsInMaterialsWithoutFileMetadata() throws Exception {
+        // Arrange
+        storage.put(HELLO_SHA256 + ".md", new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8)), 5);
+        Files.writeString(uploadDir.resolve("1111_notes.txt"), "world");
+        when(courseMaterialRepo.findUrlsWithoutFileMetadata())
+                .thenReturn(List.of(url(HELLO_SHA256 + ".md"), url("1111_notes.txt"), url("2222_missing.pdf")));
+
+        // Act
+        int materials = materialMetadataBackfillService.backfill();
+
+        // Assert
+        assertEquals(2, materials);
+        verify(courseMaterialRepo).replaceFile(url(HELLO_SHA256 + ".md"), url(HELLO_SHA256 + ".md"), 5L, HELLO_SHA256, "text/markdown", null);
+        verify(courseMaterialRepo).replaceFile(url("1111_notes.txt"), url("1111_notes.txt"), 5L, WORLD_SHA256, "text/plain", null);
+        verify(courseMaterialRepo, never()).replaceFile(eq(url("2222_missing.pdf")), any(), anyLong(), any(), any(), any());
+    }
+
+    @Test
+    void testRun_DisabledLeavesMaterialsAlone() {
+        // Arrange
+        ReflectionTestUtils.setField(materialMetadataBackfillService, "backfillOnStartup", false);
+
+        // Act
+        materialMetadataBackfillService.run(null);
+
+        // Assert
+        verifyNoInteractions(courseMaterialRepo);
+    }
+}
@@ -0,0 +1,103 @@
+package ma.emsi.emstudy.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import ma.emsi.emstudy.DTO.CursorPage;
+import ma.emsi.emstudy.Entity.Enrollment;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Repository.EnrollmentRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaginationServiceTest {
+
+    @Mock
+    private EnrollmentRepo enrollmentRepo;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PaginationService paginationService;
+
+    @BeforeEach
+    void setUp() {
+        paginationService = new PaginationService(entityManager, new ObjectMapper(), transactionManager, 2, 3, 2);
+    }
+
+    private static Enrollment enrollment(long id) {
+        Enrollment enrollment = new Enrollment();
+        enrollment.setEnrollmentId(id);
+        return enrollment;
+    }
+
+    private static Window<Enrollment> window(List<Enrollment> content, boolean hasNext) {
+        return Window.from(content,
+                index -> ScrollPosition.forward(Map.of("enrollmentId", content.get(index).getEnrollmentId())),
+                hasNext);
+    }
+
+    @Test
+    void testPage_CursorRoundTrip() {
+        // Arrange
+        when(enrollmentRepo.findAllBy(any(), eq(Sort.by("enrollmentId")), eq(Limit.of(2))))
+                .thenReturn(window(List.of(enrollment(1), enrollment(2)), true))
+                .thenReturn(window(List.of(enrollment(3)), false));
+
+        // Act
+        CursorPage<Enrollment> first = paginationService.page(enrollmentRepo, "enrollmentId", null, null);
+        CursorPage<Enrollment> second = paginationService.page(enrollmentRepo, "enrollmentId", first.getNextCursor(), null);
+
+        // Assert
+        assertEquals(2, first.getItems().size());
+        assertNotNull(first.getNextCursor());
+        assertEquals(1, second.getItems().size());
+        assertNull(second.getNextCursor());
+
+        ArgumentCaptor<ScrollPosition> positions = ArgumentCaptor.forClass(ScrollPosition.class);
+        verify(enrollmentRepo, times(2)).findAllBy(positions.capture(), any(), any());
+        assertTrue(positions.getAllValues().get(0).isInitial());
+        assertEquals(2L, ((KeysetScrollPosition) positions.getAllValues().get(1)).getKeys().get("enrollmentId"));
+    }
+
+    @Test
+    void testPage_SizeIsCapped() {
+        // Arrange
+        when(enrollmentRepo.findAllBy(any(), any(), eq(Limit.of(3)))).thenReturn(window(List.of(), false));
+
+        // Act
+        paginationService.page(enrollmentRepo, "enrollmentId", null, 1000);
+
+        // Assert
+        verify(enrollmentRepo).findAllBy(any(), any(), eq(Limit.of(3)));
+    }
+
+    @Test
+    void testPage_InvalidCursor() {
+        // Act & Assert
+        assertThrows(InvalidInputException.class,
+                () -> paginationService.page(enrollmentRepo, "enrollmentId", "not a cursor!", null));
+        verifyNoInteractions(enrollmentRepo);
+    }
+}
@@ -0,0 +1,163 @@
+package ma.emsi.emstudy.Service;
+
+import ma.emsi.emstudy.Entity.CourseMaterial;
+import ma.emsi.emstudy.Entity.CourseMaterialType;
+import ma.emsi.emstudy.Repository.CourseMaterialRepo;
+import ma.emsi.emstudy.Service.FileStorageService.FileInfo;
+import ma.emsi.emstudy.Service.FileStorageService.StoredFile;
+import ma.emsi.emstudy.Storage.LocalStorageBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PrecompressionServiceTest {
+
+    private final CourseMaterialRepo courseMaterialRepo = mock(CourseMaterialRepo.class);
+    private LocalStorageBackend storage;
+    private FileStorageService fileStorageService;
+    private PrecompressionService precompressionService;
+
+    @TempDir
+    private Path uploadDir;
+
+    @BeforeEach
+    void setUp() {
+        storage = new LocalStorageBackend(uploadDir);
+        fileStorageService = new FileStorageService(courseMaterialRepo, storage);
+        precompressionService = new PrecompressionService(fileStorageService, 1, 10, DataSize.ofKilobytes(1));
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(fileStorageService, "purgeGracePeriod", Duration.ZERO);
+        // the saved material keeps its file from being purged once the upload releases it
+        when(courseMaterialRepo.countByUrl(any())).thenReturn(1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        precompressionService.shutdown();
+    }
+
+    private CourseMaterial upload(String content) throws Exception {
+        StoredFile storedFile = fileStorageService.storeFile(
+                new MockMultipartFile("file", "notes.md", "text/markdown", content.getBytes(StandardCharsets.UTF_8)));
+        CourseMaterial material = new CourseMaterial();
+        material.setCourseMaterialType(CourseMaterialType.MARKDOWN);
+        fileStorageService.attach(material, storedFile);
+        fileStorageService.release(storedFile.fileName());
+        return material;
+    }
+
+    private static MockHttpServletRequest get(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/materials/1");
+        request.addHeader("Accept-Encoding", acceptEncoding);
+        return request;
+    }
+
+    @Test
+    void testCompress_KeepsSmallerGzipCopy() throws Exception {
+        // Arrange
+        String content = "# Week 1\n\nThe same paragraph, over and over.\n".repeat(200);
+        CourseMaterial material = upload(content);
+
+        // Act
+        precompressionService.compress(fileStorageService.getStoredFileName(material));
+        FileInfo variant = precompressionService.getVariant(material, get("gzip, br"));
+
+        // Assert
+        assertEquals(material.getSha256() + "-gz", variant.key());
+        assertEquals("gzip", variant.contentEncoding());
+        assertEquals("text/markdown", variant.contentType());
+        assertEquals("notes.md", variant.name());
+        assertTrue(variant.length() < content.length() / 10);
+        assertEquals("\"" + material.getSha256() + "-gzip\"", variant.eTag());
+        try (InputStream in = new GZIPInputStream(storage.get(variant.key()))) {
+            assertEquals(content, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testCompress_SmallFileIsLeftAlone() throws Exception {
+        // Arrange
+        CourseMaterial material = upload("# Short\n");
+
+        // Act
+        precompressionService.compress(fileStorageService.getStoredFileName(material));
+
+        // Assert
+        assertNull(precompressionService.getVariant(material, get("gzip")));
+        try (var files = Files.walk(uploadDir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void testGetVariant_NotForRangesOrClientsWithoutGzip() throws Exception {
+        // Arrange
+        CourseMaterial material = upload("line of notes\n".repeat(500));
+        precompressionService.compress(fileStorageService.getStoredFileName(material));
+        MockHttpServletRequest range = get("gzip");
+        range.addHeader("Range", "bytes=0-99");
+
+        // Act & Assert
+        assertNotNull(precompressionService.getVariant(material, get("gzip")));
+        assertNull(precompressionService.getVariant(material, range));
+        assertNull(precompressionService.getVariant(material, get("identity")));
+        assertNull(precompressionService.getVariant(material, get("gzip;q=0, *")));
+    }
+
+    @Test
+    void testGetVariant_PurgedWithTheFile() throws Exception {
+        // Arrange
+        CourseMaterial material = upload("line of notes\n".repeat(500));
+        precompressionService.compress(fileStorageService.getStoredFileName(material));
+        when(courseMaterialRepo.countByUrl(material.getUrl())).thenReturn(0L);
+
+        // Act
+        fileStorageService.purge(material.getUrl());
+
+        // Assert
+        try (var files = Files.walk(uploadDir)) {
+            assertEquals(0, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void testAcceptsGzip() {
+        // Act & Assert
+        assertTrue(PrecompressionService.acceptsGzip("gzip, deflate, br"));
+        assertTrue(PrecompressionService.acceptsGzip("x-gzip"));
+        assertTrue(PrecompressionService.acceptsGzip("br;q=1.0, *;q=0.5"));
+        assertTrue(PrecompressionService.acceptsGzip("GZIP; Q=0.8"));
+        assertFalse(PrecompressionService.acceptsGzip(null));
+        assertFalse(PrecompressionService.acceptsGzip("identity"));
+        assertFalse(PrecompressionService.acceptsGzip("gzip;q=0, *"));
+        assertFalse(PrecompressionService.acceptsGzip("*;q=0"));
+    }
+
+    @Test
+    void testIsCompressible() {
+        // Act & Assert
+        assertTrue(PrecompressionService.isCompressible("text/markdown; charset=UTF-8"));
+        assertTrue(PrecompressionService.isCompressible("image/svg+xml"));
+        assertTrue(PrecompressionService.isCompressible("application/json"));
+        assertFalse(PrecompressionService.isCompressible("application/pdf"));
+        assertFalse(PrecompressionService.isCompressible("video/mp4"));
+        assertFalse(PrecompressionService.isCompressible(null));
+    }
+}
@@ -0,0 +1,214 @@
+package ma.emsi.emstudy.Service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import ma.emsi.emstudy.DTO.StudentImportResult;
+import ma.emsi.emstudy.DTO.StudentImportResult.Status;
+import ma.emsi.emstudy.Entity.Course;
+import ma.emsi.emstudy.Entity.Enrollment;
+import ma.emsi.emstudy.Entity.Student;
+import ma.emsi.emstudy.Entity.Teacher;
+import ma.emsi.emstudy.Exception.ForbiddenAccessException;
+import ma.emsi.emstudy.Exception.InvalidInputException;
+import ma.emsi.emstudy.Repository.CourseRepo;
+import ma.emsi.emstudy.Repository.EnrollmentRepo;
+import ma.emsi.emstudy.Repository.UserRepo;
+import ma.emsi.emstudy.Security.BoundedPasswordEncoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StudentImportServiceTest {
+
+    @Mock
+    private UserRepo userRepo;
+
+    @Mock
+    private CourseRepo courseRepo;
+
+    @Mock
+    private EnrollmentRepo enrollmentRepo;
+
+    @Mock
+    private JoinCodeService joinCodeService;
+
+    @Mock
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @InjectMocks
+    private StudentImportService studentImportService;
+
+    private Course testCourse;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(studentImportService, "chunkSize", 2);
+
+        Teacher teacher = new Teacher();
+        teacher.setUserId(10L);
+        testCourse = new Course();
+        testCourse.setCourseId(5L);
+        testCourse.setTeacher(teacher);
+        testCourse.setJoinCode("ABCDEFGH");
+    }
+
+    private void stubPersistence() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(passwordEncoder.encodeAll(anyList())).thenAnswer(invocation -> invocation.<List<String>>getArgument(0)
+                .stream().map(raw -> "hashed-" + raw).toList());
+    }
+
+    private static InputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testImportStudents() throws Exception {
+        // Arrange
+        stubPersistence();
+        UserRepo.EmailOwner existing = mock(UserRepo.EmailOwner.class);
+        when(existing.getEmail()).thenReturn("Taken@example.com");
+        when(existing.getUserId()).thenReturn(7L);
+        when(existing.getRole()).thenReturn("Student");
+        when(userRepo.findEmailOwners(anyList())).thenReturn(List.of(existing)).thenReturn(List.of());
+        String content = """
+                username,email,password,studentGroup
+                alice,alice@example.com,secret,G1
+                bob,taken@example.com,secret,G1
+                "Doe, Carl",carl@example.com,"p,w",G2
+                nobody,not-an-email,secret,G2
+                alice2,ALICE@example.com,secret,G1
+                """;
+
+        // Act
+        StudentImportResult result = studentImportService.importStudents(10L, csv(content), null);
+
+        // Assert
+        assertEquals(2, result.getCreated());
+        assertEquals(1, result.getExisting());
+        assertEquals(2, result.getFailed());
+        assertEquals(List.of(Status.CREATED, Status.EXISTING, Status.CREATED, Status.INVALID, Status.DUPLICATE),
+                result.getRows().stream().map(StudentImportResult.Row::getStatus).toList());
+        assertEquals(7L, result.getRows().get(1).getUserId());
+
+        ArgumentCaptor<Object> persisted = ArgumentCaptor.forClass(Object.class);
+        verify(entityManager, times(2)).persist(persisted.capture());
+        Student carl = (Student) persisted.getAllValues().get(1);
+        assertEquals("Doe, Carl", carl.getUsername());
+        assertEquals("hashed-p,w", carl.getPassword());
+        assertEquals("G2", carl.getStudentGroup());
+        verify(userRepo, times(2)).findEmailOwners(anyList());
+        verify(entityManager, times(2)).flush();
+    }
+
+    @Test
+    void testImportStudents_EnrollsNewAndExistingStudents() throws Exception {
+        // Arrange
+        stubPersistence();
+        when(joinCodeService.resolve("ABCDEFGH")).thenReturn(5L);
+        when(courseRepo.existsByTeacherUserIdAndCourseId(10L, 5L)).thenReturn(true);
+        when(entityManager.getReference(Course.class, 5L)).thenReturn(testCourse);
+        UserRepo.EmailOwner existing = mock(UserRepo.EmailOwner.class);
+        when(existing.getEmail()).thenReturn("old@example.com");
+        when(existing.getUserId()).thenReturn(7L);
+        when(existing.getRole()).thenReturn("Student");
+        when(userRepo.findEmailOwners(anyList())).thenReturn(List.of(existing));
+        when(enrollmentRepo.findEnrolledStudentIds(5L, List.of(7L))).thenReturn(Set.of());
+        String content = """
+                username,email,password
+                new,new@example.com,secret
+                old,old@example.com,secret
+                """;
+
+        // Act
+        StudentImportResult result = studentImportService.importStudents(10L, csv(content), "ABCDEFGH");
+
+        // Assert
+        assertEquals(2, result.getEnrolled());
+        ArgumentCaptor<Object> persisted = ArgumentCaptor.forClass(Object.class);
+        verify(entityManager, times(3)).persist(persisted.capture());
+        assertEquals(2, persisted.getAllValues().stream().filter(Enrollment.class::isInstance).count());
+        verify(entityManager).getReference(Student.class, 7L);
+    }
+
+    @Test
+    void testImportStudents_ChunkThatCannotBeSavedFails() throws Exception {
+        // Arrange
+        stubPersistence();
+        when(joinCodeService.resolve("ABCDEFGH")).thenReturn(5L);
+        when(courseRepo.existsByTeacherUserIdAndCourseId(10L, 5L)).thenReturn(true);
+        when(entityManager.getReference(Course.class, 5L)).thenReturn(testCourse);
+        UserRepo.EmailOwner existing = mock(UserRepo.EmailOwner.class);
+        when(existing.getEmail()).thenReturn("old@example.com");
+        when(existing.getUserId()).thenReturn(7L);
+        when(existing.getRole()).thenReturn("Student");
+        when(userRepo.findEmailOwners(anyList())).thenReturn(List.of(existing));
+        when(enrollmentRepo.findEnrolledStudentIds(5L, List.of(7L))).thenReturn(Set.of());
+        // the username was taken between the check and the insert
+        doThrow(new PersistenceException("uk_users_username")).when(entityManager).flush();
+        String content = """
+                username,email,password
+                new,new@example.com,secret
+                old,old@example.com,secret
+                """;
+
+        // Act
+        StudentImportResult result = studentImportService.importStudents(10L, csv(content), "ABCDEFGH");
+
+        // Assert
+        assertEquals(0, result.getCreated());
+        assertEquals(1, result.getFailed());
+        assertEquals(0, result.getEnrolled());
+        StudentImportResult.Row failed = result.getRows().stream()
+                .filter(row -> row.getStatus() == Status.FAILED).findFirst().orElseThrow();
+        assertEquals("new@example.com", failed.getEmail());
+        assertFalse(failed.isEnrolled());
+        assertTrue(result.getRows().stream().noneMatch(StudentImportResult.Row::isEnrolled));
+    }
+
+    @Test
+    void testImportStudents_CourseOfAnotherTeacher() {
+        // Arrange
+        when(joinCodeService.resolve("ABCDEFGH")).thenReturn(5L);
+        when(courseRepo.existsByTeacherUserIdAndCourseId(99L, 5L)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(ForbiddenAccessException.class,
+                () -> studentImportService.importStudents(99L, csv("username,email,password\n"), "ABCDEFGH"));
+    }
+
+    @Test
+    void testImportStudents_MissingColumn() {
+        // Act & Assert
+        assertThrows(InvalidInputException.class,
+                () -> studentImportService.importStudents(10L, csv("username,email\nalice,alice@example.com\n"), null));
+        verifyNoInteractions(userRepo, transactionTemplate);
+    }
+}
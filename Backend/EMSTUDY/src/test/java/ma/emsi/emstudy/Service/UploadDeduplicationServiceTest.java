@@ -0,0 +1,135 @@
+package ma.emsi.emstudy.Service;
+
+import ma.emsi.emstudy.Repository.CourseMaterialRepo;
+import ma.emsi.emstudy.Service.UploadDeduplicationService.Report;
+import ma.emsi.emstudy.Storage.LocalStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UploadDeduplicationServiceTest {
+
+    // SHA-256 of "hello" and of "world"
+    private static final String HELLO_SHA256 = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+    private static final String WORLD_SHA256 = "486ea46224d1bb4fb680f34f7c9ad96a8f24ec88be73ea8e5a6c65260e9cb8a7";
+
+    private final CourseMaterialRepo courseMaterialRepo = mock(CourseMaterialRepo.class);
+
+    private FileStorageService fileStorageService;
+
+    private UploadDeduplicationService uploadDeduplicationService;
+
+    @TempDir
+    private Path uploadDir;
+
+    @BeforeEach
+    void setUp() {
+        LocalStorageBackend storage = new LocalStorageBackend(uploadDir);
+        fileStorageService = new FileStorageService(courseMaterialRepo, storage);
+        uploadDeduplicationService = new UploadDeduplicationService(fileStorageService, courseMaterialRepo, storage);
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(fileStorageService, "purgeGracePeriod", Duration.ZERO);
+        ReflectionTestUtils.setField(uploadDeduplicationService, "uploadDir", uploadDir.toString());
+    }
+
+    private String url(String fileName) {
+        return uploadDir + "/" + fileName;
+    }
+
+    // paths relative to the upload directory, content-addressed files being sharded
+    private Set<String> storedFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            return files.filter(Files::isRegularFile)
+                    .map(file -> uploadDir.relativize(file).toString().replace('\\', '/'))
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    @Test
+    void testDeduplicate_MergesCopiesAndRewritesUrls() throws Exception {
+        // Arrange
+        Files.writeString(uploadDir.resolve("1111_notes.md"), "hello");
+        Files.writeString(uploadDir.resolve("2222_notes (copy).md"), "hello");
+        Files.writeString(uploadDir.resolve("3333_slides.PDF"), "world");
+        Files.writeString(uploadDir.resolve(".upload-42.tmp"), "partial");
+
+        // Act
+        Report report = uploadDeduplicationService.deduplicate();
+
+        // Assert
+        assertEquals(new Report(3, 1, 5, 0), report);
+        assertEquals(Set.of("2c/f2/" + HELLO_SHA256 + ".md", "48/6e/" + WORLD_SHA256 + ".pdf", ".upload-42.tmp"), storedFiles());
+        assertEquals("hello", Files.readString(uploadDir.resolve("2c/f2/" + HELLO_SHA256 + ".md")));
+        verify(courseMaterialRepo).replaceFile(url("1111_notes.md"), url(HELLO_SHA256 + ".md"),
+                5, HELLO_SHA256, "text/markdown", "1111_notes.md");
+        verify(courseMaterialRepo).replaceFile(url("2222_notes (copy).md"), url(HELLO_SHA256 + ".md"),
+                5, HELLO_SHA256, "text/markdown", "2222_notes (copy).md");
+        verify(courseMaterialRepo).replaceFile(url("3333_slides.PDF"), url(WORLD_SHA256 + ".pdf"),
+                5, WORLD_SHA256, "application/pdf", "3333_slides.PDF");
+    }
+
+    @Test
+    void testDeduplicate_KeepsTheOriginalNameOfUuidPrefixedFiles() throws Exception {
+        // Arrange
+        Files.writeString(uploadDir.resolve("0b7cbd3c-6ae4-4f0c-9a4e-2f8f1f0a9c55_Week 1.md"), "hello");
+
+        // Act
+        uploadDeduplicationService.deduplicate();
+
+        // Assert
+        verify(courseMaterialRepo).replaceFile(url("0b7cbd3c-6ae4-4f0c-9a4e-2f8f1f0a9c55_Week 1.md"), url(HELLO_SHA256 + ".md"),
+                5, HELLO_SHA256, "text/markdown", "Week 1.md");
+    }
+
+    @Test
+    void testDeduplicate_SkipsMigratedFiles() throws Exception {
+        // Arrange
+        Files.createDirectories(uploadDir.resolve("48/6e"));
+        Files.writeString(uploadDir.resolve("48/6e/" + WORLD_SHA256 + ".pdf"), "world");
+
+        // Act
+        Report report = uploadDeduplicationService.deduplicate();
+
+        // Assert
+        assertEquals(new Report(0, 0, 0, 0), report);
+        assertEquals(Set.of("48/6e/" + WORLD_SHA256 + ".pdf"), storedFiles());
+        verifyNoInteractions(courseMaterialRepo);
+    }
+
+    @Test
+    void testDeduplicate_MovesFilesStoredBeforeSharding() throws Exception {
+        // Arrange
+        Files.writeString(uploadDir.resolve(HELLO_SHA256 + ".md"), "hello");
+
+        // Act
+        Report report = uploadDeduplicationService.deduplicate();
+
+        // Assert
+        assertEquals(new Report(0, 0, 0, 1), report);
+        assertEquals(Set.of("2c/f2/" + HELLO_SHA256 + ".md"), storedFiles());
+        verifyNoInteractions(courseMaterialRepo);
+    }
+
+    @Test
+    void testRun_DisabledByDefault() throws Exception {
+        // Arrange
+        Files.writeString(uploadDir.resolve("1111_notes.md"), "hello");
+
+        // Act
+        uploadDeduplicationService.run(null);
+
+        // Assert
+        assertEquals(Set.of("1111_notes.md"), storedFiles());
+    }
+}
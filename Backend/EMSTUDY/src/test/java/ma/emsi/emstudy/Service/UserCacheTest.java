@@ -0,0 +1,98 @@
+package ma.emsi.emstudy.Service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ma.emsi.emstudy.Entity.Student;
+import ma.emsi.emstudy.Entity.User;
+import ma.emsi.emstudy.Repository.UserRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserCacheTest {
+
+    @Mock
+    private UserRepo userRepo;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserCache userCache;
+    private Student testStudent;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userCache = new UserCache(userRepo, meterRegistry, 100, Duration.ofMinutes(10));
+
+        testStudent = new Student();
+        testStudent.setUserId(1L);
+        testStudent.setEmail("student@example.com");
+    }
+
+    @Test
+    void testFindByEmail_LoadsOnce() {
+        // Arrange
+        when(userRepo.findByEmail("student@example.com")).thenReturn(Optional.of(testStudent));
+
+        // Act
+        Optional<User> first = userCache.findByEmail("student@example.com");
+        Optional<User> second = userCache.findByEmail("student@example.com");
+        Optional<User> byId = userCache.findById(1L);
+
+        // Assert
+        assertSame(testStudent, first.orElseThrow());
+        assertSame(testStudent, second.orElseThrow());
+        assertSame(testStudent, byId.orElseThrow());
+        verify(userRepo, times(1)).findByEmail("student@example.com");
+        verify(userRepo, never()).findById(any());
+    }
+
+    @Test
+    void testFindById_RecordsHitsAndMisses() {
+        // Arrange
+        when(userRepo.findById(1L)).thenReturn(Optional.of(testStudent));
+
+        // Act
+        userCache.findById(1L);
+        userCache.findById(1L);
+
+        // Assert
+        verify(userRepo, times(1)).findById(1L);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users.byId").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users.byId").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void testFindById_UnknownUserIsNotCached() {
+        // Arrange
+        when(userRepo.findById(2L)).thenReturn(Optional.empty());
+
+        // Act
+        assertTrue(userCache.findById(2L).isEmpty());
+        assertTrue(userCache.findById(2L).isEmpty());
+
+        // Assert
+        verify(userRepo, times(2)).findById(2L);
+    }
+
+    @Test
+    void testInvalidate() {
+        // Arrange
+        when(userRepo.findByEmail("student@example.com")).thenReturn(Optional.of(testStudent));
+        userCache.findByEmail("student@example.com");
+
+        // Act
+        userCache.invalidate(1L);
+        userCache.findByEmail("student@example.com");
+
+        // Assert
+        verify(userRepo, times(2)).findByEmail("student@example.com");
+    }
+}
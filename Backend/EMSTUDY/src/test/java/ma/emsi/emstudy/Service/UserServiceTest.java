@@ -4,6 +4,7 @@ import ma.emsi.emstudy.Entity.Student;
 import ma.emsi.emstudy.Entity.Teacher;
 import ma.emsi.emstudy.Entity.User;
 import ma.emsi.emstudy.Repository.UserRepo;
+import ma.emsi.emstudy.Security.TokenRevocationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -30,6 +31,12 @@ class UserServiceTest {
     @Mock
     private BCryptPasswordEncoder passwordEncoder;
 
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    @Mock
+    private UserCache userCache;
+
     @InjectMocks
     private UserService userService;
 
@@ -70,6 +77,7 @@ class UserServiceTest {
         assertEquals("encodedPassword", result.getPassword());
         verify(passwordEncoder).encode("password");
         verify(userRepo).save(any(Student.class));
+        verify(userCache).invalidate(result);
     }
 
     @Test
@@ -142,6 +150,8 @@ class UserServiceTest {
         userService.deleteUser(userId);
 
         // Assert
+        verify(tokenRevocationService).revokeAllTokens(userId);
         verify(userRepo).deleteById(userId);
+        verify(userCache).invalidate(userId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package ma.emsi.emstudy.Storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalStorageBackendTest {
+
+    // SHA-256 of "hello"
+    private static final String HELLO_SHA256 = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    @TempDir
+    private Path root;
+
+    private LocalStorageBackend storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new LocalStorageBackend(root);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testPut_ShardsContentAddressedKeys() throws Exception {
+        // Arrange
+        Path upload = Files.writeString(root.resolve(".upload-1.tmp"), "hello");
+
+        // Act
+        storage.put(HELLO_SHA256 + ".md", upload);
+        storage.put(HELLO_SHA256 + "-gz", new ByteArrayInputStream(new byte[]{1, 2, 3}), 3);
+        storage.put("1234_legacy.md", new ByteArrayInputStream(new byte[0]), 0);
+
+        // Assert
+        assertFalse(Files.exists(upload));
+        assertEquals(root.resolve("2c/f2/" + HELLO_SHA256 + ".md"), storage.localPath(HELLO_SHA256 + ".md"));
+        assertEquals("hello", Files.readString(root.resolve("2c/f2/" + HELLO_SHA256 + ".md")));
+        assertEquals(3, Files.size(root.resolve("2c/f2/" + HELLO_SHA256 + "-gz")));
+        assertTrue(Files.exists(root.resolve("1234_legacy.md")));
+        assertEquals(new StorageBackend.ObjectInfo(5, Files.getLastModifiedTime(storage.localPath(HELLO_SHA256 + ".md")).toMillis()),
+                storage.stat(HELLO_SHA256 + ".md"));
+    }
+
+    @Test
+    void testGet_Range() throws Exception {
+        // Arrange
+        storage.put("notes.txt", new ByteArrayInputStream("0123456789".getBytes(StandardCharsets.UTF_8)), 10);
+
+        // Act & Assert
+        assertEquals("0123456789", read(storage.get("notes.txt")));
+        assertEquals("2345", read(storage.get("notes.txt", 2, 4)));
+        assertEquals("89", read(storage.get("notes.txt", 8, 100)));
+        assertThrows(NoSuchFileException.class, () -> storage.get("missing.txt"));
+        assertNull(storage.stat("missing.txt"));
+    }
+
+    @Test
+    void testList_FileAndItsDerivedFiles() throws Exception {
+        // Arrange
+        storage.put(HELLO_SHA256 + ".png", new ByteArrayInputStream(new byte[]{1}), 1);
+        storage.put(HELLO_SHA256 + "-thumb.png", new ByteArrayInputStream(new byte[]{1}), 1);
+        storage.put("1234_legacy.png", new ByteArrayInputStream(new byte[]{1}), 1);
+        Files.writeString(root.resolve(".upload-2.tmp"), "partial");
+
+        // Act
+        List<String> derived = storage.list(HELLO_SHA256);
+        List<String> all = storage.list("");
+
+        // Assert
+        assertEquals(List.of(HELLO_SHA256 + "-thumb.png", HELLO_SHA256 + ".png"), derived.stream().sorted().toList());
+        assertEquals(List.of("1234_legacy.png", HELLO_SHA256 + "-thumb.png", HELLO_SHA256 + ".png"), all.stream().sorted().toList());
+    }
+
+    @Test
+    void testTouch() throws Exception {
+        // Arrange
+        storage.put(HELLO_SHA256 + ".md", new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8)), 5);
+        Path path = storage.localPath(HELLO_SHA256 + ".md");
+        Files.setLastModifiedTime(path, FileTime.fromMillis(0));
+
+        // Act
+        boolean touched = storage.touch(HELLO_SHA256 + ".md");
+        boolean touchedMissing = storage.touch("missing.txt");
+
+        // Assert
+        assertTrue(touched);
+        assertFalse(touchedMissing);
+        assertTrue(storage.stat(HELLO_SHA256 + ".md").lastModified() > 0);
+        assertEquals("hello", Files.readString(path));
+    }
+
+    @Test
+    void testDelete() throws Exception {
+        // Arrange
+        storage.put(HELLO_SHA256, new ByteArrayInputStream(new byte[]{1}), 1);
+
+        // Act
+        storage.delete(HELLO_SHA256);
+        storage.delete(HELLO_SHA256);
+
+        // Assert
+        assertNull(storage.stat(HELLO_SHA256));
+    }
+
+    @Test
+    void testShardFlatFiles_MovesFilesStoredAtTheTop() throws Exception {
+        // Arrange
+        Files.writeString(root.resolve(HELLO_SHA256 + ".md"), "hello");
+        Files.writeString(root.resolve("1234_legacy.md"), "legacy");
+
+        // Act
+        storage.shardFlatFiles();
+
+        // Assert
+        assertFalse(Files.exists(root.resolve(HELLO_SHA256 + ".md")));
+        assertEquals("hello", read(storage.get(HELLO_SHA256 + ".md")));
+        assertTrue(Files.exists(root.resolve("1234_legacy.md")));
+    }
+
+    @Test
+    void testRejectsInvalidKeysAndShortContent() throws Exception {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> storage.get("../etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> storage.stat(".upload-1.tmp"));
+        assertThrows(IOException.class,
+                () -> storage.put("short.txt", new ByteArrayInputStream(new byte[2]), 3));
+        assertNull(storage.stat("short.txt"));
+    }
+}
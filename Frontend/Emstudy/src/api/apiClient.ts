@@ -1,7 +1,10 @@
-import axios from "axios";
+import axios, { AxiosError, InternalAxiosRequestConfig } from "axios";
+
+// "/api" behind the nginx of the Docker image, the backend itself in development
+const BASE_URL = import.meta.env.VITE_API_URL ?? "http://localhost:8080";
 
 const api = axios.create({
-  baseURL: "http://localhost:8080",
+  baseURL: BASE_URL,
 });
 
 api.interceptors.request.use((config) => {
@@ -12,4 +15,53 @@ api.interceptors.request.use((config) => {
   return config;
 });
 
+// Access tokens are short-lived: on a 401, renew them once with the refresh token
+// (shared by all requests failing at the same time) and replay the request.
+let pendingRefresh: Promise<string> | null = null;
+
+export const refreshAccessToken = (): Promise<string> => {
+  if (!pendingRefresh) {
+    const refreshToken = localStorage.getItem("refresh_token");
+    pendingRefresh = (
+      refreshToken
+        ? axios
+            .post(`${BASE_URL}/auth/refresh`, { refreshToken })
+            .then((res) => {
+              localStorage.setItem("auth_token", res.data.token);
+              localStorage.setItem("refresh_token", res.data.refreshToken);
+              api.defaults.headers.common["Authorization"] = `Bearer ${res.data.token}`;
+              return res.data.token as string;
+            })
+        : Promise.reject(new Error("No refresh token"))
+    ).finally(() => {
+      pendingRefresh = null;
+    });
+  }
+  return pendingRefresh;
+};
+
+api.interceptors.response.use(undefined, async (error: AxiosError) => {
+  const original = error.config as
+    | (InternalAxiosRequestConfig & { _retried?: boolean })
+    | undefined;
+  if (
+    error.response?.status !== 401 ||
+    !original ||
+    original._retried ||
+    original.url?.startsWith("/auth/")
+  ) {
+    throw error;
+  }
+  original._retried = true;
+  try {
+    const token = await refreshAccessToken();
+    original.headers.Authorization = `Bearer ${token}`;
+    return api(original);
+  } catch {
+    localStorage.removeItem("auth_token");
+    localStorage.removeItem("refresh_token");
+    throw error;
+  }
+});
+
 export default api;
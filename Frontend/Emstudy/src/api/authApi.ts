@@ -1,4 +1,4 @@
-import api from "./apiClient";
+import api, { refreshAccessToken } from "./apiClient";
 import { AuthResponse, UserDTO } from "../types";
 
 // Set auth token for all future API calls
@@ -23,3 +23,11 @@ export const register = async (userData: UserDTO): Promise<any> => {
   const res = await api.post("/auth/register", userData);
   return res.data;
 };
+
+// Exchange the stored refresh token for a new access token
+export const refresh = (): Promise<string> => refreshAccessToken();
+
+// Revoke the refresh token (and every token rotated from the same login)
+export const logout = async (refreshToken: string): Promise<void> => {
+  await api.post("/auth/logout", { refreshToken });
+};
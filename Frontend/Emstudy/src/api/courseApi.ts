@@ -1,16 +1,42 @@
 import api from "./apiClient";
-import { Course } from "../types";
+import { Course, CourseSummary, CourseTree, PagedModel } from "../types";
 
 export const getAllCourses = async (): Promise<Course[]> => {
   const res = await api.get<Course[]>("/courses");
   return res.data;
 };
 
+export const getCourseSummaries = async (
+  page = 0,
+  size = 20
+): Promise<PagedModel<CourseSummary>> => {
+  const res = await api.get<PagedModel<CourseSummary>>("/courses/summaries", {
+    params: { page, size },
+  });
+  return res.data;
+};
+
 export const getCourseById = async (courseId: number): Promise<Course> => {
   const res = await api.get<Course>(`/courses/${courseId}`);
   return res.data;
 };
 
+export const getCourseTree = async (courseId: number): Promise<CourseTree> => {
+  const res = await api.get<CourseTree>(`/courses/${courseId}/tree`);
+  return res.data;
+};
+
+// copies the course with its items, quizzes and questions under a new join code
+export const cloneCourse = async (
+  courseId: number,
+  name?: string
+): Promise<CourseTree> => {
+  const res = await api.post<CourseTree>(`/courses/${courseId}/clone`, null, {
+    params: { name },
+  });
+  return res.data;
+};
+
 export const createCourse = async (course: Course): Promise<any> => {
   const { courseId, teacher, ...rest } = course;
   const payload = { ...rest, courseId: null, teacher: null };
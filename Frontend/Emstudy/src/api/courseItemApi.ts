@@ -1,5 +1,5 @@
 import api from "./apiClient";
-import { CourseItem, CourseMaterial, Quiz } from "../types";
+import { CourseItem, CourseMaterial, CourseOutlineItem, Quiz } from "../types";
 
 export const getItemsByCourse = async (
   courseId: number
@@ -10,6 +10,15 @@ export const getItemsByCourse = async (
   return res.data;
 };
 
+export const getCourseOutline = async (
+  courseId: number
+): Promise<CourseOutlineItem[]> => {
+  const res = await api.get<CourseOutlineItem[]>(
+    `/items/course/${courseId}/outline`
+  );
+  return res.data;
+};
+
 export const getItem = async (
   itemId: number
 ): Promise<CourseMaterial | Quiz> => {
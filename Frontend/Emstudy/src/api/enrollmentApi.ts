@@ -1,5 +1,5 @@
 import api from "./apiClient";
-import { Enrollment } from "../types";
+import { CursorPage, Enrollment } from "../types";
 
 export const enrollInCourse = async (joinCode: string): Promise<Enrollment> => {
   const res = await api.get<Enrollment>(
@@ -44,7 +44,12 @@ export const deleteEnrollment = async (enrollmentId: number): Promise<void> => {
   await api.delete(`/enrollments/${enrollmentId}`);
 };
 
-export const getAllEnrollments = async (): Promise<Enrollment[]> => {
-  const res = await api.get<Enrollment[]>(`/enrollments`);
+export const getAllEnrollments = async (
+  cursor?: string,
+  size?: number
+): Promise<CursorPage<Enrollment>> => {
+  const res = await api.get<CursorPage<Enrollment>>(`/enrollments`, {
+    params: { cursor, size },
+  });
   return res.data;
 };
@@ -1,11 +1,19 @@
 import api from "./apiClient";
-import { CourseMaterial } from "../types";
+import { isAxiosError } from "axios";
+import { CourseMaterial, UploadSession } from "../types";
+
+// larger files go through a resumable chunked upload instead of one multipart request
+const CHUNKED_UPLOAD_THRESHOLD = 8 * 1024 * 1024;
+const CHUNK_RETRIES = 3;
 
 export const createMaterial = async (
   title: string,
   courseId: number,
   file: File
 ): Promise<CourseMaterial> => {
+  if (file.size > CHUNKED_UPLOAD_THRESHOLD) {
+    return createMaterialInChunks(title, courseId, file);
+  }
   const formData = new FormData();
   formData.append("file", file);
 
@@ -19,6 +27,77 @@ export const createMaterial = async (
   return res.data;
 };
 
+// the upload of the same file to the same course is resumed, e.g. after a reload
+const uploadKey = (courseId: number, file: File) =>
+  `upload:${courseId}:${file.name}:${file.size}:${file.lastModified}`;
+
+const resumeOrStartUpload = async (
+  title: string,
+  courseId: number,
+  file: File
+): Promise<UploadSession> => {
+  const key = uploadKey(courseId, file);
+  const uploadId = localStorage.getItem(key);
+  if (uploadId) {
+    try {
+      return (await api.get<UploadSession>(`/materials/uploads/${uploadId}`)).data;
+    } catch {
+      localStorage.removeItem(key);
+    }
+  }
+  const res = await api.post<UploadSession>("/materials/uploads", {
+    title,
+    courseId,
+    fileName: file.name,
+    contentType: file.type,
+    size: file.size,
+  });
+  localStorage.setItem(key, res.data.uploadId);
+  return res.data;
+};
+
+// RFC 9530 header the server checks each chunk against; needs a secure context
+const contentDigest = async (chunk: Blob): Promise<Record<string, string>> => {
+  if (!globalThis.crypto?.subtle) return {};
+  const hash = new Uint8Array(await crypto.subtle.digest("SHA-256", await chunk.arrayBuffer()));
+  return { "Content-Digest": `sha-256=:${btoa(String.fromCharCode(...hash))}:` };
+};
+
+const createMaterialInChunks = async (
+  title: string,
+  courseId: number,
+  file: File
+): Promise<CourseMaterial> => {
+  let session = await resumeOrStartUpload(title, courseId, file);
+  let failures = 0;
+  while (!session.material) {
+    const chunk = file.slice(session.offset, session.offset + session.chunkSize);
+    try {
+      const res = await api.put<UploadSession>(
+        `/materials/uploads/${session.uploadId}?offset=${session.offset}`,
+        chunk,
+        {
+          headers: {
+            "Content-Type": "application/octet-stream",
+            ...(await contentDigest(chunk)),
+          },
+        }
+      );
+      session = res.data;
+      failures = 0;
+    } catch (err) {
+      const status = isAxiosError(err) ? err.response?.status : undefined;
+      if (++failures > CHUNK_RETRIES || status === 403 || status === 404) {
+        throw err;
+      }
+      // the server tells where to go on from, whether the chunk made it or not
+      session = (await api.get<UploadSession>(`/materials/uploads/${session.uploadId}`)).data;
+    }
+  }
+  localStorage.removeItem(uploadKey(courseId, file));
+  return session.material;
+};
+
 export const updateMaterial = async (
   itemId: number,
   material: CourseMaterial
@@ -68,6 +147,14 @@ export const getMaterialById = async (
   return res.data;
 };
 
+// the material rendered to a sanitized HTML fragment by the server
+export const getMarkdownHtml = async (materialId: number): Promise<string> => {
+  const res = await api.get(`/materials/markdown/${materialId}/html`, {
+    responseType: "text",
+  });
+  return res.data;
+};
+
 export const getMarkdownMaterial = async (
   materialId: number
 ): Promise<string> => {
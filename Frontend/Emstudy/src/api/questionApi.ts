@@ -1,8 +1,13 @@
 import api from "./apiClient";
-import { Question } from "../types";
+import { CursorPage, Question } from "../types";
 
-export const getAllQuestions = async (): Promise<Question[]> => {
-  const res = await api.get<Question[]>("/questions/");
+export const getAllQuestions = async (
+  cursor?: string,
+  size?: number
+): Promise<CursorPage<Question>> => {
+  const res = await api.get<CursorPage<Question>>("/questions/", {
+    params: { cursor, size },
+  });
   return res.data;
 };
 
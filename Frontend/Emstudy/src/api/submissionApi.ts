@@ -1,5 +1,5 @@
 import api from "./apiClient";
-import { Submission, Answer, SubmissionDTO } from "../types";
+import { CursorPage, Submission, Answer, SubmissionDTO } from "../types";
 
 export const startSubmission = async (quizId: number): Promise<Submission> => {
   const res = await api.post<Submission>(
@@ -38,8 +38,13 @@ export const getCurrentUserSubmissions = async (): Promise<Submission[]> => {
 };
 
 // Get all submissions (admin/teacher only)
-export const getAllSubmissions = async (): Promise<Submission[]> => {
-  const res = await api.get<Submission[]>("/submissions/all");
+export const getAllSubmissions = async (
+  cursor?: string,
+  size?: number
+): Promise<CursorPage<Submission>> => {
+  const res = await api.get<CursorPage<Submission>>("/submissions/all", {
+    params: { cursor, size },
+  });
   return res.data;
 };
 
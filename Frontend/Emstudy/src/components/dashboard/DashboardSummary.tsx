@@ -6,7 +6,8 @@ import { useAuth } from '../../context/AuthContext';
 import { useCourses } from '../../context/CourseContext';
 import Button from '../ui/Button';
 import { Card, CardContent } from '../ui/Card';
-import { Course, Quiz, Submission } from '../../types';
+import { Course, CourseSummary, Quiz, Submission } from '../../types';
+import * as courseApi from '../../api/courseApi';
 
 const DashboardSummary: React.FC = () => {
   const { currentUser } = useAuth();
@@ -14,6 +15,8 @@ const DashboardSummary: React.FC = () => {
   const [quizzes, setQuizzes] = useState<Quiz[]>([]);
   const [submissions, setSubmissions] = useState<Submission[]>([]);
   const [isLoading, setIsLoading] = useState(true);
+  const [summaries, setSummaries] = useState<CourseSummary[]>([]);
+  const [totalCourses, setTotalCourses] = useState<number | null>(null);
   
   const navigate = useNavigate();
   
@@ -24,6 +27,20 @@ const DashboardSummary: React.FC = () => {
       setIsLoading(false);
     }
   }, [loading, courses]);
+
+  // Teachers get counts from the summary endpoint instead of walking every course
+  useEffect(() => {
+    if (!isTeacher) return;
+    courseApi
+      .getCourseSummaries(0, 100)
+      .then((page) => {
+        setSummaries(page.content);
+        setTotalCourses(page.page.totalElements);
+      })
+      .catch((err) => console.error("Failed to fetch course summaries:", err));
+  }, [isTeacher]);
+
+  const totalEnrolled = summaries.reduce((sum, summary) => sum + summary.enrollmentCount, 0);
   
   const cardVariants = {
     initial: { opacity: 0, y: 20 },
@@ -95,7 +112,7 @@ const DashboardSummary: React.FC = () => {
                     <h3 className="font-semibold text-lg text-gray-900">My Courses</h3>
                     <BookOpen className="h-8 w-8 text-blue-500" />
                   </div>
-                  <p className="text-3xl font-bold mt-4">{courses.length}</p>
+                  <p className="text-3xl font-bold mt-4">{totalCourses ?? courses.length}</p>
                   <p className="text-gray-500 mt-1">Active courses</p>
                   <Button
                     variant="outline"
@@ -155,7 +172,7 @@ const DashboardSummary: React.FC = () => {
                       <Users className="h-8 w-8 text-green-500" />
                     </div>
                     <p className="text-3xl font-bold mt-4">
-                      {0} {/* Will be filled with proper count */}
+                      {totalEnrolled}
                     </p>
                     <p className="text-gray-500 mt-1">Total enrolled students</p>
                     <div className="mt-4 text-sm text-gray-500">
@@ -77,26 +77,30 @@ export const AuthProvider: React.FC<AuthProviderProps> = ({ children }) => {
 
   // Initialize auth state from localStorage
   useEffect(() => {
-    const initAuth = () => {
+    const initAuth = async () => {
       setIsLoading(true);
       try {
-        const token = localStorage.getItem("auth_token");
+        let token = localStorage.getItem("auth_token");
+        if (token && isTokenExpired(parseJwt(token))) {
+          // Access tokens are short-lived, renew it if the refresh token is still valid
+          token = localStorage.getItem("refresh_token")
+            ? await authApi.refresh().catch(() => null)
+            : null;
+        }
         if (token) {
-          const user = parseJwt(token);
-          if (!isTokenExpired(user)) {
-            setCurrentUser(user);
-            // Set Authorization header for all future requests
-            authApi.setAuthToken(token);
-          } else {
-            // Token expired, remove it
-            localStorage.removeItem("auth_token");
-            setCurrentUser(null);
-            authApi.removeAuthToken();
-          }
+          setCurrentUser(parseJwt(token));
+          // Set Authorization header for all future requests
+          authApi.setAuthToken(token);
+        } else {
+          localStorage.removeItem("auth_token");
+          localStorage.removeItem("refresh_token");
+          setCurrentUser(null);
+          authApi.removeAuthToken();
         }
       } catch (err) {
         console.error("Failed to initialize auth", err);
         localStorage.removeItem("auth_token");
+        localStorage.removeItem("refresh_token");
       } finally {
         setIsLoading(false);
       }
@@ -117,6 +121,7 @@ export const AuthProvider: React.FC<AuthProviderProps> = ({ children }) => {
       // Set current user and store token
       setCurrentUser(user);
       localStorage.setItem("auth_token", token);
+      localStorage.setItem("refresh_token", response.refreshToken);
       authApi.setAuthToken(token);
       return true;
     } catch (err) {
@@ -146,7 +151,12 @@ export const AuthProvider: React.FC<AuthProviderProps> = ({ children }) => {
 
   // Logout function
   const logout = () => {
+    const refreshToken = localStorage.getItem("refresh_token");
+    if (refreshToken) {
+      authApi.logout(refreshToken).catch(() => undefined);
+    }
     localStorage.removeItem("auth_token");
+    localStorage.removeItem("refresh_token");
     setCurrentUser(null);
     authApi.removeAuthToken();
   };
@@ -11,7 +11,6 @@ import * as enrollmentApi from "../api/enrollmentApi";
 import * as courseItemApi from "../api/courseItemApi";
 import * as materialApi from "../api/materialApi";
 import * as quizApi from "../api/quizApi";
-import * as questionApi from "../api/questionApi";
 import * as answerApi from "../api/answerApi";
 import * as submissionApi from "../api/submissionApi";
 import * as completedItemApi from "../api/completedItemApi";
@@ -375,7 +374,9 @@ export const CourseProvider: React.FC<CourseProviderProps> = ({ children }) => {
         return [];
       }
 
-      return await courseItemApi.getItemsByCourse(courseId);
+      // quizzes come with their questions and answers
+      const tree = await courseApi.getCourseTree(courseId);
+      return tree.items;
     } catch (err) {
       handleError(err, "Failed to load course items.");
       return [];
@@ -437,13 +438,11 @@ export const CourseProvider: React.FC<CourseProviderProps> = ({ children }) => {
 
     try {
       // First check if this quiz belongs to one of the user's courses
-      const allItems = await Promise.all(
-        myCourses.map((course) =>
-          courseItemApi.getItemsByCourse(course.courseId)
-        )
+      const trees = await Promise.all(
+        myCourses.map((course) => courseApi.getCourseTree(course.courseId))
       );
 
-      const flatItems = allItems.flat();
+      const flatItems = trees.flatMap((tree) => tree.items);
       const quiz = flatItems.find(
         (item) => item.itemType === "Q" && item.itemId === quizId
       ) as Quiz | undefined;
@@ -453,8 +452,8 @@ export const CourseProvider: React.FC<CourseProviderProps> = ({ children }) => {
         return null;
       }
 
-      const questions = await questionApi.getQuestionsByQuizId(quizId);
-      return { ...quiz, questions };
+      // the tree already carries the questions and their answers
+      return quiz;
     } catch (err) {
       handleError(err, "Failed to load quiz details.");
       return null;
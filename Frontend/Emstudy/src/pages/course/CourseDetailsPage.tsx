@@ -20,10 +20,8 @@ import api from "../../api/apiClient";
 import QuizManager from "../../components/quiz/QuizManager";
 import {
   getMaterialFileContent, // Import the updated function
-  getMarkdownMaterial,
+  getMarkdownHtml,
 } from "../../api/materialApi"; // Adjust path if necessary
-import ReactMarkdown from "react-markdown";
-import remarkGfm from "remark-gfm";
 import { deleteItem } from "../../api/courseItemApi";
 
 const CourseDetailsPage = () => {
@@ -103,9 +101,11 @@ const CourseDetailsPage = () => {
   // Function to get image data from the API
   const [imageBlobs, setImageBlobs] = useState<Record<number, string>>({});
 
+  // the preview only needs the medium size, the original is fetched for "View Full Size"
   const loadImage = async (material: CourseMaterial) => {
     try {
       const response = await api.get(`/materials/image/${material.itemId}`, {
+        params: { size: "medium" },
         responseType: "blob",
       });
       const blob = new Blob([response.data]);
@@ -119,6 +119,24 @@ const CourseDetailsPage = () => {
     }
   };
 
+  const openFullSize = async (material: CourseMaterial) => {
+    try {
+      const response = await api.get(`/materials/image/${material.itemId}`, {
+        responseType: "blob",
+      });
+      setSelectedImage(window.URL.createObjectURL(new Blob([response.data])));
+    } catch (error) {
+      console.error("Failed to load image:", error);
+    }
+  };
+
+  // the full size image is released once the viewer closes or shows another one
+  useEffect(() => {
+    return () => {
+      if (selectedImage) window.URL.revokeObjectURL(selectedImage);
+    };
+  }, [selectedImage]);
+
   // Load images when materials change
   useEffect(() => {
     // Clear previous image blobs first
@@ -373,14 +391,14 @@ const CourseDetailsPage = () => {
   function MaterialCard({
     material,
     imageBlobs,
-    setSelectedImage,
+    onViewFullSize,
     handleDownload,
     isTeacher,
     onDelete,
   }: {
     material: CourseMaterial;
     imageBlobs: Record<number, string>;
-    setSelectedImage: (url: string) => void;
+    onViewFullSize: (material: CourseMaterial) => void;
     handleDownload: (material: CourseMaterial) => void;
     isTeacher: boolean;
     onDelete: (itemId: number) => void;
@@ -394,10 +412,10 @@ const CourseDetailsPage = () => {
         const fetchMarkdown = async () => {
           setLoading(true);
           try {
-            const text = await getMarkdownMaterial(material.itemId!);
-            if (isMounted) setContent(text);
+            const html = await getMarkdownHtml(material.itemId!);
+            if (isMounted) setContent(html);
           } catch (e) {
-            if (isMounted) setContent("Failed to load markdown content.");
+            if (isMounted) setContent("<p>Failed to load markdown content.</p>");
           } finally {
             if (isMounted) setLoading(false);
           }
@@ -437,9 +455,11 @@ const CourseDetailsPage = () => {
                     Loading markdown...
                   </div>
                 ) : (
-                  <ReactMarkdown remarkPlugins={[remarkGfm]}>
-                    {content}
-                  </ReactMarkdown>
+                  // rendered and sanitized by the server
+                  <div
+                    className="prose max-w-none"
+                    dangerouslySetInnerHTML={{ __html: content }}
+                  />
                 )}
               </div>
               <div className="ml-4 flex gap-2">
@@ -501,9 +521,7 @@ const CourseDetailsPage = () => {
                     src={imageBlobs[material.itemId!]}
                     alt={material.title}
                     className="max-w-full max-h-96 rounded-md shadow-sm cursor-pointer"
-                    onClick={() =>
-                      setSelectedImage(imageBlobs[material.itemId!])
-                    }
+                    onClick={() => onViewFullSize(material)}
                   />
                 </div>
               </div>
@@ -511,7 +529,7 @@ const CourseDetailsPage = () => {
                 <Button
                   variant="outline"
                   size="sm"
-                  onClick={() => setSelectedImage(imageBlobs[material.itemId!])}
+                  onClick={() => onViewFullSize(material)}
                   disabled={!imageBlobs[material.itemId!]}
                 >
                   View Full Size
@@ -1031,7 +1049,7 @@ const CourseDetailsPage = () => {
                       key={material.itemId}
                       material={material}
                       imageBlobs={imageBlobs}
-                      setSelectedImage={setSelectedImage}
+                      onViewFullSize={openFullSize}
                       handleDownload={handleDownload}
                       isTeacher={isTeacher}
                       onDelete={handleDeleteItem}
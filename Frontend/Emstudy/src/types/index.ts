@@ -2,6 +2,7 @@
 
 export interface AuthResponse {
   token: string;
+  refreshToken: string;
   expiresIn: number;
   role: string;
 }
@@ -50,6 +51,44 @@ export interface Course {
   creationDate: string;
 }
 
+// A course with all of its items, quizzes carrying their questions and answers
+export interface CourseTree {
+  courseId: number;
+  name: string;
+  description: string;
+  joinCode: string;
+  creationDate: string;
+  items: (CourseMaterial | Quiz)[];
+}
+
+export interface CourseSummary {
+  courseId: number;
+  name: string;
+  description: string;
+  joinCode: string;
+  creationDate: string;
+  itemCount: number;
+  enrollmentCount: number;
+  completionCount: number;
+  lastActivity: string | null;
+}
+
+export interface PagedModel<T> {
+  content: T[];
+  page: {
+    size: number;
+    number: number;
+    totalElements: number;
+    totalPages: number;
+  };
+}
+
+export interface CursorPage<T> {
+  items: T[];
+  // pass back as `cursor` for the next page, null on the last page
+  nextCursor: string | null;
+}
+
 export interface CourseItem {
   itemId: number | null;
   title: string;
@@ -58,6 +97,14 @@ export interface CourseItem {
   course?: Course;
 }
 
+// sidebar entry, without the material or quiz fields
+export interface CourseOutlineItem {
+  itemId: number;
+  title: string;
+  itemType: string;
+  addDate: string;
+}
+
 export interface CourseMaterial extends CourseItem {
   courseMaterialType:
     | "PDF"
@@ -68,6 +115,22 @@ export interface CourseMaterial extends CourseItem {
     | "OTHER";
   url: string;
   description: string;
+  // kept when the file was uploaded, missing for older materials
+  fileSize?: number;
+  contentType?: string;
+  sha256?: string;
+  originalFileName?: string;
+}
+
+// resumable upload of a large material, see materialApi.createMaterial
+export interface UploadSession {
+  uploadId: string;
+  fileName: string;
+  size: number;
+  offset: number;
+  chunkSize: number;
+  expiresAt: string;
+  material: CourseMaterial | null;
 }
 
 export interface Quiz extends CourseItem {